@@ -0,0 +1,71 @@
+package sml.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import sml.Instruction;
+import sml.InstructionType;
+import sml.OpcodeRegistry;
+
+import java.util.concurrent.TimeUnit;
+
+import static sml.Registers.Register.*;
+
+/**
+ * Represents the benchmarks of the instruction factory: looking an opcode up
+ * in the {@link OpcodeRegistry} and creating an instruction through its
+ * {@link InstructionType}, from source text or from converted operands.
+ *
+ * @author Szymon Swendrowski
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FactoryBenchmark {
+  @Param({"mov", "add", "jnz", "wow"})
+  public String opcode;
+
+  private InstructionType type;
+  private String[] operands;
+  private Object[] arguments;
+
+  @Setup
+  public void setUp() {
+    type = OpcodeRegistry.lookup(opcode);
+    switch (opcode) {
+      case "mov" -> {
+        operands = new String[]{"EAX", "6"};
+        arguments = new Object[]{null, EAX, 6};
+      }
+      case "jnz" -> {
+        operands = new String[]{"EAX", "f3"};
+        arguments = new Object[]{"f0", EAX, "f3"};
+      }
+      case "wow" -> {
+        operands = new String[]{"3"};
+        arguments = new Object[]{null, 3};
+      }
+      default -> {
+        operands = new String[]{"EAX", "EBX"};
+        arguments = new Object[]{null, EAX, EBX};
+      }
+    }
+  }
+
+  @Benchmark
+  public InstructionType lookup() {
+    return OpcodeRegistry.lookup(opcode);
+  }
+
+  @Benchmark
+  public Instruction getInstruction() {
+    return OpcodeRegistry.lookup(opcode).newInstance(null, operands);
+  }
+
+  @Benchmark
+  public Instruction newInstance() {
+    return type.newInstance(arguments.clone());
+  }
+}
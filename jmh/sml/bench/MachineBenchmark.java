@@ -0,0 +1,68 @@
+package sml.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import sml.Machine;
+import sml.Program;
+import sml.Registers;
+import sml.Translator;
+import sml.compact.CompactEngine;
+import sml.engine.BytecodeEngine;
+import sml.engine.Interpreter;
+import sml.output.BufferedSink;
+import sml.output.FlushPolicy;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents the benchmarks of {@link Machine#execute()} on loop-heavy,
+ * branch-heavy and output-heavy programs, scaled from test2.sml, test1.sml
+ * and test3.sml, with each engine.
+ *
+ * @author Szymon Swendrowski
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MachineBenchmark {
+  @Param({"loop", "branch", "output"})
+  public String shape;
+
+  @Param({"interpreter", "bytecode", "compact"})
+  public String engine;
+
+  @Param({"100000"})
+  public int iterations;
+
+  private Machine machine;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    String source = switch (shape) {
+      case "loop" -> Programs.loop(iterations);
+      case "branch" -> Programs.branch(iterations);
+      default -> Programs.output(iterations);
+    };
+    Program program = engine.equals("compact")
+            ? Translator.translateCompact(source)
+            : Translator.translateProgram(source);
+    machine = new Machine(program, new Registers());
+    machine.setEngine(switch (engine) {
+      case "interpreter" -> new Interpreter();
+      case "bytecode" -> new BytecodeEngine();
+      default -> new CompactEngine();
+    });
+    // the output is formatted and buffered as usual, then thrown away
+    machine.setOutput(new BufferedSink(OutputStream.nullOutputStream(), FlushPolicy.onHalt()));
+  }
+
+  @Benchmark
+  public Registers execute() {
+    machine.execute();
+    return machine.getRegisters();
+  }
+}
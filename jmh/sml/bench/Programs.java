@@ -0,0 +1,93 @@
+package sml.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Represents the programs the benchmarks run: scaled versions of the
+ * example programs, each of which halts.
+ *
+ * @author Szymon Swendrowski
+ */
+final class Programs {
+  private Programs() {
+  }
+
+  /**
+   * Returns a loop-heavy program: the factorial of test2.sml over n iterations.
+   *
+   * @param n the number of iterations
+   * @return the SML code
+   */
+  static String loop(int n) {
+    return "mov EAX " + n + "\nmov EBX 1\nmov ECX 1\n"
+            + "f3: mul EBX EAX\nsub EAX ECX\njnz EAX f3\nout EBX\n";
+  }
+
+  /**
+   * Returns a branch-heavy program: the self-multiplying loop of test1.sml,
+   * nested in a counted loop of n iterations so that it halts, with a jnz
+   * taken on every other iteration.
+   *
+   * @param n the number of outer iterations
+   * @return the SML code
+   */
+  static String branch(int n) {
+    return """
+            mov ESI %d
+            mov ECX 1
+            mov EDI 0
+            L0: mov EAX 66
+            mov EBX 10
+            mov EDX 4
+            L1: add EAX EAX
+            mul EAX EBX
+            sub EDX ECX
+            jnz EDX L1
+            add EDI ECX
+            mov EDX 1
+            jnz EAX L2
+            mov EDX 0
+            L2: sub ESI ECX
+            jnz ESI L0
+            out EDI
+            """.formatted(n);
+  }
+
+  /**
+   * Returns an output-heavy program: the countdown of test3.sml over n
+   * iterations, printing on each of them.
+   *
+   * @param n the number of iterations
+   * @return the SML code
+   */
+  static String output(int n) {
+    return "mov EAX " + n + "\nmov EBX 1\n"
+            + "f1: sub EAX EBX\nwow 1\nout EAX\njnz EAX f1\n";
+  }
+
+  /**
+   * Writes a straight-line program of the given number of instructions,
+   * with a label every 64 lines, to a new temporary file.
+   *
+   * @param instructions the number of instructions
+   * @return the file, which is deleted when the JVM exits
+   * @throws IOException if the file cannot be written
+   */
+  static Path straightLine(int instructions) throws IOException {
+    Path file = Files.createTempFile("bench", ".sml");
+    file.toFile().deleteOnExit();
+    String[] body = {"add EBX EAX", "sub ECX EAX", "mul EDX EAX", "mov EAX 3", "div EDX EAX", "out EBX"};
+    try (Writer writer = Files.newBufferedWriter(file)) {
+      for (int i = 0; i < instructions; i++) {
+        if (i % 64 == 0)
+          writer.write("l" + i + ": ");
+        writer.write(body[i % body.length]);
+        writer.write('\n');
+      }
+    }
+    return file;
+  }
+}
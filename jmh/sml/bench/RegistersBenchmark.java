@@ -0,0 +1,54 @@
+package sml.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import sml.Registers;
+
+import java.util.concurrent.TimeUnit;
+
+import static sml.Registers.Register.*;
+
+/**
+ * Represents the benchmarks of {@link Registers#get} and {@link Registers#set},
+ * by register name and by ordinal.
+ *
+ * @author Szymon Swendrowski
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistersBenchmark {
+  private final Registers registers = new Registers();
+  private int value = 1;
+
+  @Benchmark
+  public int getByName() {
+    return registers.get(EAX) + registers.get(EDI);
+  }
+
+  @Benchmark
+  public int getByOrdinal() {
+    return registers.get(0) + registers.get(7);
+  }
+
+  @Benchmark
+  public Registers setByName() {
+    registers.set(EBX, value++);
+    return registers;
+  }
+
+  @Benchmark
+  public Registers setByOrdinal() {
+    registers.set(1, value++);
+    return registers;
+  }
+
+  @Benchmark
+  public Registers addByName() {
+    registers.set(EAX, registers.get(EAX) + registers.get(EBX));
+    return registers;
+  }
+}
@@ -0,0 +1,66 @@
+package sml.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Program;
+import sml.Translator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents the benchmarks of {@link Translator#readAndTranslate} on a
+ * small (test2.sml sized) and a huge (2M instruction) source file.
+ *
+ * @author Szymon Swendrowski
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TranslatorBenchmark {
+  @Param({"7", "2000000"})
+  public int instructions;
+
+  private Path file;
+  private Translator translator;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    if (instructions <= 7) {
+      file = Files.createTempFile("bench", ".sml");
+      file.toFile().deleteOnExit();
+      Files.writeString(file, Programs.loop(6));
+    } else {
+      file = Programs.straightLine(instructions);
+    }
+    translator = Translator.getInstance(file.toString());
+  }
+
+  @Benchmark
+  public List<Instruction> readAndTranslate() throws Exception {
+    List<Instruction> program = new ArrayList<>();
+    translator.readAndTranslate(new Labels(), program);
+    return program;
+  }
+
+  @Benchmark
+  public List<Instruction> readAndTranslateParallel() throws Exception {
+    List<Instruction> program = new ArrayList<>();
+    translator.readAndTranslate(new Labels(), program, ForkJoinPool.commonPool());
+    return program;
+  }
+
+  @Benchmark
+  public Program translateCompact() throws Exception {
+    return Translator.translateCompact(file);
+  }
+}
@@ -0,0 +1,92 @@
+package sml.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import sml.Translator;
+import sml.simd.VectorKernel;
+import sml.sweep.RangeSource;
+import sml.sweep.Sweep;
+import sml.sweep.SweepConsumer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents the benchmarks of a vectorized sweep against the scalar sweep,
+ * over a kernel whose lanes all take the same path and over one whose lanes
+ * diverge in a loop of varying length and reconverge after it
+ * (see {@link VectorKernel}).
+ * <p>
+ * Both sweeps run on one thread; the checksum of the final registers is
+ * returned, so that it can be compared between them.
+ *
+ * @author Szymon Swendrowski
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VectorBenchmark {
+  // a polynomial evaluated by a loop of fixed length, so that every lane takes the same path
+  private static final String UNIFORM = """
+          mov ECX 1
+          mov EDX 64
+          mov EBX 0
+          f0: mul EBX EAX
+          add EBX ESI
+          sub EDX ECX
+          jnz EDX f0
+          mov ESI 7
+          div EBX ESI
+          """;
+
+  // a loop of EDI iterations, different for neighbouring lanes, followed by the polynomial
+  private static final String DIVERGENT = """
+          mov ECX 1
+          d0: add EAX ECX
+          sub EDI ECX
+          jnz EDI d0
+          """ + UNIFORM;
+
+  // the number of different lengths of the divergent loop
+  private static final int LENGTHS = 16;
+
+  @Param({"uniform", "divergent"})
+  public String kernel;
+
+  @Param({"false", "true"})
+  public boolean vectorized;
+
+  @Param({"100000"})
+  public int inputs;
+
+  private ForkJoinPool pool;
+  private Sweep sweep;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    pool = new ForkJoinPool(1);
+    sweep = new Sweep(Translator.translateProgram(kernel.equals("uniform") ? UNIFORM : DIVERGENT), pool);
+    sweep.setVectorized(vectorized);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  @Benchmark
+  public long sweep() throws IOException {
+    List<String> ranges = kernel.equals("uniform")
+            ? List.of("EAX=0.." + (inputs - 1), "ESI=3..3")
+            : List.of("ESI=0.." + (inputs / LENGTHS - 1), "EDI=1.." + LENGTHS);
+    long[] checksum = new long[1];
+    SweepConsumer consumer = (index, in, out, offset) -> checksum[0] = checksum[0] * 31 + out[offset + 1];
+    sweep.run(new RangeSource(ranges), consumer);
+    return checksum[0];
+  }
+}
@@ -0,0 +1,204 @@
+package sml;
+
+import sml.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Represents the translation of a large SML file in chunks on a fork-join pool.
+ * <p>
+ * The file is split at line boundaries into chunks, which are memory-mapped
+ * and lexed in parallel into their own instruction lists and local label
+ * tables. The chunks are then merged in order: each local label address is
+ * offset by the number of instructions before the chunk, and labels are
+ * added in source order, so duplicates and syntax errors are reported
+ * exactly as the sequential translation reports them.
+ *
+ * @author Szymon Swendrowski
+ */
+final class ChunkedTranslator {
+  // files smaller than two chunks of this size are translated sequentially
+  static final int MIN_CHUNK_SIZE = 1 << 20;
+  private static final int MAX_CHUNK_SIZE = 1 << 28;
+  private static final int CHUNKS_PER_THREAD = 4;
+  private static final int BLOCK_SIZE = 1 << 16;
+
+  private ChunkedTranslator() {
+  }
+
+  /**
+   * Returns true if the file of the given size is worth splitting into chunks.
+   *
+   * @param size the size of the file in bytes
+   * @return True or False
+   */
+  static boolean isLarge(long size) {
+    return size >= 2L * MIN_CHUNK_SIZE;
+  }
+
+  /**
+   * Translates the given file into the labels and the program.
+   *
+   * @param path    the file containing the SML code
+   * @param labels  the labels of the instructions, already reset
+   * @param program the program, already cleared
+   * @param pool    the pool the chunks are lexed on
+   * @throws IOException if the file cannot be read
+   */
+  static void translate(Path path, Labels labels, List<Instruction> program, ForkJoinPool pool)
+          throws IOException {
+    long begin = System.nanoTime();
+    String source = path.toString();
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      long chunkSize = Math.max(MIN_CHUNK_SIZE,
+              Math.min(MAX_CHUNK_SIZE, size / ((long) pool.getParallelism() * CHUNKS_PER_THREAD)));
+      List<Long> starts = boundaries(channel, size, chunkSize);
+
+      // map the chunks and count their lines, so that each knows its first line
+      List<ForkJoinTask<ByteBuffer>> mapped = new ArrayList<>();
+      for (int i = 0; i < starts.size(); i++) {
+        long start = starts.get(i);
+        long end = (i + 1 < starts.size()) ? starts.get(i + 1) : size;
+        mapped.add(pool.submit(() -> map(channel, start, end)));
+      }
+      List<ByteBuffer> buffers = new ArrayList<>();
+      List<ForkJoinTask<Integer>> counted = new ArrayList<>();
+      for (ForkJoinTask<ByteBuffer> task : mapped) {
+        ByteBuffer buffer = join(task);
+        buffers.add(buffer);
+        counted.add(pool.submit(() -> countLines(buffer)));
+      }
+
+      List<ForkJoinTask<Chunk>> chunks = new ArrayList<>();
+      int firstLine = 1;
+      for (int i = 0; i < buffers.size(); i++) {
+        ByteBuffer buffer = buffers.get(i);
+        int line = firstLine;
+        chunks.add(pool.submit(() -> Chunk.lex(source, buffer, line)));
+        firstLine += join(counted.get(i));
+      }
+
+      int count = 0;
+      List<Chunk> lexed = new ArrayList<>();
+      for (ForkJoinTask<Chunk> task : chunks) {
+        Chunk chunk = join(task);
+        lexed.add(chunk);
+        count += chunk.instructions.size();
+      }
+      if (program instanceof ArrayList<Instruction> list)
+        list.ensureCapacity(count);
+      for (Chunk chunk : lexed)
+        chunk.mergeInto(source, labels, program);
+    }
+    Metrics.translated(System.nanoTime() - begin);
+  }
+
+  // the offsets at which chunks start, each just after a new line
+  private static List<Long> boundaries(FileChannel channel, long size, long chunkSize)
+          throws IOException {
+    List<Long> starts = new ArrayList<>();
+    starts.add(0L);
+    ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+    long position = chunkSize;
+    search:
+    while (position < size) {
+      while (position < size) {
+        block.clear();
+        int read = channel.read(block, position);
+        if (read <= 0)
+          break search;
+        for (int i = 0; i < read; i++)
+          if (block.get(i) == '\n') {
+            long start = position + i + 1;
+            if (start >= size)
+              break search;
+            starts.add(start);
+            position = start + chunkSize;
+            continue search;
+          }
+        position += read;
+      }
+    }
+    return starts;
+  }
+
+  private static ByteBuffer map(FileChannel channel, long start, long end) {
+    try {
+      return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static int countLines(ByteBuffer buffer) {
+    int lines = 0;
+    for (int i = 0, limit = buffer.limit(); i < limit; i++)
+      if (buffer.get(i) == '\n')
+        lines++;
+    return lines;
+  }
+
+  private static <T> T join(ForkJoinTask<T> task) throws IOException {
+    try {
+      return task.join();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Represents the instructions and local labels lexed from one chunk.
+   */
+  private static final class Chunk {
+    private final List<Instruction> instructions = new ArrayList<>();
+    private final List<String> labels = new ArrayList<>();
+    private final List<Integer> addresses = new ArrayList<>();
+    private final List<Integer> lines = new ArrayList<>();
+    private RuntimeException error; // the syntax error that ended the chunk, if any
+
+    static Chunk lex(String source, ByteBuffer buffer, int firstLine) {
+      Chunk chunk = new Chunk();
+      Tokenizer tokenizer = new Tokenizer(source, buffer, firstLine);
+      try {
+        Instruction instruction;
+        while ((instruction = tokenizer.next()) != null) {
+          if (instruction.getLabel() != null) {
+            chunk.labels.add(instruction.getLabel());
+            chunk.addresses.add(chunk.instructions.size());
+            chunk.lines.add(tokenizer.getLineNumber());
+          }
+          chunk.instructions.add(instruction);
+        }
+      } catch (RuntimeException e) {
+        chunk.error = e;
+      }
+      return chunk;
+    }
+
+    void mergeInto(String source, Labels labels, List<Instruction> program) {
+      int offset = program.size();
+      for (int i = 0; i < this.labels.size(); i++) {
+        try {
+          labels.addLabel(this.labels.get(i), offset + addresses.get(i));
+        } catch (IllegalArgumentException e) {
+          throw new IllegalArgumentException(e.getMessage() + " at " + source + ":" + lines.get(i), e);
+        }
+      }
+      program.addAll(instructions);
+      if (error != null)
+        throw error;
+    }
+  }
+}
@@ -41,6 +41,18 @@ public abstract class Instruction {
    */
   public abstract int execute(Machine machine);
 
+  /**
+   * Resolves the label references of the instruction to program addresses.
+   * Instructions that do not refer to labels are returned unchanged.
+   *
+   * @param labels the labels of the program
+   * @return the linked instruction
+   * @throws IllegalArgumentException if a referenced label does not exist
+   */
+  public Instruction link(Labels labels) {
+    return this;
+  }
+
   /**
    * Gets the label of the instruction.
    *
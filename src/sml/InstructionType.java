@@ -0,0 +1,236 @@
+package sml;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+
+/**
+ * Represents an instruction class whose constructor has been resolved once,
+ * so that new instructions are created without any further reflection.
+ * <p>
+ * The first parameter of the constructor is the label; every other parameter
+ * is an operand, which is either a register, an int or a string (a label).
+ * Operands are converted from their source text and passed straight to the
+ * constructor through a factory that {@link LambdaMetafactory} creates for it,
+ * typed by the shape of its operands, so creating an instruction neither
+ * allocates an argument array nor boxes its ints.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class InstructionType {
+  private static final ClassValue<InstructionType> TYPES = new ClassValue<>() {
+    @Override
+    protected InstructionType computeValue(Class<?> type) {
+      return new InstructionType(type);
+    }
+  };
+
+  /**
+   * The kinds of operand an instruction can take.
+   */
+  public enum Operand { REGISTER, INT, STRING }
+
+  // the factory interfaces of the shapes a constructor can have:
+  // the label followed by up to two operands, a register or string (Object) or an int
+  private interface Nullary {
+    Instruction create(String label);
+  }
+
+  private interface Unary {
+    Instruction create(String label, Object operand);
+  }
+
+  private interface UnaryInt {
+    Instruction create(String label, int operand);
+  }
+
+  private interface Binary {
+    Instruction create(String label, Object first, Object second);
+  }
+
+  private interface BinaryInt {
+    Instruction create(String label, Object first, int second);
+  }
+
+  private enum Shape {
+    NULLARY(Nullary.class), UNARY(Unary.class), UNARY_INT(UnaryInt.class),
+    BINARY(Binary.class), BINARY_INT(BinaryInt.class);
+
+    private final Class<?> factory;
+
+    Shape(Class<?> factory) {
+      this.factory = factory;
+    }
+
+    static Shape of(Operand[] operands) {
+      if (operands.length == 0)
+        return NULLARY;
+      if (operands.length == 1)
+        return (operands[0] == Operand.INT) ? UNARY_INT : UNARY;
+      if (operands.length == 2 && operands[0] != Operand.INT)
+        return (operands[1] == Operand.INT) ? BINARY_INT : BINARY;
+      return null;
+    }
+  }
+
+  private final Class<?> type;
+  private final Operand[] operands;
+  private final Shape shape;
+  private final Object factory; // implements the factory interface of the shape
+
+  private InstructionType(Class<?> type) {
+    if (!Instruction.class.isAssignableFrom(type))
+      throw new IllegalArgumentException(type.getName() + " is not an instruction");
+    Constructor<?>[] constructors = type.getConstructors();
+    if (constructors.length == 0)
+      throw new IllegalArgumentException(type.getName() + " has no public constructor");
+    Constructor<?> constructor = constructors[0];
+
+    Class<?>[] parameterTypes = constructor.getParameterTypes();
+    this.type = type;
+    this.operands = new Operand[Math.max(0, parameterTypes.length - 1)];
+    for (int i = 0; i < operands.length; i++)
+      operands[i] = kind(parameterTypes[i + 1]);
+
+    this.shape = Shape.of(operands);
+    if (shape == null || parameterTypes.length == 0 || parameterTypes[0] != String.class)
+      throw new IllegalArgumentException(type.getName()
+              + " constructor does not take a label and up to two operands");
+
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      MethodHandle target = lookup.unreflectConstructor(constructor);
+      MethodType create = MethodType.methodType(Instruction.class, erased(operands));
+      this.factory = LambdaMetafactory.metafactory(lookup, "create", MethodType.methodType(shape.factory),
+              create, target, target.type().changeReturnType(Instruction.class)).getTarget().invoke();
+    } catch (IllegalAccessException e) {
+      throw new IllegalArgumentException(type.getName() + " constructor is not accessible", e);
+    } catch (Throwable e) {
+      throw new IllegalArgumentException(type.getName() + " constructor cannot be bound", e);
+    }
+  }
+
+  // the parameter types of the factory method: the label, then an int or an Object per operand
+  private static Class<?>[] erased(Operand[] operands) {
+    Class<?>[] erased = new Class<?>[operands.length + 1];
+    erased[0] = String.class;
+    for (int i = 0; i < operands.length; i++)
+      erased[i + 1] = (operands[i] == Operand.INT) ? int.class : Object.class;
+    return erased;
+  }
+
+  private static Operand kind(Class<?> parameterType) {
+    if (parameterType == int.class || parameterType == Integer.class)
+      return Operand.INT;
+    if (parameterType == RegisterName.class)
+      return Operand.REGISTER;
+    return Operand.STRING;
+  }
+
+  /**
+   * Returns the instruction type of the given instruction class.
+   * The constructor of each class is only resolved once.
+   *
+   * @param type the instruction class
+   * @return the instruction type
+   * @throws IllegalArgumentException if the class is not a public instruction class
+   */
+  public static InstructionType of(Class<?> type) {
+    return TYPES.get(type);
+  }
+
+  /**
+   * Gets the instruction class.
+   *
+   * @return the instruction class
+   */
+  public Class<?> getType() {
+    return type;
+  }
+
+  /**
+   * Gets the number of operands (parameters after the label) of the instruction.
+   *
+   * @return the number of operands
+   */
+  public int getOperandCount() {
+    return operands.length;
+  }
+
+  /**
+   * Gets the kind of the given operand of the instruction.
+   *
+   * @param index the index of the operand (0 is the first after the label)
+   * @return the kind of the operand
+   */
+  public Operand getOperand(int index) {
+    return operands[index];
+  }
+
+  /**
+   * Creates an instruction from the source text of its operands.
+   *
+   * @param label    optional label (can be null)
+   * @param operands the operands, as written in the program
+   * @return the instruction
+   * @throws RuntimeException if an operand is not a valid register or integer
+   */
+  public Instruction newInstance(String label, String... operands) {
+    return switch (shape) {
+      case NULLARY -> ((Nullary) factory).create(label);
+      case UNARY -> ((Unary) factory).create(label, convert(this.operands[0], operand(operands, 0)));
+      case UNARY_INT -> ((UnaryInt) factory).create(label, parseInt(operand(operands, 0)));
+      case BINARY -> ((Binary) factory).create(label, convert(this.operands[0], operand(operands, 0)),
+              convert(this.operands[1], operand(operands, 1)));
+      case BINARY_INT -> ((BinaryInt) factory).create(label, convert(this.operands[0], operand(operands, 0)),
+              parseInt(operand(operands, 1)));
+    };
+  }
+
+  /**
+   * Creates an instruction from its already converted constructor arguments.
+   *
+   * @param arguments the label followed by the operands, each a register,
+   *                  an Integer or a string as given by {@link #getOperand(int)}
+   * @return the instruction
+   */
+  public Instruction newInstance(Object[] arguments) {
+    String label = (String) arguments[0];
+    return switch (shape) {
+      case NULLARY -> ((Nullary) factory).create(label);
+      case UNARY -> ((Unary) factory).create(label, arguments[1]);
+      case UNARY_INT -> ((UnaryInt) factory).create(label, (Integer) arguments[1]);
+      case BINARY -> ((Binary) factory).create(label, arguments[1], arguments[2]);
+      case BINARY_INT -> ((BinaryInt) factory).create(label, arguments[1], (Integer) arguments[2]);
+    };
+  }
+
+  private static String operand(String[] operands, int index) {
+    return (index < operands.length) ? operands[index] : "";
+  }
+
+  private static int parseInt(String operand) {
+    try {
+      return Integer.parseInt(operand);
+    } catch (NumberFormatException e) {
+      throw new RuntimeException(operand + " is not a valid integer");
+    }
+  }
+
+  private static Object convert(Operand kind, String operand) {
+    switch (kind) {
+      case INT:
+        return parseInt(operand);
+      case REGISTER:
+        try {
+          return Registers.Register.valueOf(operand);
+        } catch (IllegalArgumentException e) {
+          throw new RuntimeException(operand + " is not a valid register");
+        }
+      default:
+        return operand;
+    }
+  }
+}
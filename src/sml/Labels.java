@@ -1,5 +1,6 @@
 package sml;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -13,7 +14,29 @@ import java.util.stream.Collectors;
  * @author Szymon Swendrowski
  */
 public final class Labels {
-  private final Map<String, Integer> labels = new HashMap<>();
+  private final Map<String, Integer> labels;
+
+  /**
+   * Constructor: an empty set of labels.
+   */
+  public Labels() {
+    this(new HashMap<>());
+  }
+
+  private Labels(Map<String, Integer> labels) {
+    this.labels = labels;
+  }
+
+  /**
+   * Returns an unmodifiable copy of the given labels; adding to it or
+   * resetting it throws {@link UnsupportedOperationException}.
+   *
+   * @param labels the labels to copy
+   * @return the unmodifiable labels
+   */
+  public static Labels copyOf(Labels labels) {
+    return new Labels(Map.copyOf(labels.labels));
+  }
 
   /**
    * Adds a label with the associated address to the map.
@@ -61,6 +84,15 @@ public final class Labels {
     return labels.get(label);
   }
 
+  /**
+   * Returns a read-only view of the labels and the addresses they refer to.
+   *
+   * @return the map from label to address
+   */
+  public Map<String, Integer> getAddresses() {
+    return Collections.unmodifiableMap(labels);
+  }
+
   /**
    * Computes the hash value of the labels.
    *
@@ -0,0 +1,50 @@
+package sml;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Represents the link phase that runs between translation and execution.
+ * <p>
+ * Every label reference in the program is resolved to an absolute address
+ * once, so that a taken branch is a plain int rather than a label lookup.
+ * Duplicate and unknown labels are reported before the program runs.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class Linker {
+  private Linker() {
+  }
+
+  /**
+   * Links the program in place, replacing each instruction by its linked form.
+   *
+   * @param labels  the labels of the program
+   * @param program the program (list of instructions)
+   * @throws IllegalArgumentException listing every duplicate or unknown label
+   */
+  public static void link(Labels labels, List<Instruction> program) {
+    List<String> errors = new ArrayList<>();
+    Set<String> defined = new HashSet<>();
+
+    for (int address = 0; address < program.size(); address++) {
+      Instruction instruction = program.get(address);
+      String label = instruction.getLabel();
+      if (label != null && !defined.add(label))
+        errors.add("Duplicate label: " + label);
+
+      try {
+        Instruction linked = instruction.link(labels);
+        if (linked != instruction)
+          program.set(address, linked);
+      } catch (IllegalArgumentException e) {
+        errors.add(e.getMessage() + " (at address " + address + ")");
+      }
+    }
+
+    if (!errors.isEmpty())
+      throw new IllegalArgumentException(String.join("\n", errors));
+  }
+}
@@ -1,16 +1,27 @@
 package sml;
 
+import sml.compact.CompactEngine;
+import sml.compact.OffHeapEngine;
+import sml.engine.ExecutionEngine;
+import sml.engine.Interpreter;
+import sml.metrics.Metrics;
+import sml.output.OutputSink;
+import sml.output.SystemOutSink;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
-import static sml.Instruction.NORMAL_PROGRAM_COUNTER_UPDATE;
-
 /**
  * Represents the machine, the context in which programs run.
  * <p>
  * An instance contains 8 registers and methods to access and change them.
+ * A machine either owns a program that is filled in and linked in place,
+ * or runs a shared, already linked {@link Program}, in which case it holds
+ * nothing of its own but its registers and program counter.
  *
  * @author Szymon Swendrowski
  */
@@ -19,19 +30,70 @@ public final class Machine {
   // of the next instruction to be executed.
   private int programCounter = 0;
 
-  private final Labels labels = new Labels();
+  // The program counter as last published by the engine, for a sampler on
+  // another thread; -1 when no instruction is running. It is written and
+  // read through opaque accesses, which are plain moves on common hardware.
+  private int publishedCounter = -1;
+  private static final VarHandle PUBLISHED_COUNTER;
+
+  static {
+    try {
+      PUBLISHED_COUNTER = MethodHandles.lookup().findVarHandle(Machine.class, "publishedCounter", int.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  // both engine and sink are stateless, so every machine can start with the same ones
+  private static final ExecutionEngine DEFAULT_ENGINE = new Interpreter();
+  private static final ExecutionEngine COMPACT_ENGINE = new CompactEngine();
+  private static final ExecutionEngine OFF_HEAP_ENGINE = new OffHeapEngine();
+  private static final OutputSink DEFAULT_OUTPUT = new SystemOutSink();
+
+  private final Labels labels;
+
+  private final List<Instruction> program;
 
-  private final List<Instruction> program = new ArrayList<>();
+  private final Program shared; // the shared, linked program, or null if the machine owns its program
 
   private final Registers registers;
 
+  // the strategy used to run the program
+  private ExecutionEngine engine = DEFAULT_ENGINE;
+
+  // where the output of the program goes
+  private OutputSink output = DEFAULT_OUTPUT;
+
   /**
-   * Constructor: a machine with 8 registers.
+   * Constructor: a machine with 8 registers and an empty program of its own.
    *
    * @param registers the registers of the machine
    */
   public Machine(Registers registers) {
+    this.labels = new Labels();
+    this.program = new ArrayList<>();
+    this.shared = null;
+    this.registers = registers;
+  }
+
+  /**
+   * Constructor: a machine with 8 registers that runs the given shared program.
+   * The program and its labels cannot be changed through the machine;
+   * a compact program is run by a {@link CompactEngine}, and an off-heap one by an
+   * {@link OffHeapEngine}, unless another engine is set.
+   *
+   * @param program   the program the machine runs
+   * @param registers the registers of the machine
+   */
+  public Machine(Program program, Registers registers) {
+    this.labels = program.getLabels();
+    this.program = program.getInstructions();
+    this.shared = program;
     this.registers = registers;
+    if (program.isCompact())
+      this.engine = COMPACT_ENGINE;
+    else if (program.isOffHeap())
+      this.engine = OFF_HEAP_ENGINE;
   }
 
   /**
@@ -52,22 +114,116 @@ public final class Machine {
     return false;
   }
 
+  /**
+   * Resolves every label reference in the program to an address.
+   *
+   * @throws IllegalArgumentException if a label is duplicated or does not exist
+   */
+  public void link() {
+    if (shared == null)
+      Linker.link(labels, program);
+  }
+
   /**
    * Execute the program in program, beginning at instruction 0.
    * Precondition: the program and its labels have been stored properly.
+   * The program is linked before the first instruction runs, and the
+   * output is flushed when it halts.
    */
   public void execute() {
+    link();
     programCounter = 0;
     registers.clear();
-    while (programCounter < program.size()) {
-      Instruction ins = program.get(programCounter);
-      int programCounterUpdate = ins.execute(this);
-      programCounter = (programCounterUpdate == NORMAL_PROGRAM_COUNTER_UPDATE)
-              ? programCounter + 1
-              : programCounterUpdate;
+    Metrics.machineStarted();
+    try {
+      programCounter = engine.run(this);
+    } finally {
+      Metrics.machineStopped();
+      output.flush();
+    }
+  }
+
+  /**
+   * Execute the program from instruction 0 with the given initial register
+   * values rather than with every register cleared.
+   * Unlike {@link #execute()} the program is not linked again, so a program
+   * linked once can be run for any number of inputs; the output is flushed
+   * when it halts.
+   *
+   * @param values the array holding the initial register values, by register ordinal
+   * @param offset the index in the array of the value of the first register
+   */
+  public void execute(int[] values, int offset) {
+    programCounter = 0;
+    registers.setAll(values, offset);
+    Metrics.machineStarted();
+    try {
+      programCounter = engine.run(this);
+    } finally {
+      Metrics.machineStopped();
+      output.flush();
     }
   }
 
+  /**
+   * Publishes the address of the instruction about to run, so that another
+   * thread can sample it; -1 means no instruction is running. The write is
+   * opaque: it is neither ordered with the other writes of the program nor
+   * made visible at once, only eventually.
+   *
+   * @param address the address of the instruction, or -1
+   */
+  public void publishProgramCounter(int address) {
+    PUBLISHED_COUNTER.setOpaque(this, address);
+  }
+
+  /**
+   * Get the program counter last published by the engine running the program.
+   * It can be read from any thread, but may lag behind the running program.
+   *
+   * @return the address of the instruction running, or -1 if none is known to be
+   */
+  public int getPublishedProgramCounter() {
+    return (int) PUBLISHED_COUNTER.getOpaque(this);
+  }
+
+  /**
+   * Get the sink the output of the program is written to.
+   *
+   * @return the output sink
+   */
+  public OutputSink getOutput() {
+    return this.output;
+  }
+
+  /**
+   * Set the sink the output of the program is written to.
+   * The sink is flushed when the program halts.
+   *
+   * @param output the output sink
+   */
+  public void setOutput(OutputSink output) {
+    this.output = Objects.requireNonNull(output);
+  }
+
+  /**
+   * Get the engine used to run the program.
+   *
+   * @return the execution engine
+   */
+  public ExecutionEngine getEngine() {
+    return this.engine;
+  }
+
+  /**
+   * Set the engine used to run the program.
+   *
+   * @param engine the execution engine
+   */
+  public void setEngine(ExecutionEngine engine) {
+    this.engine = Objects.requireNonNull(engine);
+  }
+
   /**
    * Get the labels present in the program.
    *
@@ -86,6 +242,16 @@ public final class Machine {
     return this.program;
   }
 
+  /**
+   * Gets the shared program the machine runs, which engines can keep what
+   * they derive from, since it never changes.
+   *
+   * @return the shared program, or null if the machine owns its program
+   */
+  public Program getSharedProgram() {
+    return shared;
+  }
+
   /**
    * Get the registers of the machine.
    *
@@ -1,7 +1,22 @@
 package sml;
 
+import sml.batch.BatchCommand;
+import sml.compact.CompileCache;
+import sml.compact.SmlcFile;
+import sml.output.BufferedSink;
+import sml.output.FlushPolicy;
+import sml.metrics.Metrics;
+import sml.metrics.MetricsServer;
+import sml.optimise.CountedLoopPass;
+import sml.profile.ProfileCommand;
+import sml.sweep.SweepCommand;
+import sml.workload.GenerateCommand;
+
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Represents the main class.
@@ -9,21 +24,74 @@ import java.lang.reflect.InvocationTargetException;
  * @author Szymon Swendrowski
  */
 public class Main {
+  private static final String COMPILE_OPTION = "--compile";
+  private static final String OPTIMISE_OPTION = "--optimise";
+
+  // how often the buffered program output is written out while the program runs
+  private static final long OUTPUT_FLUSH_MILLIS = 100;
+
   /**
    * Initialises the system and executes the program.
    *
-   * @param args name of the file containing the program text.
+   * @param args name of the file containing the program text (translated
+   *             through the default {@link CompileCache} if {@code sml.cache.dir} is set),
+   *             or of the program precompiled into a {@code .smlc} file,
+   *             optionally preceded by {@code --optimise} to evaluate its counted loops
+   *             in closed form (see {@link CountedLoopPass}),
+   *             or {@code --compile} followed by the source file and optionally the {@code .smlc} file,
+   *             or {@code --batch} followed by the options and files of a batch,
+   *             or {@code --sweep} followed by the file and the inputs of a sweep,
+   *             or {@code --generate} followed by the shape and size of a synthetic program,
+   *             or {@code --profile} followed by the file of a program to profile.
+   *             The {@link Metrics} are only kept when they are asked for: they are
+   *             registered with JMX when the system property {@code sml.metrics.jmx}
+   *             is {@code true}, and served over HTTP when {@code sml.metrics.port} is set,
+   *             in which case the engines also count instructions unless
+   *             {@code sml.metrics.instructions} is {@code false}.
    */
   public static void main(String... args) {
+    startMetrics();
+    if (args.length > 0 && args[0].equals(BatchCommand.OPTION)) {
+      System.exit(BatchCommand.run(System.out, Arrays.copyOfRange(args, 1, args.length)));
+    }
+    if (args.length > 0 && args[0].equals(SweepCommand.OPTION)) {
+      System.exit(SweepCommand.run(System.out, Arrays.copyOfRange(args, 1, args.length)));
+    }
+    if (args.length > 0 && args[0].equals(ProfileCommand.OPTION)) {
+      System.exit(ProfileCommand.run(System.out, Arrays.copyOfRange(args, 1, args.length)));
+    }
+    if (args.length > 0 && args[0].equals(GenerateCommand.OPTION)) {
+      System.exit(GenerateCommand.run(System.out, Arrays.copyOfRange(args, 1, args.length)));
+    }
+    if (args.length > 0 && args[0].equals(COMPILE_OPTION)) {
+      System.exit(compile(Arrays.copyOfRange(args, 1, args.length)));
+    }
+    boolean optimise = args.length > 0 && args[0].equals(OPTIMISE_OPTION);
+    if (optimise)
+      args = Arrays.copyOfRange(args, 1, args.length);
     if (args.length != 1) {
-      System.err.println("Incorrect number of arguments - Machine <file> - required");
+      System.err.println("Incorrect number of arguments - Machine [" + OPTIMISE_OPTION + "] <file> - required");
       System.exit(-1);
     }
 
     try {
-      Translator t = Translator.getInstance(args[0]);
-      Machine m = new Machine(new Registers());
-      t.readAndTranslate(m.getLabels(), m.getProgram());
+      Machine m;
+      CompileCache cache = CompileCache.getDefault();
+      if (args[0].endsWith(SmlcFile.EXTENSION)) {
+        // a precompiled program runs straight from the mapped file
+        m = new Machine(SmlcFile.load(Path.of(args[0])).toProgram(), new Registers());
+      } else if (cache != null) {
+        // an unchanged program is found in the cache rather than translated again
+        m = new Machine(cache.load(Path.of(args[0])), new Registers());
+      } else {
+        Translator t = Translator.getInstance(args[0]);
+        m = new Machine(new Registers());
+        t.readAndTranslate(m.getLabels(), m.getProgram(), ForkJoinPool.commonPool());
+        m.link();
+      }
+      if (optimise)
+        m = optimise(m);
+      m.setOutput(new BufferedSink(System.out, FlushPolicy.onTime(OUTPUT_FLUSH_MILLIS)));
 
       System.out.println("Here is the program; it has " + m.getProgram().size() + " instructions.");
       System.out.println(m);
@@ -38,4 +106,51 @@ public class Main {
       System.out.println("Error reading the program from " + args[0]);
     }
   }
+
+  // copies the program into a machine of its own, whose counted loops are evaluated in closed form
+  private static Machine optimise(Machine machine) {
+    Machine optimised = new Machine(new Registers());
+    optimised.getProgram().addAll(machine.getProgram());
+    machine.getLabels().getAddresses().forEach(optimised.getLabels()::addLabel);
+    optimised.link();
+    CountedLoopPass.apply(optimised.getLabels(), optimised.getProgram());
+    return optimised;
+  }
+
+  private static void startMetrics() {
+    boolean jmx = Boolean.getBoolean("sml.metrics.jmx");
+    if (!jmx && System.getProperty("sml.metrics.port") == null)
+      return;
+    // read by Metrics when it is loaded, so it must be set first
+    if (System.getProperty("sml.metrics.instructions") == null)
+      System.setProperty("sml.metrics.instructions", "true");
+    if (jmx)
+      Metrics.register();
+    try {
+      MetricsServer server = MetricsServer.startDefault();
+      if (server != null)
+        System.err.println("Metrics at http://localhost:" + server.getPort() + MetricsServer.PATH);
+    } catch (IOException | IllegalArgumentException e) {
+      System.err.println("Error starting the metrics server: " + e.getMessage());
+    }
+  }
+
+  // compiles the source file given in the arguments into a .smlc file
+  private static int compile(String... args) {
+    if (args.length < 1 || args.length > 2) {
+      System.err.println("Usage - Machine --compile <file> [<file>" + SmlcFile.EXTENSION + "]");
+      return -1;
+    }
+    Path source = Path.of(args[0]);
+    Path target = (args.length == 2) ? Path.of(args[1])
+            : Path.of(args[0].replaceFirst("\\.sml$", "") + SmlcFile.EXTENSION);
+    try {
+      SmlcFile.compile(source, target);
+      System.out.println("Compiled " + source + " into " + target + ".");
+      return 0;
+    } catch (IOException e) {
+      System.out.println("Error reading the program from " + source);
+      return 1;
+    }
+  }
 }
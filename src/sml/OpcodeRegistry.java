@@ -0,0 +1,47 @@
+package sml;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Represents the registry of opcodes and the instruction types that implement them.
+ * <p>
+ * An opcode such as {@code mov} is implemented by the class
+ * {@code sml.instruction.MovInstruction}. The class is discovered with
+ * reflection the first time the opcode is seen, and cached, so that
+ * translating a line is a map lookup followed by a constructor call.
+ * New instruction classes are picked up without registering them.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class OpcodeRegistry {
+  private static final String PACKAGE = "sml.instruction.";
+
+  private static final Map<String, InstructionType> TYPES = new ConcurrentHashMap<>();
+
+  private OpcodeRegistry() {
+  }
+
+  /**
+   * Returns the instruction type that implements the given opcode.
+   *
+   * @param opcode the opcode, as written in the program
+   * @return the instruction type
+   * @throws RuntimeException if there is no instruction for the opcode
+   */
+  public static InstructionType lookup(String opcode) {
+    InstructionType type = TYPES.get(opcode);
+    return (type != null) ? type : TYPES.computeIfAbsent(opcode, OpcodeRegistry::discover);
+  }
+
+  private static InstructionType discover(String opcode) {
+    String instructionName = opcode.isEmpty()
+            ? opcode
+            : opcode.substring(0, 1).toUpperCase() + opcode.substring(1).toLowerCase();
+    try {
+      return InstructionType.of(Class.forName(PACKAGE + instructionName + "Instruction"));
+    } catch (ClassNotFoundException | IllegalArgumentException e) {
+      throw new RuntimeException(instructionName + " is not a valid instruction");
+    }
+  }
+}
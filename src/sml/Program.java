@@ -0,0 +1,162 @@
+package sml;
+
+import sml.compact.CompactProgram;
+import sml.compact.OffHeapProgram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Represents a translated and linked program that can be shared.
+ * <p>
+ * A program holds its instructions, with every label reference already
+ * resolved, its labels and the name of its source, none of which can change.
+ * Any number of machines can therefore run the same program at the same
+ * time (see {@link Machine#Machine(Program, Registers)}); each of them only
+ * adds its own registers and program counter.
+ * <p>
+ * A program can also be backed by a {@link CompactProgram}, whose
+ * instructions are only created when they are read; machines run such a
+ * program straight from its arrays. An {@link OffHeapProgram} is shared the
+ * same way, with its instructions outside the heap.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class Program {
+  private final String source;
+  private final Labels labels;
+  private final List<Instruction> instructions;
+  private final CompactProgram compact; // null unless the program is compact
+  private final OffHeapProgram offHeap; // null unless the program is off the heap
+
+  private Program(String source, Labels labels, List<Instruction> instructions,
+                  CompactProgram compact, OffHeapProgram offHeap) {
+    this.source = source;
+    this.labels = labels;
+    this.instructions = instructions;
+    this.compact = compact;
+    this.offHeap = offHeap;
+  }
+
+  /**
+   * Returns the linked program of the given labels and instructions,
+   * which are copied and not changed.
+   *
+   * @param source       the name of the source of the program
+   * @param labels       the labels of the program
+   * @param instructions the instructions of the program
+   * @return the program
+   * @throws IllegalArgumentException if a label is duplicated or does not exist
+   */
+  public static Program of(String source, Labels labels, List<Instruction> instructions) {
+    Labels copy = Labels.copyOf(labels);
+    List<Instruction> linked = new ArrayList<>(instructions);
+    Linker.link(copy, linked);
+    return new Program(Objects.requireNonNull(source), copy, List.copyOf(linked), null, null);
+  }
+
+  /**
+   * Returns the program backed by the given compact program.
+   *
+   * @param source  the name of the source of the program
+   * @param compact the compact program
+   * @return the program
+   */
+  public static Program of(String source, CompactProgram compact) {
+    return new Program(Objects.requireNonNull(source), compact.getLabels(), compact.asList(), compact, null);
+  }
+
+  /**
+   * Returns the program backed by the given off-heap program.
+   *
+   * @param source  the name of the source of the program
+   * @param offHeap the off-heap program
+   * @return the program
+   */
+  public static Program of(String source, OffHeapProgram offHeap) {
+    return new Program(Objects.requireNonNull(source), offHeap.getLabels(), offHeap.asList(), null, offHeap);
+  }
+
+  /**
+   * Returns true if the program is backed by a compact program.
+   *
+   * @return True or False
+   */
+  public boolean isCompact() {
+    return compact != null;
+  }
+
+  /**
+   * Gets the compact program behind the program.
+   *
+   * @return the compact program, or null if the program is not compact
+   */
+  public CompactProgram getCompact() {
+    return compact;
+  }
+
+  /**
+   * Returns true if the program is backed by an off-heap program.
+   *
+   * @return True or False
+   */
+  public boolean isOffHeap() {
+    return offHeap != null;
+  }
+
+  /**
+   * Gets the off-heap program behind the program.
+   *
+   * @return the off-heap program, or null if the program is not off the heap
+   */
+  public OffHeapProgram getOffHeap() {
+    return offHeap;
+  }
+
+  /**
+   * Gets the name of the source the program was translated from.
+   *
+   * @return the source name
+   */
+  public String getSource() {
+    return source;
+  }
+
+  /**
+   * Get the labels present in the program (unmodifiable).
+   *
+   * @return labels present in the program
+   */
+  public Labels getLabels() {
+    return labels;
+  }
+
+  /**
+   * Get the linked instructions of the program (unmodifiable).
+   *
+   * @return the instructions
+   */
+  public List<Instruction> getInstructions() {
+    return instructions;
+  }
+
+  /**
+   * Gets the number of instructions in the program.
+   *
+   * @return the program size
+   */
+  public int size() {
+    return instructions.size();
+  }
+
+  /**
+   * String representation of the program.
+   *
+   * @return pretty formatted version of the code
+   */
+  @Override
+  public String toString() {
+    return String.join("\n", instructions.stream().map(Instruction::toString).toList());
+  }
+}
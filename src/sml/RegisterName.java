@@ -7,4 +7,11 @@ package sml;
  */
 public interface RegisterName {
   String name();
+
+  /**
+   * Returns the index of the register in the register file.
+   *
+   * @return the index of the register
+   */
+  int ordinal();
 }
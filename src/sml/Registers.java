@@ -1,21 +1,43 @@
 package sml;
 
-import java.util.*;
+import java.util.Arrays;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Represents the registers.
+ * <p>
+ * The values are kept in a dense primitive register file indexed by
+ * the ordinal of the register, so reading or writing a register
+ * neither boxes the value nor hashes the register name.
  *
  * @author Szymon Swendrowski
  */
 public final class Registers {
-  private final Map<Register, Integer> registers = new HashMap<>();
+  private static final Register[] REGISTERS = Register.values();
+
+  /**
+   * The number of registers in the machine.
+   */
+  public static final int COUNT = REGISTERS.length;
+
+  private final int[] registers = new int[COUNT];
 
   /**
    * Represents the register names.
    */
   public enum Register implements RegisterName {
-    EAX, EBX, ECX, EDX, ESP, EBP, ESI, EDI
+    EAX, EBX, ECX, EDX, ESP, EBP, ESI, EDI;
+
+    /**
+     * Returns the register with the given ordinal.
+     *
+     * @param ordinal the index of the register
+     * @return the register
+     */
+    public static Register of(int ordinal) {
+      return REGISTERS[ordinal];
+    }
   }
 
   /**
@@ -29,8 +51,7 @@ public final class Registers {
    * Clears the registers.
    */
   public void clear() {
-    for (Register register : Register.values())
-      registers.put(register, 0);
+    Arrays.fill(registers, 0);
   }
 
   /**
@@ -43,7 +64,7 @@ public final class Registers {
   @Override
   public boolean equals(Object o) {
     if (o instanceof Registers other) {
-      return registers.equals(other.registers);
+      return Arrays.equals(registers, other.registers);
     }
     return false;
   }
@@ -55,17 +76,32 @@ public final class Registers {
    * @return value
    */
   public int get(RegisterName register) {
-    return registers.get((Register) register);
+    return registers[register.ordinal()];
+  }
+
+  /**
+   * Returns the value stored in the register with the given ordinal.
+   *
+   * @param ordinal the index of the register
+   * @return value
+   */
+  public int get(int ordinal) {
+    return registers[ordinal];
   }
 
   /**
    * Computes the hash value of the registers.
+   * (Note: this is the same value the map of registers to values
+   * used to produce, i.e. the sum of the hashes of the entries.)
    *
    * @return the hash code of the registers
    */
   @Override
   public int hashCode() {
-    return registers.hashCode();
+    int hash = 0;
+    for (int i = 0; i < COUNT; i++)
+      hash += REGISTERS[i].hashCode() ^ Integer.hashCode(registers[i]);
+    return hash;
   }
 
   /**
@@ -75,7 +111,55 @@ public final class Registers {
    * @param value   new value
    */
   public void set(RegisterName register, int value) {
-    registers.put((Register) register, value);
+    registers[register.ordinal()] = value;
+  }
+
+  /**
+   * Sets the register with the given ordinal to the value.
+   *
+   * @param ordinal the index of the register
+   * @param value   new value
+   */
+  public void set(int ordinal, int value) {
+    registers[ordinal] = value;
+  }
+
+  /**
+   * Copies the register values into a new array indexed by register ordinal.
+   *
+   * @return the register values
+   */
+  public int[] toArray() {
+    return registers.clone();
+  }
+
+  /**
+   * Sets all registers from an array indexed by register ordinal.
+   *
+   * @param values the new register values
+   */
+  public void setAll(int[] values) {
+    System.arraycopy(values, 0, registers, 0, COUNT);
+  }
+
+  /**
+   * Sets all registers from part of an array indexed by register ordinal.
+   *
+   * @param values the array holding the new register values
+   * @param offset the index in the array of the value of the first register
+   */
+  public void setAll(int[] values, int offset) {
+    System.arraycopy(values, offset, registers, 0, COUNT);
+  }
+
+  /**
+   * Copies the register values into part of an array, indexed by register ordinal.
+   *
+   * @param values the array the values are copied into
+   * @param offset the index in the array for the value of the first register
+   */
+  public void copyTo(int[] values, int offset) {
+    System.arraycopy(registers, 0, values, offset, COUNT);
   }
 
   /**
@@ -85,9 +169,8 @@ public final class Registers {
    */
   @Override
   public String toString() {
-    return registers.entrySet().stream()
-            .sorted(Map.Entry.comparingByKey())
-            .map(e -> e.getKey() + " = " + e.getValue())
+    return IntStream.range(0, COUNT)
+            .mapToObj(i -> REGISTERS[i] + " = " + registers[i])
             .collect(Collectors.joining(", ", "[", "]"));
   }
 }
@@ -0,0 +1,350 @@
+package sml;
+
+import sml.compact.CompactProgram;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.util.Arrays;
+
+/**
+ * Represents the tokenizer that reads SML source straight from a byte buffer.
+ * <p>
+ * Small files are read into one heap buffer; large files are memory-mapped
+ * through a {@link FileChannel} in windows of up to 1 GiB, so sources larger
+ * than the heap (or than 2 GiB) can be read. Opcodes, registers and integers
+ * are lexed in place without creating a {@code String}; only labels are
+ * decoded. Errors report the source name, line and column.
+ * <p>
+ * A line is lexed like the original scanner did: an optional first word
+ * ending in {@code ':'} is the label, the next word is the opcode, and as
+ * many words as the instruction has operands follow; anything else on the
+ * line is ignored, and a label on a line without an instruction is dropped.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class Tokenizer implements AutoCloseable {
+  // files of at least this size are memory-mapped rather than read
+  public static final int MAP_THRESHOLD = 1 << 20;
+
+  private static final long WINDOW = 1L << 30;
+
+  private static final Registers.Register[] REGISTERS = Registers.Register.values();
+  private static final byte[][] REGISTER_NAMES = Arrays.stream(REGISTERS)
+          .map(register -> register.name().getBytes(StandardCharsets.US_ASCII))
+          .toArray(byte[][]::new);
+
+  private final String source;
+  private final FileChannel channel; // null when the whole source is in the buffer
+  private final long size;
+
+  private ByteBuffer buffer;
+  private long base;      // the offset in the source of the start of the buffer
+  private int position;   // the index of the next line in the buffer
+  private int lineStart;
+  private int lineEnd;
+  private int lineNumber;
+
+  // opcodes seen so far, matched on their bytes
+  private byte[][] opcodes = new byte[8][];
+  private InstructionType[] types = new InstructionType[8];
+  private int opcodeCount;
+
+  private InstructionType type; // the type of the instruction last lexed
+
+  private byte[] scratch = new byte[64];
+
+  /**
+   * Constructor: a tokenizer over source held in a buffer.
+   *
+   * @param source the name of the source, used in error messages
+   * @param buffer the source bytes (UTF-8), from its position to its limit
+   */
+  public Tokenizer(String source, ByteBuffer buffer) {
+    this(source, buffer, 1);
+  }
+
+  /**
+   * Constructor: a tokenizer over part of a source held in a buffer.
+   *
+   * @param source    the name of the source, used in error messages
+   * @param buffer    the source bytes (UTF-8), from its position to its limit
+   * @param firstLine the number in the whole source of the first line in the buffer
+   */
+  public Tokenizer(String source, ByteBuffer buffer, int firstLine) {
+    this.source = source;
+    this.channel = null;
+    this.buffer = buffer.slice();
+    this.size = this.buffer.limit();
+    this.lineNumber = firstLine - 1;
+  }
+
+  private Tokenizer(String source, FileChannel channel) throws IOException {
+    this.source = source;
+    this.channel = channel;
+    this.size = channel.size();
+    map(0);
+  }
+
+  /**
+   * Opens a tokenizer over the given file.
+   *
+   * @param path the file containing the SML code
+   * @return the tokenizer, which must be closed
+   * @throws IOException if the file cannot be read
+   */
+  public static Tokenizer open(Path path) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      if (channel.size() >= MAP_THRESHOLD)
+        return new Tokenizer(path.toString(), channel);
+
+      ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        // keep reading until the buffer is full
+      }
+      buffer.flip();
+      channel.close();
+      return new Tokenizer(path.toString(), buffer);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Lexes the next instruction of the source.
+   *
+   * @return the next instruction, or null at the end of the source
+   * @throws RuntimeException if the line is not a valid instruction
+   */
+  public Instruction next() {
+    Object[] arguments = lex();
+    return (arguments == null) ? null : type.newInstance(arguments);
+  }
+
+  /**
+   * Lexes the next instruction of the source straight into the given builder,
+   * without creating an instruction object if it has a compact encoding,
+   * and records the line it was on.
+   *
+   * @param builder the builder of the compact program
+   * @return false at the end of the source
+   * @throws RuntimeException         if the line is not a valid instruction
+   * @throws IllegalArgumentException if its label is a duplicate
+   */
+  public boolean next(CompactProgram.Builder builder) {
+    Object[] arguments = lex();
+    if (arguments == null)
+      return false;
+    builder.add(type, arguments);
+    builder.setLine(lineNumber);
+    return true;
+  }
+
+  // lexes the next instruction into its type and constructor arguments
+  private Object[] lex() {
+    while (nextLine()) {
+      int start = skipSpace(lineStart);
+      if (start == lineEnd)
+        continue;
+      int end = wordEnd(start);
+
+      String label = null;
+      if (buffer.get(end - 1) == ':') {
+        label = string(start, end - 1);
+        start = skipSpace(end);
+        if (start == lineEnd)
+          continue;
+        end = wordEnd(start);
+      }
+
+      type = opcode(start, end);
+      Object[] arguments = new Object[type.getOperandCount() + 1];
+      arguments[0] = label;
+      for (int i = 1; i < arguments.length; i++) {
+        start = skipSpace(end);
+        end = wordEnd(start);
+        arguments[i] = operand(type.getOperand(i - 1), start, end);
+      }
+      return arguments;
+    }
+    return null;
+  }
+
+  /**
+   * Gets the number of the line last read (starting at 1).
+   *
+   * @return the line number
+   */
+  public int getLineNumber() {
+    return lineNumber;
+  }
+
+  /**
+   * Gets the name of the source.
+   *
+   * @return the source name
+   */
+  public String getSource() {
+    return source;
+  }
+
+  /**
+   * Closes the underlying file, if any.
+   *
+   * @throws IOException if the file cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    if (channel != null)
+      channel.close();
+  }
+
+  // finds the bounds of the next line, moving the mapped window if needed
+  private boolean nextLine() {
+    if (base + position >= size)
+      return false;
+
+    int newLine = find(position);
+    if (newLine < 0 && channel != null && base + buffer.limit() < size) {
+      map(base + position);
+      newLine = find(position);
+      if (newLine < 0 && base + buffer.limit() < size)
+        throw error("Line too long", position);
+    }
+
+    lineStart = position;
+    lineEnd = (newLine < 0) ? buffer.limit() : newLine;
+    position = (newLine < 0) ? buffer.limit() : newLine + 1;
+    lineNumber++;
+    return true;
+  }
+
+  private int find(int from) {
+    int limit = buffer.limit();
+    for (int i = from; i < limit; i++)
+      if (buffer.get(i) == '\n')
+        return i;
+    return -1;
+  }
+
+  private void map(long offset) {
+    try {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW, size - offset));
+    } catch (IOException e) {
+      throw new RuntimeException("Error reading " + source + ": " + e.getMessage(), e);
+    }
+    base = offset;
+    position = 0;
+  }
+
+  private int skipSpace(int index) {
+    while (index < lineEnd && isWhitespace(buffer.get(index)))
+      index++;
+    return index;
+  }
+
+  private int wordEnd(int index) {
+    while (index < lineEnd && !isWhitespace(buffer.get(index)))
+      index++;
+    return index;
+  }
+
+  // the same characters as Character.isWhitespace, restricted to single bytes
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || (b >= '\t' && b <= '\r') || (b >= 0x1C && b <= 0x1F);
+  }
+
+  private InstructionType opcode(int start, int end) {
+    for (int i = 0; i < opcodeCount; i++)
+      if (matches(opcodes[i], start, end))
+        return types[i];
+
+    InstructionType type;
+    try {
+      type = OpcodeRegistry.lookup(string(start, end));
+    } catch (RuntimeException e) {
+      throw error(e.getMessage(), start);
+    }
+    if (opcodeCount == opcodes.length) {
+      opcodes = Arrays.copyOf(opcodes, opcodeCount * 2);
+      types = Arrays.copyOf(types, opcodeCount * 2);
+    }
+    opcodes[opcodeCount] = bytes(start, end);
+    types[opcodeCount++] = type;
+    return type;
+  }
+
+  private Object operand(InstructionType.Operand kind, int start, int end) {
+    switch (kind) {
+      case REGISTER:
+        for (int i = 0; i < REGISTERS.length; i++)
+          if (matches(REGISTER_NAMES[i], start, end))
+            return REGISTERS[i];
+        throw error(string(start, end) + " is not a valid register", start);
+      case INT:
+        return integer(start, end);
+      default:
+        return string(start, end);
+    }
+  }
+
+  private int integer(int start, int end) {
+    int index = start;
+    boolean negative = false;
+    if (index < end && (buffer.get(index) == '-' || buffer.get(index) == '+')) {
+      negative = buffer.get(index) == '-';
+      index++;
+    }
+    if (index == end)
+      throw error(string(start, end) + " is not a valid integer", start);
+
+    long value = 0;
+    for (; index < end; index++) {
+      int digit = buffer.get(index) - '0';
+      if (digit < 0 || digit > 9)
+        throw error(string(start, end) + " is not a valid integer", start);
+      value = value * 10 + digit;
+      if (value > (long) Integer.MAX_VALUE + 1)
+        throw error(string(start, end) + " is not a valid integer", start);
+    }
+    value = negative ? -value : value;
+    if (value > Integer.MAX_VALUE)
+      throw error(string(start, end) + " is not a valid integer", start);
+    return (int) value;
+  }
+
+  private boolean matches(byte[] word, int start, int end) {
+    if (word.length != end - start)
+      return false;
+    for (int i = 0; i < word.length; i++)
+      if (word[i] != buffer.get(start + i))
+        return false;
+    return true;
+  }
+
+  private byte[] bytes(int start, int end) {
+    byte[] bytes = new byte[end - start];
+    buffer.get(start, bytes);
+    return bytes;
+  }
+
+  private String string(int start, int end) {
+    int length = end - start;
+    if (scratch.length < length)
+      scratch = new byte[Math.max(length, scratch.length * 2)];
+    buffer.get(start, scratch, 0, length);
+    return new String(scratch, 0, length, StandardCharsets.UTF_8);
+  }
+
+  private RuntimeException error(String message, int index) {
+    return new RuntimeException(message + " at " + source + ":" + lineNumber
+            + ":" + (index - lineStart + 1));
+  }
+}
@@ -1,30 +1,50 @@
 package sml;
 
-import java.io.File;
+import sml.compact.CompactProgram;
+import sml.metrics.Metrics;
+
 import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 
-import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import java.util.*;
-import java.util.stream.IntStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * This class is responsible for reading the SML program from a file and
  * translating it into a program that can be executed by the machine.
  * <p>
  * The translator of a <b>S</b><b>M</b>al<b>L</b> program.
+ * <p>
+ * Translation keeps no state between calls: a translator only holds the
+ * name of its file, and the static {@code translate} methods each lex their
+ * source into a new machine with its own labels and program, and the
+ * {@code translateProgram} methods into an immutable {@link Program} that
+ * many machines can share. The {@code translateCompact} methods lex straight
+ * into a {@link CompactProgram}, creating no instruction objects at all.
+ * Any number of sources can therefore be translated at the same time on
+ * different threads.
  *
  * @author Szymon Swendrowski
  */
 public final class Translator {
-  private static Translator instance; // singleton instance
-  private final String fileName; // source file of SML code
+  /**
+   * The version of the translation, to be incremented whenever a source
+   * may translate into a different program than before.
+   */
+  public static final int VERSION = 1;
+
+  private static final String STRING_SOURCE = "<string>";
 
-  // line contains the characters in the current line that's not been processed yet
-  private String line = "";
+  private final String fileName; // source file of SML code
 
   /**
    * Constructor: an instance for the given file.
@@ -36,63 +56,245 @@ public final class Translator {
   }
 
   /**
-   * Returns the singleton instance of the translator.
+   * Returns a translator for the given file.
    *
    * @param fileName the name of the file containing the SML code
-   * @return the singleton instance of the translator
+   * @return the translator of the file
    */
   public static Translator getInstance(String fileName) {
-    if (instance == null) {
-      instance = new Translator(fileName);
+    return new Translator(fileName);
+  }
+
+  /**
+   * Translates the SML code in the given file into a new machine.
+   *
+   * @param file the file containing the SML code
+   * @return a machine holding the program and its labels
+   * @throws IOException if the file cannot be read
+   */
+  public static Machine translate(Path file) throws IOException {
+    Machine machine = new Machine(new Registers());
+    try (var tokenizer = Tokenizer.open(file)) {
+      translate(tokenizer, machine.getLabels(), machine.getProgram());
     }
-    return instance;
+    return machine;
   }
 
   /**
-   * Translates the current line into an instruction with the given label.
+   * Translates the SML code in the given file into a new machine,
+   * lexing a large file in chunks on the given pool.
    *
-   * @param label the instruction label
-   * @return the new instruction
-   * <p>
-   * The input line should consist of a single SML instruction,
-   * with its label already removed.
+   * @param file the file containing the SML code
+   * @param pool the pool the chunks of a large file are lexed on
+   * @return a machine holding the program and its labels
+   * @throws IOException if the file cannot be read
    */
-  private Instruction getInstruction(String label) {
-    if (line.isEmpty())
-      return null;
+  public static Machine translate(Path file, ForkJoinPool pool) throws IOException {
+    if (!ChunkedTranslator.isLarge(Files.size(file)))
+      return translate(file);
+    Machine machine = new Machine(new Registers());
+    ChunkedTranslator.translate(file, machine.getLabels(), machine.getProgram(), pool);
+    return machine;
+  }
+
+  /**
+   * Translates the given SML code into a new machine.
+   *
+   * @param source the SML code
+   * @return a machine holding the program and its labels
+   */
+  public static Machine translate(String source) {
+    return translate(STRING_SOURCE, source);
+  }
+
+  /**
+   * Translates the SML code read from the given reader into a new machine.
+   * The reader is read to its end but not closed.
+   *
+   * @param name   the name of the source, used in error messages
+   * @param reader the reader of the SML code
+   * @return a machine holding the program and its labels
+   * @throws IOException if the reader fails
+   */
+  public static Machine translate(String name, Reader reader) throws IOException {
+    StringBuilder source = new StringBuilder();
+    char[] buffer = new char[8192];
+    int read;
+    while ((read = reader.read(buffer)) >= 0)
+      source.append(buffer, 0, read);
+    return translate(name, source.toString());
+  }
 
-    // Extract the opcode from the line and get instruction type
-    String opcode = scan();
-    String instructionName = opcode.substring(0, 1).toUpperCase() +
-            opcode.substring(1).toLowerCase();
-    Class<?> instructionClass;
+  /**
+   * Translates the given files at the same time on the given pool.
+   *
+   * @param files the files containing the SML code
+   * @param pool  the pool the files are translated on
+   * @return a machine for each file, in the order of the files
+   * @throws IOException if a file cannot be read
+   */
+  public static List<Machine> translateAll(List<Path> files, ForkJoinPool pool) throws IOException {
+    List<ForkJoinTask<Machine>> tasks = new ArrayList<>(files.size());
+    for (Path file : files)
+      tasks.add(pool.submit(() -> {
+        try {
+          return translate(file);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }));
+
+    List<Machine> machines = new ArrayList<>(files.size());
     try {
-      instructionClass = Class.forName("sml.instruction."
-              + instructionName + "Instruction");
-    } catch (ClassNotFoundException e) {
-      throw new RuntimeException(instructionName + " is not a valid instruction");
+      for (ForkJoinTask<Machine> task : tasks)
+        machines.add(task.join());
+    } catch (UncheckedIOException e) {
+      tasks.forEach(task -> task.cancel(false));
+      throw e.getCause();
     }
+    return machines;
+  }
 
-    // Get the candidate constructor and the number of parameters
-    Constructor<?>[] classConstructors = instructionClass.getConstructors();
-    int parameterCount = classConstructors[0].getParameterCount();
+  /**
+   * Translates the SML code in the given file into a linked program that
+   * any number of machines can share.
+   *
+   * @param file the file containing the SML code
+   * @return the program
+   * @throws IOException              if the file cannot be read
+   * @throws IllegalArgumentException if a label is duplicated or does not exist
+   */
+  public static Program translateProgram(Path file) throws IOException {
+    return toProgram(file.toString(), translate(file));
+  }
 
-    // Get the arguments from the line
-    List<String> arguments = new ArrayList<>();
-    arguments.add(label);
-    IntStream.range(0, parameterCount - 1).mapToObj(i -> scan()).forEach(arguments::add);
+  /**
+   * Translates the SML code in the given file into a linked program that
+   * any number of machines can share, lexing a large file in chunks on the given pool.
+   *
+   * @param file the file containing the SML code
+   * @param pool the pool the chunks of a large file are lexed on
+   * @return the program
+   * @throws IOException              if the file cannot be read
+   * @throws IllegalArgumentException if a label is duplicated or does not exist
+   */
+  public static Program translateProgram(Path file, ForkJoinPool pool) throws IOException {
+    return toProgram(file.toString(), translate(file, pool));
+  }
 
-    return InstructionFactory.getInstruction(instructionClass, arguments);
+  /**
+   * Translates the given SML code into a linked program that any number of machines can share.
+   *
+   * @param source the SML code
+   * @return the program
+   * @throws IllegalArgumentException if a label is duplicated or does not exist
+   */
+  public static Program translateProgram(String source) {
+    return toProgram(STRING_SOURCE, translate(source));
   }
 
-  private String getLabel() {
-    String word = scan();
-    if (word.endsWith(":"))
-      return word.substring(0, word.length() - 1);
+  /**
+   * Translates the SML code read from the given reader into a linked program
+   * that any number of machines can share. The reader is read to its end but not closed.
+   *
+   * @param name   the name of the source, used in error messages
+   * @param reader the reader of the SML code
+   * @return the program
+   * @throws IOException              if the reader fails
+   * @throws IllegalArgumentException if a label is duplicated or does not exist
+   */
+  public static Program translateProgram(String name, Reader reader) throws IOException {
+    return toProgram(name, translate(name, reader));
+  }
 
-    // undo scanning the word
-    line = word + " " + line;
-    return null;
+  /**
+   * Translates the SML code in the given file into a compact program that
+   * any number of machines can share.
+   *
+   * @param file the file containing the SML code
+   * @return the program, backed by a {@link CompactProgram}
+   * @throws IOException              if the file cannot be read
+   * @throws IllegalArgumentException if a label is duplicated or does not exist
+   */
+  public static Program translateCompact(Path file) throws IOException {
+    try (var tokenizer = Tokenizer.open(file)) {
+      return Program.of(file.toString(), translate(tokenizer));
+    }
+  }
+
+  /**
+   * Translates the given SML code into a compact program that any number of machines can share.
+   *
+   * @param source the SML code
+   * @return the program, backed by a {@link CompactProgram}
+   * @throws IllegalArgumentException if a label is duplicated or does not exist
+   */
+  public static Program translateCompact(String source) {
+    return translateCompact(STRING_SOURCE, ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Translates the SML code in the given buffer into a compact program that
+   * any number of machines can share.
+   *
+   * @param name   the name of the source, used in error messages
+   * @param source the SML code (UTF-8), from the position to the limit of the buffer
+   * @return the program, backed by a {@link CompactProgram}
+   * @throws IllegalArgumentException if a label is duplicated or does not exist
+   */
+  public static Program translateCompact(String name, ByteBuffer source) {
+    return Program.of(name, translate(new Tokenizer(name, source)));
+  }
+
+  // lex every instruction of the tokenizer into a compact program
+  private static CompactProgram translate(Tokenizer tokenizer) {
+    long start = System.nanoTime();
+    CompactProgram.Builder builder = new CompactProgram.Builder();
+    try {
+      while (tokenizer.next(builder)) {
+        // each line goes straight into the arrays of the builder
+      }
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(e.getMessage() + " at "
+              + tokenizer.getSource() + ":" + tokenizer.getLineNumber(), e);
+    }
+    CompactProgram program = builder.build();
+    Metrics.translated(System.nanoTime() - start);
+    return program;
+  }
+
+  private static Program toProgram(String source, Machine machine) {
+    return Program.of(source, machine.getLabels(), machine.getProgram());
+  }
+
+  private static Machine translate(String name, String source) {
+    Machine machine = new Machine(new Registers());
+    Tokenizer tokenizer = new Tokenizer(name, ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+    translate(tokenizer, machine.getLabels(), machine.getProgram());
+    return machine;
+  }
+
+  // lex every instruction of the tokenizer into the labels and the program
+  private static void translate(Tokenizer tokenizer, Labels labels, List<Instruction> program) {
+    long start = System.nanoTime();
+    labels.reset();
+    program.clear();
+
+    // Each iteration lexes one instruction straight from the source bytes
+    Instruction instruction;
+    while ((instruction = tokenizer.next()) != null) {
+      String label = instruction.getLabel();
+      if (label != null) {
+        try {
+          labels.addLabel(label, program.size());
+        } catch (IllegalArgumentException e) {
+          throw new IllegalArgumentException(e.getMessage() + " at "
+                  + tokenizer.getSource() + ":" + tokenizer.getLineNumber(), e);
+        }
+      }
+      program.add(instruction);
+    }
+    Metrics.translated(System.nanoTime() - start);
   }
 
   // translate the small program in the file into lab (the labels) and
@@ -114,41 +316,36 @@ public final class Translator {
           throws IOException, ClassNotFoundException,
           InvocationTargetException, InstantiationException,
           IllegalAccessException {
-    try (var sc = new Scanner(new File(fileName), StandardCharsets.UTF_8)) {
-      labels.reset();
-      program.clear();
-
-      // Each iteration processes line and reads the next input line into "line"
-      while (sc.hasNextLine()) {
-        line = sc.nextLine();
-        String label = getLabel();
-
-        Instruction instruction = getInstruction(label);
-        if (instruction != null) {
-          if (label != null)
-            labels.addLabel(label, program.size());
-          program.add(instruction);
-        }
-      }
+    try (var tokenizer = Tokenizer.open(Path.of(fileName))) {
+      translate(tokenizer, labels, program);
     }
   }
 
   /**
-   * Return the first word of line and remove it from line.
-   * If there is no word, return "".
+   * Reads the SML code from the file and translates it into a list of instructions,
+   * lexing large files in chunks on the given pool. The labels and the program
+   * are the same as those of {@link #readAndTranslate(Labels, List)}.
    *
-   * @return the first word of line or "" if there is no word
+   * @param labels  the labels of the instructions
+   * @param program the program (list of instructions)
+   * @param pool    the pool the chunks of a large file are lexed on
+   * @throws IOException               if the file cannot be read
+   * @throws ClassNotFoundException    if the instruction class cannot be found
+   * @throws InvocationTargetException if the instruction constructor cannot be invoked
+   * @throws InstantiationException    if the instruction cannot be instantiated
+   * @throws IllegalAccessException    if the instruction constructor is not accessible
    */
-  private String scan() {
-    line = line.trim();
-
-    for (int i = 0; i < line.length(); i++)
-      if (Character.isWhitespace(line.charAt(i))) {
-        String word = line.substring(0, i);
-        line = line.substring(i);
-        return word;
-      }
-
-    return line;
+  public void readAndTranslate(Labels labels, List<Instruction> program, ForkJoinPool pool)
+          throws IOException, ClassNotFoundException,
+          InvocationTargetException, InstantiationException,
+          IllegalAccessException {
+    Path path = Path.of(fileName);
+    if (!ChunkedTranslator.isLarge(Files.size(path))) {
+      readAndTranslate(labels, program);
+      return;
+    }
+    labels.reset();
+    program.clear();
+    ChunkedTranslator.translate(path, labels, program, pool);
   }
 }
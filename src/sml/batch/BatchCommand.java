@@ -0,0 +1,129 @@
+package sml.batch;
+
+import sml.Program;
+import sml.Translator;
+import sml.compact.CompileCache;
+import sml.profile.SampleHistogram;
+import sml.profile.Sampler;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents the batch mode of the command line:
+ * <pre>
+ *   --batch [--threads n | --virtual] [--repeat n] [--no-cache] [--sample] file...
+ * </pre>
+ * Every file is run (n times with {@code --repeat}, translating it only once)
+ * on a machine of its own. A line with the final registers, followed by the
+ * captured output, is printed for each job as it completes, and the
+ * throughput and latency of the batch are printed at the end. When the
+ * default {@link CompileCache} is configured, files are found in it when
+ * they have not changed, unless {@code --no-cache} is given. With {@code --sample} every job runs
+ * under one {@link Sampler}, and the histogram of each program is printed
+ * after the statistics.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class BatchCommand {
+  public static final String OPTION = "--batch";
+
+  private static final String USAGE =
+          "Usage - Machine --batch [--threads <n> | --virtual] [--repeat <n>] [--no-cache] [--sample] <file>...";
+
+  private BatchCommand() {
+  }
+
+  /**
+   * Runs the batch described by the given arguments (those after {@code --batch}).
+   *
+   * @param out  where the results are printed
+   * @param args the options and files
+   * @return the exit status: 0 if every job succeeded, 1 if any failed, -1 on bad arguments
+   */
+  public static int run(PrintStream out, String... args) {
+    int threads = Runtime.getRuntime().availableProcessors();
+    boolean virtual = false;
+    int repeat = 0;
+    CompileCache cache = CompileCache.getDefault();
+    boolean sample = false;
+    List<Path> files = new ArrayList<>();
+    try {
+      for (int i = 0; i < args.length; i++) {
+        switch (args[i]) {
+          case "--threads" -> threads = positive(args, ++i);
+          case "--virtual" -> virtual = true;
+          case "--repeat" -> repeat = positive(args, ++i);
+          case "--no-cache" -> cache = null;
+          case "--sample" -> sample = true;
+          default -> files.add(Path.of(args[i]));
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage() + " - " + USAGE);
+      return -1;
+    }
+    if (files.isEmpty()) {
+      System.err.println("No files - " + USAGE);
+      return -1;
+    }
+
+    List<BatchJob> jobs = new ArrayList<>();
+    for (Path file : files) {
+      if (repeat == 0) {
+        jobs.add((cache == null) ? BatchJob.of(file) : BatchJob.of(file, cache));
+        continue;
+      }
+      try {
+        Program program = (cache == null) ? Translator.translateProgram(file) : cache.load(file);
+        jobs.addAll(BatchJob.copies(program, repeat));
+      } catch (IOException | RuntimeException e) {
+        System.err.println("Error reading the program from " + file + ": " + e.getMessage());
+        return -1;
+      }
+    }
+
+    Sampler sampler = sample ? Sampler.start() : null;
+    BatchStatistics statistics;
+    try (sampler; BatchExecutor executor = virtual ? BatchExecutor.virtualThreads() : BatchExecutor.forkJoin(threads)) {
+      if (sampler != null)
+        executor.setEngine(sampler::engine);
+      statistics = executor.run(jobs, result -> {
+        out.println(result);
+        out.print(result.getOutput());
+      });
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return 1;
+    }
+    out.println(statistics);
+
+    // the histograms are complete once the sampler is closed
+    if (sampler != null) {
+      try {
+        for (SampleHistogram histogram : sampler.getHistograms())
+          histogram.write(out);
+      } catch (IOException e) {
+        System.err.println("Error: " + e.getMessage());
+        return 1;
+      }
+    }
+    return (statistics.getFailures() == 0) ? 0 : 1;
+  }
+
+  private static int positive(String[] args, int index) {
+    if (index >= args.length)
+      throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+    try {
+      int value = Integer.parseInt(args[index]);
+      if (value > 0)
+        return value;
+    } catch (NumberFormatException e) {
+      // reported below
+    }
+    throw new IllegalArgumentException(args[index] + " is not a positive number for " + args[index - 1]);
+  }
+}
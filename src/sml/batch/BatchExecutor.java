@@ -0,0 +1,157 @@
+package sml.batch;
+
+import sml.Machine;
+import sml.engine.ExecutionEngine;
+import sml.output.BufferedSink;
+import sml.output.FlushPolicy;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Represents the executor of batches of independent programs.
+ * <p>
+ * Each job is loaded into a machine of its own on the thread that runs it,
+ * with its output captured in memory, so jobs share nothing but their
+ * (immutable) instructions. Results are handed to the caller as the jobs
+ * complete, and the throughput and latency of the whole batch are returned
+ * once the last one has finished.
+ * <p>
+ * Jobs run on any {@link ExecutorService}; {@link #forkJoin(int)} and
+ * {@link #virtualThreads()} create the two usual ones.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class BatchExecutor implements AutoCloseable {
+  private final ExecutorService executor;
+  private Supplier<? extends ExecutionEngine> engines; // null to keep the engine each machine picks
+
+  /**
+   * Constructor: an executor running the jobs on the given service,
+   * which is shut down when the executor is closed.
+   *
+   * @param executor the service the jobs run on
+   */
+  public BatchExecutor(ExecutorService executor) {
+    this.executor = Objects.requireNonNull(executor);
+  }
+
+  /**
+   * Returns an executor running the jobs on a fork-join pool of platform threads.
+   *
+   * @param parallelism the number of threads
+   * @return the executor
+   */
+  public static BatchExecutor forkJoin(int parallelism) {
+    return new BatchExecutor(new ForkJoinPool(parallelism));
+  }
+
+  /**
+   * Returns an executor running every job on a thread of its own. On a
+   * runtime with virtual threads (Java 21 and later) these are virtual
+   * threads; otherwise they are pooled daemon platform threads.
+   *
+   * @return the executor
+   */
+  public static BatchExecutor virtualThreads() {
+    try {
+      var factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return new BatchExecutor((ExecutorService) factory.invoke(null));
+    } catch (ReflectiveOperationException e) {
+      return new BatchExecutor(Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "sml-batch");
+        thread.setDaemon(true);
+        return thread;
+      }));
+    }
+  }
+
+  /**
+   * Sets how each job gets the engine its program runs on;
+   * an engine that is {@link AutoCloseable} is closed after its job.
+   * Until it is set, each job runs on the engine its machine picks for
+   * its program, such as the compact engine for a compact program.
+   *
+   * @param engines creates an engine for each job
+   */
+  public void setEngine(Supplier<? extends ExecutionEngine> engines) {
+    this.engines = Objects.requireNonNull(engines);
+  }
+
+  /**
+   * Runs the given jobs, handing each result to the listener as its job completes.
+   * The listener is called on the calling thread.
+   *
+   * @param jobs     the jobs to run
+   * @param listener receives the result of each job
+   * @return the statistics of the batch
+   * @throws InterruptedException if the calling thread is interrupted while waiting
+   */
+  public BatchStatistics run(List<BatchJob> jobs, Consumer<? super BatchResult> listener)
+          throws InterruptedException {
+    CompletionService<BatchResult> completion = new ExecutorCompletionService<>(executor);
+    long start = System.nanoTime();
+    for (int i = 0; i < jobs.size(); i++) {
+      int index = i;
+      BatchJob job = jobs.get(i);
+      completion.submit(() -> run(index, job));
+    }
+
+    long[] latencies = new long[jobs.size()];
+    int failures = 0;
+    for (int i = 0; i < jobs.size(); i++) {
+      BatchResult result;
+      try {
+        result = completion.take().get();
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("Batch job escaped its handler", e.getCause());
+      }
+      latencies[i] = result.getNanos();
+      if (!result.succeeded())
+        failures++;
+      listener.accept(result);
+    }
+    return new BatchStatistics(failures, System.nanoTime() - start, latencies);
+  }
+
+  private BatchResult run(int index, BatchJob job) {
+    long start = System.nanoTime();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ExecutionEngine engine = null;
+    try {
+      Machine machine = job.load();
+      if (engines != null) {
+        engine = engines.get();
+        machine.setEngine(engine);
+      }
+      machine.setOutput(new BufferedSink(output, FlushPolicy.onHalt()));
+      machine.execute();
+      return new BatchResult(index, job.getName(), machine.getRegisters(),
+              output.toString(StandardCharsets.UTF_8), System.nanoTime() - start, null);
+    } catch (Exception | StackOverflowError e) {
+      return new BatchResult(index, job.getName(), null,
+              output.toString(StandardCharsets.UTF_8), System.nanoTime() - start, e);
+    } finally {
+      if (engine instanceof AutoCloseable closeable) {
+        try {
+          closeable.close();
+        } catch (Exception e) {
+          // the job is over; an engine that fails to close changes nothing
+        }
+      }
+    }
+  }
+
+  /**
+   * Shuts down the service the jobs run on.
+   */
+  @Override
+  public void close() {
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,119 @@
+package sml.batch;
+
+import sml.Machine;
+import sml.Program;
+import sml.Registers;
+import sml.Translator;
+import sml.compact.CompileCache;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Represents one program to be run by a {@link BatchExecutor}.
+ * <p>
+ * A job only says how to load its machine; the machine is created on the
+ * thread that runs the job, so every job has its own machine and registers,
+ * while jobs that run the same {@link Program} share its instructions.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class BatchJob {
+  /**
+   * Represents how a job loads its machine.
+   */
+  @FunctionalInterface
+  public interface Loader {
+    /**
+     * Loads a new machine holding the program of the job.
+     *
+     * @return the machine
+     * @throws IOException if the program cannot be read
+     */
+    Machine load() throws IOException;
+  }
+
+  private final String name;
+  private final Loader loader;
+
+  /**
+   * Constructor: a job with the given name and loader.
+   *
+   * @param name   the name the job is reported under
+   * @param loader loads a new machine holding the program
+   */
+  public BatchJob(String name, Loader loader) {
+    this.name = Objects.requireNonNull(name);
+    this.loader = Objects.requireNonNull(loader);
+  }
+
+  /**
+   * Returns a job that translates and runs the given file.
+   *
+   * @param file the file containing the SML code
+   * @return the job
+   */
+  public static BatchJob of(Path file) {
+    return new BatchJob(file.toString(), () -> Translator.translate(file));
+  }
+
+  /**
+   * Returns a job that runs the given file, translating it only if the
+   * cache holds no entry for its contents.
+   *
+   * @param file  the file containing the SML code
+   * @param cache the compile cache
+   * @return the job
+   */
+  public static BatchJob of(Path file, CompileCache cache) {
+    return new BatchJob(file.toString(), () -> new Machine(cache.load(file), new Registers()));
+  }
+
+  /**
+   * Returns a job that translates and runs the given SML code.
+   *
+   * @param name   the name of the job
+   * @param source the SML code
+   * @return the job
+   */
+  public static BatchJob of(String name, String source) {
+    return new BatchJob(name, () -> Translator.translate(source));
+  }
+
+  /**
+   * Returns jobs that each run the given program on a machine of their own;
+   * the program is translated once and shared by all of them.
+   *
+   * @param program the translated program
+   * @param copies  the number of jobs
+   * @return the jobs, named after the source of the program and the number of each copy
+   */
+  public static List<BatchJob> copies(Program program, int copies) {
+    List<BatchJob> jobs = new ArrayList<>(copies);
+    for (int i = 0; i < copies; i++)
+      jobs.add(new BatchJob(program.getSource() + "#" + i, () -> new Machine(program, new Registers())));
+    return jobs;
+  }
+
+  /**
+   * Gets the name of the job.
+   *
+   * @return the name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Loads a new machine holding the program of the job.
+   *
+   * @return the machine
+   * @throws IOException if the program cannot be read
+   */
+  public Machine load() throws IOException {
+    return loader.load();
+  }
+}
@@ -0,0 +1,112 @@
+package sml.batch;
+
+import sml.Registers;
+
+/**
+ * Represents the outcome of one job of a batch.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class BatchResult {
+  private final int index;
+  private final String name;
+  private final Registers registers;
+  private final String output;
+  private final long nanos;
+  private final Throwable error;
+
+  /**
+   * Constructor: the outcome of a job.
+   *
+   * @param index     the position of the job in the batch
+   * @param name      the name of the job
+   * @param registers the registers of the machine when the program halted (null on failure)
+   * @param output    the output of the program
+   * @param nanos     the time taken to load and run the program, in nanoseconds
+   * @param error     what made the job fail, or null if it succeeded
+   */
+  BatchResult(int index, String name, Registers registers, String output, long nanos, Throwable error) {
+    this.index = index;
+    this.name = name;
+    this.registers = registers;
+    this.output = output;
+    this.nanos = nanos;
+    this.error = error;
+  }
+
+  /**
+   * Gets the position of the job in the batch.
+   *
+   * @return the index of the job
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  /**
+   * Gets the name of the job.
+   *
+   * @return the name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Gets the registers of the machine when the program halted.
+   *
+   * @return the registers, or null if the job failed
+   */
+  public Registers getRegisters() {
+    return registers;
+  }
+
+  /**
+   * Gets the output of the program.
+   *
+   * @return the captured output
+   */
+  public String getOutput() {
+    return output;
+  }
+
+  /**
+   * Gets the time taken to load and run the program.
+   *
+   * @return the latency in nanoseconds
+   */
+  public long getNanos() {
+    return nanos;
+  }
+
+  /**
+   * Gets what made the job fail.
+   *
+   * @return the error, or null if the job succeeded
+   */
+  public Throwable getError() {
+    return error;
+  }
+
+  /**
+   * Returns true if the job ran to completion.
+   *
+   * @return True or False
+   */
+  public boolean succeeded() {
+    return error == null;
+  }
+
+  /**
+   * Computes the string representation of the result, as one report line.
+   *
+   * @return the string representation of the result
+   */
+  @Override
+  public String toString() {
+    String time = String.format("%.3f ms", nanos / 1e6);
+    return succeeded()
+            ? name + ": " + registers + " in " + time
+            : name + ": failed in " + time + ": " + error;
+  }
+}
@@ -0,0 +1,94 @@
+package sml.batch;
+
+import java.util.Arrays;
+
+/**
+ * Represents the throughput and latency of a finished batch.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class BatchStatistics {
+  private final int jobs;
+  private final int failures;
+  private final long wallNanos;
+  private final long[] latencies; // sorted, in nanoseconds
+
+  BatchStatistics(int failures, long wallNanos, long[] latencies) {
+    this.jobs = latencies.length;
+    this.failures = failures;
+    this.wallNanos = wallNanos;
+    this.latencies = latencies.clone();
+    Arrays.sort(this.latencies);
+  }
+
+  /**
+   * Gets the number of jobs in the batch.
+   *
+   * @return the number of jobs
+   */
+  public int getJobs() {
+    return jobs;
+  }
+
+  /**
+   * Gets the number of jobs that failed.
+   *
+   * @return the number of failed jobs
+   */
+  public int getFailures() {
+    return failures;
+  }
+
+  /**
+   * Gets the time from the start of the batch until its last job finished.
+   *
+   * @return the wall-clock time in nanoseconds
+   */
+  public long getWallNanos() {
+    return wallNanos;
+  }
+
+  /**
+   * Gets the number of jobs finished per second.
+   *
+   * @return the throughput
+   */
+  public double getThroughput() {
+    return (wallNanos == 0) ? 0 : jobs * 1e9 / wallNanos;
+  }
+
+  /**
+   * Gets the latency of a job at the given percentile.
+   *
+   * @param percentile the percentile, from 0 to 100
+   * @return the latency in nanoseconds, or 0 for an empty batch
+   */
+  public long getLatency(double percentile) {
+    if (jobs == 0)
+      return 0;
+    int index = (int) Math.ceil(percentile / 100 * jobs) - 1;
+    return latencies[Math.max(0, Math.min(jobs - 1, index))];
+  }
+
+  /**
+   * Gets the mean latency of a job.
+   *
+   * @return the mean latency in nanoseconds, or 0 for an empty batch
+   */
+  public double getMeanLatency() {
+    return (jobs == 0) ? 0 : Arrays.stream(latencies).average().orElse(0);
+  }
+
+  /**
+   * Computes the string representation of the statistics.
+   *
+   * @return the string representation of the statistics
+   */
+  @Override
+  public String toString() {
+    return String.format("%d jobs (%d failed) in %.3f s, %.1f jobs/s; latency ms:"
+                    + " mean %.3f, p50 %.3f, p90 %.3f, p99 %.3f, max %.3f",
+            jobs, failures, wallNanos / 1e9, getThroughput(), getMeanLatency() / 1e6,
+            getLatency(50) / 1e6, getLatency(90) / 1e6, getLatency(99) / 1e6, getLatency(100) / 1e6);
+  }
+}
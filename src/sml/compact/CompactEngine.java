@@ -0,0 +1,133 @@
+package sml.compact;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+import sml.engine.ExecutionEngine;
+import sml.instruction.DivInstruction;
+import sml.instruction.WowInstruction;
+import sml.metrics.Metrics;
+import sml.output.OutputSink;
+
+import static sml.Instruction.NORMAL_PROGRAM_COUNTER_UPDATE;
+import static sml.engine.Bytecode.*;
+
+/**
+ * Represents the engine that runs a {@link CompactProgram} straight from its
+ * parallel arrays, in one switch-dispatch loop over a local copy of the registers.
+ * <p>
+ * A machine whose program is not the view of a compact program has it
+ * converted first, so the engine can run any program; the register values
+ * it leaves behind are identical to those of the object interpreter.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class CompactEngine implements ExecutionEngine {
+  /**
+   * Runs the program of the given machine.
+   *
+   * @param machine the machine whose program is run
+   * @return the program counter at which execution stopped
+   */
+  @Override
+  public int run(Machine machine) {
+    CompactProgram program = CompactProgram.from(machine.getProgram())
+            .orElseGet(() -> CompactProgram.of(machine.getProgram()));
+    return run(machine, program);
+  }
+
+  /**
+   * Runs the given compact program on the given machine, counting the
+   * instructions it executes if the {@link Metrics} are {@link Metrics#COUNTING}.
+   *
+   * @param machine the machine providing the registers and the output
+   * @param program the compact program
+   * @return the program counter at which execution stopped
+   */
+  public static int run(Machine machine, CompactProgram program) {
+    Registers registers = machine.getRegisters();
+    OutputSink output = machine.getOutput();
+    byte[] op = program.op;
+    byte[] a = program.a;
+    byte[] b = program.b;
+    int[] imm = program.imm;
+    Instruction[] calls = program.calls;
+    int[] r = registers.toArray();
+
+    int pc = 0;
+    final int end = op.length;
+    int start = 0; // the address the straight run being executed started at
+    long executed = 0;
+    while (pc < end) {
+      switch (op[pc]) {
+        case MOV -> r[a[pc]] = imm[pc];
+        case ADD -> r[a[pc]] += r[b[pc]];
+        case SUB -> r[a[pc]] -= r[b[pc]];
+        case MUL -> r[a[pc]] *= r[b[pc]];
+        case DIV -> {
+          int divisor = r[b[pc]];
+          if (divisor == 0) {
+            Metrics.divisionByZero();
+            output.write(DivInstruction.DIVISION_BY_ZERO);
+          } else
+            r[a[pc]] /= divisor;
+        }
+        case OUT -> output.writeInt(r[a[pc]]);
+        case WOW -> {
+          for (int i = imm[pc]; i > 0; i--)
+            output.writeLine(WowInstruction.WOW);
+        }
+        case JNZ -> {
+          if (r[a[pc]] != 0) {
+            if (Metrics.COUNTING)
+              executed = Metrics.count(executed, pc + 1 - start);
+            pc = start = imm[pc];
+            continue;
+          }
+        }
+        case ADD_JNZ -> {
+          if ((r[a[pc]] += r[b[pc]]) != 0) {
+            if (Metrics.COUNTING)
+              executed = Metrics.count(executed, pc + 1 - start);
+            pc = start = imm[pc];
+            continue;
+          }
+        }
+        case SUB_JNZ -> {
+          if ((r[a[pc]] -= r[b[pc]]) != 0) {
+            if (Metrics.COUNTING)
+              executed = Metrics.count(executed, pc + 1 - start);
+            pc = start = imm[pc];
+            continue;
+          }
+        }
+        case MUL_JNZ -> {
+          if ((r[a[pc]] *= r[b[pc]]) != 0) {
+            if (Metrics.COUNTING)
+              executed = Metrics.count(executed, pc + 1 - start);
+            pc = start = imm[pc];
+            continue;
+          }
+        }
+        case CALL -> {
+          registers.setAll(r);
+          int update = calls[imm[pc]].execute(machine);
+          r = registers.toArray();
+          if (update != NORMAL_PROGRAM_COUNTER_UPDATE) {
+            if (Metrics.COUNTING)
+              executed = Metrics.count(executed, pc + 1 - start);
+            pc = start = update;
+            continue;
+          }
+        }
+        default -> throw new IllegalStateException("Invalid opcode " + op[pc] + " at " + pc);
+      }
+      pc++;
+    }
+
+    registers.setAll(r);
+    if (Metrics.COUNTING)
+      Metrics.executed(executed + pc - start);
+    return pc;
+  }
+}
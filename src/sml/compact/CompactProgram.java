@@ -0,0 +1,388 @@
+package sml.compact;
+
+import sml.Instruction;
+import sml.InstructionType;
+import sml.Labels;
+import sml.RegisterName;
+import sml.Registers;
+import sml.instruction.*;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+import static sml.engine.Bytecode.*;
+
+/**
+ * Represents a linked program stored as parallel primitive arrays.
+ * <p>
+ * Instruction {@code i} is {@code op[i]}, with register operands
+ * {@code a[i]} and {@code b[i]} (register ordinals) and the immediate
+ * {@code imm[i]} (a value, a count, or the address a jump goes to).
+ * The opcodes are those of {@link sml.engine.Bytecode}. Label names are
+ * interned in a side table, and the address of each labelled instruction is
+ * kept in a sorted array, so a program of plain instructions takes 11 bytes
+ * per instruction however long it is. Instructions without an encoding are
+ * kept as objects in a second side table and run through {@code CALL}.
+ * <p>
+ * {@link CompactEngine} runs the arrays directly; {@link Instruction}
+ * objects are only created, one at a time, when {@link #asList()} is read,
+ * as {@code Machine.toString} does.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class CompactProgram {
+  // the instruction classes the tokenizer can hand over without creating them
+  private static final Map<Class<?>, Integer> OPCODES = Map.of(
+          MovInstruction.class, MOV, AddInstruction.class, ADD, SubInstruction.class, SUB,
+          MulInstruction.class, MUL, DivInstruction.class, DIV, OutInstruction.class, OUT,
+          WowInstruction.class, WOW, JnzInstruction.class, JNZ);
+
+  final byte[] op;
+  final byte[] a;
+  final byte[] b;
+  final int[] imm;
+  final Instruction[] calls;
+  final int[] lines;                   // the source line of each instruction, or null
+  private final int[] labelled;        // the addresses of labelled instructions, ascending
+  private final String[] names;        // the label of each of them
+  private final Labels labels;
+
+  CompactProgram(byte[] op, byte[] a, byte[] b, int[] imm, Instruction[] calls, Labels labels, int[] lines) {
+    this.op = op;
+    this.a = a;
+    this.b = b;
+    this.imm = imm;
+    this.lines = lines;
+    this.labels = Labels.copyOf(labels);
+
+    var entries = new ArrayList<>(labels.getAddresses().entrySet());
+    entries.sort(Map.Entry.comparingByValue());
+    this.labelled = entries.stream().mapToInt(Map.Entry::getValue).toArray();
+    this.names = entries.stream().map(Map.Entry::getKey).toArray(String[]::new);
+
+    // instructions without an encoding resolve their own labels
+    this.calls = calls;
+    for (int i = 0; i < calls.length; i++)
+      calls[i] = calls[i].link(this.labels);
+  }
+
+  /**
+   * Returns the compact form of the given program, whose labels are
+   * those of its instructions.
+   *
+   * @param program the program (list of instructions)
+   * @return the compact program
+   * @throws IllegalArgumentException if a label is duplicated or does not exist
+   */
+  public static CompactProgram of(List<Instruction> program) {
+    Builder builder = new Builder();
+    for (Instruction instruction : program)
+      builder.add(instruction);
+    return builder.build();
+  }
+
+  /**
+   * Gets the number of instructions in the program.
+   *
+   * @return the program size
+   */
+  public int size() {
+    return op.length;
+  }
+
+  /**
+   * Get the labels present in the program (unmodifiable).
+   *
+   * @return labels present in the program
+   */
+  public Labels getLabels() {
+    return labels;
+  }
+
+  /**
+   * Creates the instruction at the given address.
+   *
+   * @param address the address of the instruction
+   * @return a new instruction, equal to the one that was translated (linked)
+   */
+  public Instruction getInstruction(int address) {
+    return decode(address, op[address], a[address], b[address], imm[address], this::labelAt, calls, labels);
+  }
+
+  // creates the linked instruction of the given encoding
+  static Instruction decode(int address, int op, int a, int b, int imm,
+                            IntFunction<String> labelAt, Instruction[] calls, Labels labels) {
+    String label = labelAt.apply(address);
+    RegisterName ra = Registers.Register.of(a);
+    RegisterName rb = Registers.Register.of(b);
+    Instruction instruction = switch (op) {
+      case MOV -> new MovInstruction(label, ra, imm);
+      case ADD -> new AddInstruction(label, ra, rb);
+      case SUB -> new SubInstruction(label, ra, rb);
+      case MUL -> new MulInstruction(label, ra, rb);
+      case DIV -> new DivInstruction(label, ra, rb);
+      case OUT -> new OutInstruction(label, ra);
+      case WOW -> new WowInstruction(label, imm);
+      case JNZ -> new JnzInstruction(label, ra, labelAt.apply(imm));
+      case ADD_JNZ -> new ArithmeticJnzInstruction(label, ArithmeticJnzInstruction.Operator.ADD, ra, rb,
+              labelAt.apply(imm));
+      case SUB_JNZ -> new ArithmeticJnzInstruction(label, ArithmeticJnzInstruction.Operator.SUB, ra, rb,
+              labelAt.apply(imm));
+      case MUL_JNZ -> new ArithmeticJnzInstruction(label, ArithmeticJnzInstruction.Operator.MUL, ra, rb,
+              labelAt.apply(imm));
+      default -> calls[imm];
+    };
+    return instruction.link(labels);
+  }
+
+  /**
+   * Gets the number of the source line the instruction at the given address was translated from.
+   *
+   * @param address the address of the instruction
+   * @return the line number (starting at 1), or 0 if the program has no line map
+   */
+  public int getLine(int address) {
+    Objects.checkIndex(address, op.length);
+    return (lines == null) ? 0 : lines[address];
+  }
+
+  /**
+   * Returns an unmodifiable list view of the program, whose instructions
+   * are created when they are read.
+   *
+   * @return the instructions
+   */
+  public List<Instruction> asList() {
+    return new InstructionList(this);
+  }
+
+  private String labelAt(int address) {
+    int index = Arrays.binarySearch(labelled, address);
+    return (index < 0) ? null : names[index];
+  }
+
+  /**
+   * Represents the list view of a compact program.
+   */
+  static final class InstructionList extends AbstractList<Instruction> implements RandomAccess {
+    private final CompactProgram program;
+
+    InstructionList(CompactProgram program) {
+      this.program = program;
+    }
+
+    CompactProgram program() {
+      return program;
+    }
+
+    @Override
+    public Instruction get(int index) {
+      Objects.checkIndex(index, program.size());
+      return program.getInstruction(index);
+    }
+
+    @Override
+    public int size() {
+      return program.size();
+    }
+  }
+
+  /**
+   * Returns the compact program behind the given list, if it is the view of one.
+   *
+   * @param program the program (list of instructions)
+   * @return the compact program, or an empty optional
+   */
+  public static Optional<CompactProgram> from(List<Instruction> program) {
+    return (program instanceof InstructionList list) ? Optional.of(list.program()) : Optional.empty();
+  }
+
+  /**
+   * Represents the builder of a compact program, which takes instructions
+   * in address order and resolves jump targets once all labels are known.
+   */
+  public static final class Builder {
+    private byte[] op = new byte[1024];
+    private byte[] a = new byte[1024];
+    private byte[] b = new byte[1024];
+    private int[] imm = new int[1024]; // jump targets hold a label id until built
+    private int size;
+    private int[] lines; // null until a line is set
+
+    private final List<Instruction> calls = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private int[] addresses = new int[64]; // by label id, -1 until the label is defined
+    private int[] labelled = new int[64];    // the addresses of labelled instructions, ascending
+    private int[] labelledIds = new int[64];
+    private int labelledCount;
+
+    /**
+     * Adds the instruction of the given type, from its constructor arguments
+     * as the tokenizer lexes them, without creating the instruction if it has an encoding.
+     *
+     * @param type      the instruction type
+     * @param arguments the label followed by the operands
+     * @throws IllegalArgumentException if the label is a duplicate
+     */
+    public void add(InstructionType type, Object[] arguments) {
+      Integer code = OPCODES.get(type.getType());
+      if (code == null) {
+        add(type.newInstance(arguments));
+        return;
+      }
+      int address = grow();
+      define((String) arguments[0], address);
+      op[address] = (byte) (int) code;
+      switch (code) {
+        case MOV -> {
+          a[address] = ordinal(arguments[1]);
+          imm[address] = (Integer) arguments[2];
+        }
+        case OUT -> a[address] = ordinal(arguments[1]);
+        case WOW -> imm[address] = (Integer) arguments[1];
+        case JNZ -> {
+          a[address] = ordinal(arguments[1]);
+          imm[address] = id((String) arguments[2]);
+        }
+        default -> {
+          a[address] = ordinal(arguments[1]);
+          b[address] = ordinal(arguments[2]);
+        }
+      }
+    }
+
+    /**
+     * Adds the given instruction.
+     *
+     * @param instruction the instruction
+     * @throws IllegalArgumentException if its label is a duplicate
+     */
+    public void add(Instruction instruction) {
+      int address = grow();
+      define(instruction.getLabel(), address);
+      if (instruction instanceof MovInstruction ins) {
+        encode(address, MOV, ins.getResult(), null, ins.getValue());
+      } else if (instruction instanceof AddInstruction ins) {
+        encode(address, ADD, ins.getResult(), ins.getSource(), 0);
+      } else if (instruction instanceof SubInstruction ins) {
+        encode(address, SUB, ins.getResult(), ins.getSource(), 0);
+      } else if (instruction instanceof MulInstruction ins) {
+        encode(address, MUL, ins.getResult(), ins.getSource(), 0);
+      } else if (instruction instanceof DivInstruction ins) {
+        encode(address, DIV, ins.getResult(), ins.getSource(), 0);
+      } else if (instruction instanceof OutInstruction ins) {
+        encode(address, OUT, ins.getSource(), null, 0);
+      } else if (instruction instanceof WowInstruction ins) {
+        encode(address, WOW, null, null, ins.getTimes());
+      } else if (instruction instanceof JnzInstruction ins) {
+        encode(address, JNZ, ins.getSource(), null, id(ins.getTarget()));
+      } else if (instruction instanceof ArithmeticJnzInstruction ins) {
+        encode(address, opcode(ins.getOperator()), ins.getResult(), ins.getSource(), id(ins.getTarget()));
+      } else {
+        encode(address, CALL, null, null, calls.size());
+        calls.add(instruction);
+      }
+    }
+
+    /**
+     * Sets the number of the source line the instruction last added was translated from.
+     *
+     * @param line the line number (starting at 1)
+     */
+    public void setLine(int line) {
+      if (lines == null)
+        lines = new int[op.length];
+      else if (lines.length < op.length)
+        lines = Arrays.copyOf(lines, op.length);
+      lines[size - 1] = line;
+    }
+
+    /**
+     * Gets the number of instructions added so far.
+     *
+     * @return the number of instructions
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Resolves every jump target and returns the compact program.
+     *
+     * @return the compact program
+     * @throws IllegalArgumentException listing every unknown label
+     */
+    public CompactProgram build() {
+      List<String> errors = new ArrayList<>();
+      for (int address = 0; address < size; address++) {
+        if (op[address] < JNZ || op[address] == CALL)
+          continue;
+        int target = addresses[imm[address]];
+        if (target < 0)
+          errors.add("Label does not exist: " + names.get(imm[address]) + " (at address " + address + ")");
+        imm[address] = target;
+      }
+      if (!errors.isEmpty())
+        throw new IllegalArgumentException(String.join("\n", errors));
+      Labels labels = new Labels();
+      for (int i = 0; i < labelledCount; i++)
+        labels.addLabel(names.get(labelledIds[i]), labelled[i]);
+      return new CompactProgram(Arrays.copyOf(op, size), Arrays.copyOf(a, size), Arrays.copyOf(b, size),
+              Arrays.copyOf(imm, size), calls.toArray(new Instruction[0]), labels,
+              (lines == null) ? null : Arrays.copyOf(lines, size));
+    }
+
+    private int grow() {
+      if (size == op.length) {
+        int capacity = op.length * 2;
+        op = Arrays.copyOf(op, capacity);
+        a = Arrays.copyOf(a, capacity);
+        b = Arrays.copyOf(b, capacity);
+        imm = Arrays.copyOf(imm, capacity);
+      }
+      return size++;
+    }
+
+    private void define(String label, int address) {
+      if (label == null)
+        return;
+      int id = id(label);
+      if (addresses[id] >= 0) {
+        size--;
+        throw new IllegalArgumentException("Duplicate label: " + label);
+      }
+      addresses[id] = address;
+      if (labelledCount == labelled.length) {
+        labelled = Arrays.copyOf(labelled, labelledCount * 2);
+        labelledIds = Arrays.copyOf(labelledIds, labelledCount * 2);
+      }
+      labelled[labelledCount] = address;
+      labelledIds[labelledCount++] = id;
+    }
+
+    private int id(String label) {
+      Integer id = ids.get(label);
+      if (id != null)
+        return id;
+      id = names.size();
+      ids.put(label, id);
+      names.add(label);
+      if (id == addresses.length)
+        addresses = Arrays.copyOf(addresses, id * 2);
+      addresses[id] = -1;
+      return id;
+    }
+
+    private static byte ordinal(Object register) {
+      return (byte) ((RegisterName) register).ordinal();
+    }
+
+    private void encode(int address, int code, RegisterName ra, RegisterName rb, int value) {
+      op[address] = (byte) code;
+      a[address] = (ra == null) ? 0 : (byte) ra.ordinal();
+      b[address] = (rb == null) ? 0 : (byte) rb.ordinal();
+      imm[address] = value;
+    }
+  }
+}
@@ -0,0 +1,275 @@
+package sml.compact;
+
+import sml.Program;
+import sml.Translator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Represents the on-disk cache of translated programs, held as {@code .smlc} files.
+ * <p>
+ * An entry is keyed by the SHA-256 hash of the source bytes together with
+ * {@link #VERSION}, which covers both {@link Translator#VERSION} and
+ * {@link SmlcFile#VERSION}, so an edited source, a new translation or a new
+ * file format never finds a stale entry. Entries are written to a temporary file and atomically moved
+ * into place, so any number of JVMs can share one directory: a reader only
+ * ever sees a complete file, and two writers of one key write the same bytes.
+ * A hit marks its entry as used, and once the directory grows beyond its
+ * maximum size the least recently used entries are deleted.
+ * <p>
+ * A hit and a miss both return a compact program on the heap: a hit expands
+ * the mapped entry rather than running from it, so a program runs on the
+ * same engine whether or not it was found in the cache.
+ * <p>
+ * There is no default cache unless it is asked for: the system property
+ * {@code sml.cache.dir} names its directory (with {@code off} meaning none),
+ * and {@code sml.cache.size} sets its maximum size in bytes.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class CompileCache {
+  // the version of the translation and the encoding; a change to either makes every entry stale
+  public static final String VERSION = "sml-" + Translator.VERSION + "." + SmlcFile.VERSION;
+  public static final long DEFAULT_MAX_SIZE = 256L << 20;
+
+  private static final String DISABLED = "off";
+  private static final String TEMPORARY = ".tmp";
+
+  private final Path directory;
+  private final long maxSize;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * Constructor: a cache in the given directory, which is created if needed.
+   *
+   * @param directory the directory holding the entries
+   * @param maxSize   the size in bytes beyond which the least recently used entries are deleted
+   * @throws IOException if the directory cannot be created
+   */
+  public CompileCache(Path directory, long maxSize) throws IOException {
+    if (maxSize <= 0)
+      throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+    this.directory = Files.createDirectories(directory);
+    this.maxSize = maxSize;
+  }
+
+  private static final class Default {
+    private static final CompileCache INSTANCE = create();
+
+    private static CompileCache create() {
+      String directory = System.getProperty("sml.cache.dir");
+      if (directory == null || directory.equals(DISABLED))
+        return null;
+      try {
+        return new CompileCache(Path.of(directory),
+                Long.getLong("sml.cache.size", DEFAULT_MAX_SIZE));
+      } catch (IOException | RuntimeException e) {
+        return null; // an unusable cache only means every program is translated
+      }
+    }
+  }
+
+  /**
+   * Returns the cache configured by the system properties, shared by the whole JVM.
+   *
+   * @return the default cache, or null if it is not asked for or cannot be created
+   */
+  public static CompileCache getDefault() {
+    return Default.INSTANCE;
+  }
+
+  /**
+   * Returns the program in the given file, translating it only if the cache
+   * holds no entry for its contents.
+   *
+   * @param file the file containing the SML code
+   * @return the program
+   * @throws IOException              if the file cannot be read
+   * @throws IllegalArgumentException if a label is duplicated or does not exist
+   */
+  public Program load(Path file) throws IOException {
+    return load(file.toString(), Files.readAllBytes(file));
+  }
+
+  /**
+   * Returns the program of the given SML code, translating it only if the
+   * cache holds no entry for it.
+   *
+   * @param name   the name of the source
+   * @param source the SML code (UTF-8)
+   * @return the program, backed by a {@link CompactProgram}
+   * @throws IllegalArgumentException if a label is duplicated or does not exist
+   */
+  public Program load(String name, byte[] source) {
+    Path entry = directory.resolve(key(source) + SmlcFile.EXTENSION);
+    try {
+      SmlcFile file = SmlcFile.load(entry);
+      hits.incrementAndGet();
+      touch(entry);
+      return Program.of(name, file.toCompactProgram());
+    } catch (NoSuchFileException e) {
+      // a miss
+    } catch (IOException e) {
+      delete(entry); // a corrupt or foreign file is replaced
+    }
+
+    misses.incrementAndGet();
+    Program program = Translator.translateCompact(name, ByteBuffer.wrap(source));
+    try {
+      store(program.getCompact(), name, entry);
+      evict();
+    } catch (IOException | IllegalArgumentException e) {
+      // the program is still returned if it cannot be stored
+    }
+    return program;
+  }
+
+  /**
+   * Returns the key of the given SML code.
+   *
+   * @param source the SML code (UTF-8)
+   * @return the hexadecimal SHA-256 hash of the version and the code
+   */
+  public static String key(byte[] source) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(VERSION.getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+      return HexFormat.of().formatHex(digest.digest(source));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  // writes the entry to a file of its own, then moves it into place in one step
+  private void store(CompactProgram program, String name, Path entry) throws IOException {
+    Path temporary = Files.createTempFile(directory, entry.getFileName().toString(), TEMPORARY);
+    try {
+      SmlcFile.write(program, name, temporary);
+      try {
+        Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  private static void touch(Path entry) {
+    try {
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException e) {
+      // the entry may have been evicted by another JVM; it is still mapped
+    }
+  }
+
+  private void delete(Path entry) {
+    try {
+      Files.deleteIfExists(entry);
+    } catch (IOException e) {
+      // left for the next eviction
+    }
+  }
+
+  private record Entry(Path path, long size, FileTime used) {
+  }
+
+  // deletes the least recently used entries until the cache fits in its maximum size
+  private void evict() throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    long total = 0;
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path path : (Iterable<Path>) files::iterator) {
+        if (!path.getFileName().toString().endsWith(SmlcFile.EXTENSION))
+          continue;
+        try {
+          BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+          entries.add(new Entry(path, attributes.size(), attributes.lastModifiedTime()));
+          total += attributes.size();
+        } catch (NoSuchFileException e) {
+          // evicted by another JVM meanwhile
+        }
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    if (total <= maxSize)
+      return;
+
+    entries.sort(Comparator.comparing(Entry::used));
+    for (Entry entry : entries) {
+      if (total <= maxSize)
+        break;
+      delete(entry.path());
+      total -= entry.size();
+      evictions.incrementAndGet();
+    }
+  }
+
+  /**
+   * Gets the directory holding the entries.
+   *
+   * @return the cache directory
+   */
+  public Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Gets the number of programs found in the cache.
+   *
+   * @return the number of hits
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * Gets the number of programs that had to be translated.
+   *
+   * @return the number of misses
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Gets the number of entries deleted to keep the cache within its size.
+   *
+   * @return the number of evictions
+   */
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  /**
+   * String representation of the cache counters.
+   *
+   * @return the directory, hits, misses and evictions
+   */
+  @Override
+  public String toString() {
+    return "Compile cache " + directory + ": " + hits + " hits, " + misses + " misses, "
+            + evictions + " evictions";
+  }
+}
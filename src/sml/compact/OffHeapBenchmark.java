@@ -0,0 +1,146 @@
+package sml.compact;
+
+import sml.Machine;
+import sml.Program;
+import sml.Registers;
+import sml.Translator;
+import sml.output.NullSink;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Represents the benchmark of an off-heap program against the
+ * {@code List<Instruction>} program it replaces.
+ * <p>
+ * Each variant translates one large straight-line program and runs it on
+ * several threads at once, every thread with its own machine sharing the
+ * program. The heap retained by the program (measured after a full
+ * collection), the direct and mapped buffer memory, and the number and
+ * time of collections during the runs are reported for each.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class OffHeapBenchmark {
+  private static final String[] BODY = {"add EBX EAX", "sub ECX EAX", "mul EDX EAX", "mov EAX 3"};
+
+  private OffHeapBenchmark() {
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args optional number of instructions (default 1000000), threads (default 4)
+   *             and runs per thread (default 10)
+   * @throws Exception if a run fails or the temporary file cannot be written
+   */
+  public static void main(String... args) throws Exception {
+    int size = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000_000;
+    int threads = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+    int runs = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+    String source = source(size);
+    System.out.println("Instructions: " + size + ", threads: " + threads + ", runs per thread: " + runs);
+
+    Path file = Files.createTempFile("sml", ".code");
+    try {
+      // the first round warms up the engines
+      for (int round = 1; round <= 2; round++) {
+        System.out.println("Round " + round);
+        report("list", () -> Translator.translateProgram(source), threads, runs);
+        report("off-heap", () -> Program.of("<string>",
+                OffHeapProgram.of(Translator.translateCompact(source).getCompact())), threads, runs);
+        report("mapped", () -> {
+          try {
+            return Program.of(file.toString(),
+                    OffHeapProgram.map(Translator.translateCompact(source).getCompact(), file));
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }, threads, runs);
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private static String source(int size) {
+    StringBuilder source = new StringBuilder(size * 12);
+    source.append("mov EAX 3\n");
+    for (int i = 1; i < size; i++) {
+      if (i % 64 == 0)
+        source.append('l').append(i).append(": ");
+      source.append(BODY[i % BODY.length]).append('\n');
+    }
+    return source.toString();
+  }
+
+  private static void report(String name, Supplier<Program> translate, int threads, int runs)
+          throws Exception {
+    long before = heapUsed();
+    Program program = translate.get();
+    long retained = Math.max(0, heapUsed() - before);
+    long buffers = bufferMemory();
+
+    long collections = collections();
+    long collectionTime = collectionTime();
+    long start = System.nanoTime();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Integer>> results = new ArrayList<>();
+      for (int t = 0; t < threads; t++)
+        results.add(executor.submit(() -> {
+          Machine machine = new Machine(program, new Registers());
+          machine.setOutput(NullSink.INSTANCE);
+          for (int run = 0; run < runs; run++)
+            machine.execute();
+          return machine.getRegisters().get(Registers.Register.EBX);
+        }));
+      for (Future<Integer> result : results)
+        result.get();
+    } finally {
+      executor.shutdown();
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    System.out.printf("%-8s heap retained %6.1f MiB, buffers %6.1f MiB, %.3f s, %.1f M instructions/s, "
+                    + "%d collections taking %d ms%n",
+            name, retained / 1048576.0, buffers / 1048576.0, seconds,
+            (double) program.size() * threads * runs / seconds / 1e6,
+            collections() - collections, collectionTime() - collectionTime);
+  }
+
+  private static long heapUsed() {
+    for (int i = 0; i < 3; i++)
+      System.gc();
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  private static long bufferMemory() {
+    return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+            .mapToLong(BufferPoolMXBean::getMemoryUsed).sum();
+  }
+
+  private static long collections() {
+    return ManagementFactory.getGarbageCollectorMXBeans().stream()
+            .mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+  }
+
+  private static long collectionTime() {
+    return ManagementFactory.getGarbageCollectorMXBeans().stream()
+            .mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+  }
+}
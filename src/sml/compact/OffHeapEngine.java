@@ -0,0 +1,141 @@
+package sml.compact;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+import sml.engine.ExecutionEngine;
+import sml.instruction.DivInstruction;
+import sml.instruction.WowInstruction;
+import sml.metrics.Metrics;
+import sml.output.OutputSink;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+
+import static sml.Instruction.NORMAL_PROGRAM_COUNTER_UPDATE;
+import static sml.compact.OffHeapProgram.INSTRUCTION_SIZE;
+import static sml.engine.Bytecode.*;
+
+/**
+ * Represents the engine that runs an {@link OffHeapProgram}, reading each
+ * instruction from outside the heap through {@link VarHandle} views of its
+ * buffer in one switch-dispatch loop over a local copy of the registers.
+ * <p>
+ * A machine whose program is not the view of an off-heap program has it
+ * copied off the heap first, so the engine can run any program; the
+ * register values it leaves behind are identical to those of the object interpreter.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class OffHeapEngine implements ExecutionEngine {
+  private static final VarHandle INT = OffHeapProgram.INT;
+
+  /**
+   * Runs the program of the given machine.
+   *
+   * @param machine the machine whose program is run
+   * @return the program counter at which execution stopped
+   */
+  @Override
+  public int run(Machine machine) {
+    OffHeapProgram program = OffHeapProgram.from(machine.getProgram())
+            .orElseGet(() -> OffHeapProgram.of(CompactProgram.of(machine.getProgram())));
+    return run(machine, program);
+  }
+
+  /**
+   * Runs the given off-heap program on the given machine, counting the
+   * instructions it executes if the {@link Metrics} are {@link Metrics#COUNTING}.
+   *
+   * @param machine the machine providing the registers and the output
+   * @param program the off-heap program
+   * @return the program counter at which execution stopped
+   */
+  public static int run(Machine machine, OffHeapProgram program) {
+    Registers registers = machine.getRegisters();
+    OutputSink output = machine.getOutput();
+    ByteBuffer code = program.code;
+    Instruction[] calls = program.calls;
+    int[] r = registers.toArray();
+
+    int pc = 0;
+    final int end = program.size();
+    int start = 0; // the address the straight run being executed started at
+    long executed = 0;
+    while (pc < end) {
+      int offset = pc * INSTRUCTION_SIZE;
+      int word = (int) INT.get(code, offset);
+      int a = (word >>> 8) & 0xFF;
+      int b = (word >>> 16) & 0xFF;
+      switch (word & 0xFF) {
+        case MOV -> r[a] = (int) INT.get(code, offset + 4);
+        case ADD -> r[a] += r[b];
+        case SUB -> r[a] -= r[b];
+        case MUL -> r[a] *= r[b];
+        case DIV -> {
+          int divisor = r[b];
+          if (divisor == 0) {
+            Metrics.divisionByZero();
+            output.write(DivInstruction.DIVISION_BY_ZERO);
+          } else
+            r[a] /= divisor;
+        }
+        case OUT -> output.writeInt(r[a]);
+        case WOW -> {
+          for (int i = (int) INT.get(code, offset + 4); i > 0; i--)
+            output.writeLine(WowInstruction.WOW);
+        }
+        case JNZ -> {
+          if (r[a] != 0) {
+            if (Metrics.COUNTING)
+              executed = Metrics.count(executed, pc + 1 - start);
+            pc = start = (int) INT.get(code, offset + 4);
+            continue;
+          }
+        }
+        case ADD_JNZ -> {
+          if ((r[a] += r[b]) != 0) {
+            if (Metrics.COUNTING)
+              executed = Metrics.count(executed, pc + 1 - start);
+            pc = start = (int) INT.get(code, offset + 4);
+            continue;
+          }
+        }
+        case SUB_JNZ -> {
+          if ((r[a] -= r[b]) != 0) {
+            if (Metrics.COUNTING)
+              executed = Metrics.count(executed, pc + 1 - start);
+            pc = start = (int) INT.get(code, offset + 4);
+            continue;
+          }
+        }
+        case MUL_JNZ -> {
+          if ((r[a] *= r[b]) != 0) {
+            if (Metrics.COUNTING)
+              executed = Metrics.count(executed, pc + 1 - start);
+            pc = start = (int) INT.get(code, offset + 4);
+            continue;
+          }
+        }
+        case CALL -> {
+          registers.setAll(r);
+          int update = calls[(int) INT.get(code, offset + 4)].execute(machine);
+          r = registers.toArray();
+          if (update != NORMAL_PROGRAM_COUNTER_UPDATE) {
+            if (Metrics.COUNTING)
+              executed = Metrics.count(executed, pc + 1 - start);
+            pc = start = update;
+            continue;
+          }
+        }
+        default -> throw new IllegalStateException("Invalid opcode " + (word & 0xFF) + " at " + pc);
+      }
+      pc++;
+    }
+
+    registers.setAll(r);
+    if (Metrics.COUNTING)
+      Metrics.executed(executed + pc - start);
+    return pc;
+  }
+}
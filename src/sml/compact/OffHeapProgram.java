@@ -0,0 +1,189 @@
+package sml.compact;
+
+import sml.Instruction;
+import sml.Labels;
+
+import java.io.IOException;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.util.*;
+
+/**
+ * Represents a linked program whose encoded instructions live outside the
+ * Java heap, in a direct or memory-mapped (file-backed) buffer.
+ * <p>
+ * Instruction {@code i} takes the {@link #INSTRUCTION_SIZE} bytes at
+ * {@code i * INSTRUCTION_SIZE}: an int holding the opcode and the two
+ * register operands ({@code op | a << 8 | b << 16}) followed by the
+ * immediate, both little-endian, with the encoding of {@link CompactProgram}.
+ * They are read through {@link VarHandle} views of the buffer, which never
+ * move its position, so any number of threads can share one read-only program.
+ * The heap only holds the labels and the instructions run through {@code CALL},
+ * so the work of the garbage collector does not grow with the program.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class OffHeapProgram {
+  public static final int INSTRUCTION_SIZE = 8;
+
+  // views of the buffer as little-endian ints, at any byte offset
+  static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+  final ByteBuffer code;
+  final Instruction[] calls;
+  private final int size;
+  private final Labels labels;
+  private final int[] labelled;     // the addresses of labelled instructions, ascending
+  private final String[] names;     // the label of each of them
+
+  OffHeapProgram(ByteBuffer code, int size, Instruction[] calls, Labels labels) {
+    this.code = code.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    this.size = size;
+    this.calls = calls;
+    this.labels = labels;
+
+    var entries = new ArrayList<>(labels.getAddresses().entrySet());
+    entries.sort(Map.Entry.comparingByValue());
+    this.labelled = entries.stream().mapToInt(Map.Entry::getValue).toArray();
+    this.names = entries.stream().map(Map.Entry::getKey).toArray(String[]::new);
+  }
+
+  /**
+   * Copies the given compact program into a direct buffer.
+   *
+   * @param program the compact program
+   * @return the off-heap program
+   */
+  public static OffHeapProgram of(CompactProgram program) {
+    ByteBuffer code = ByteBuffer.allocateDirect(program.size() * INSTRUCTION_SIZE);
+    encode(program, code);
+    return new OffHeapProgram(code, program.size(), program.calls, program.getLabels());
+  }
+
+  /**
+   * Writes the given compact program to the given file and maps it back read-only,
+   * so the instructions are held by the page cache rather than by the process.
+   * The file is overwritten.
+   *
+   * @param program the compact program
+   * @param file    the file backing the instructions
+   * @return the off-heap program
+   * @throws IOException if the file cannot be written or mapped
+   */
+  public static OffHeapProgram map(CompactProgram program, Path file) throws IOException {
+    long length = (long) program.size() * INSTRUCTION_SIZE;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      MappedByteBuffer code = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+      encode(program, code);
+      code.force();
+      return new OffHeapProgram(channel.map(FileChannel.MapMode.READ_ONLY, 0, length),
+              program.size(), program.calls, program.getLabels());
+    }
+  }
+
+  static void encode(CompactProgram program, ByteBuffer code) {
+    for (int address = 0; address < program.size(); address++) {
+      int offset = address * INSTRUCTION_SIZE;
+      INT.set(code, offset, (program.op[address] & 0xFF)
+              | (program.a[address] & 0xFF) << 8 | (program.b[address] & 0xFF) << 16);
+      INT.set(code, offset + 4, program.imm[address]);
+    }
+  }
+
+  /**
+   * Gets the number of instructions in the program.
+   *
+   * @return the program size
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the number of bytes the instructions take outside the heap.
+   *
+   * @return the size of the code in bytes
+   */
+  public long byteSize() {
+    return (long) size * INSTRUCTION_SIZE;
+  }
+
+  /**
+   * Get the labels present in the program (unmodifiable).
+   *
+   * @return labels present in the program
+   */
+  public Labels getLabels() {
+    return labels;
+  }
+
+  /**
+   * Creates the instruction at the given address.
+   *
+   * @param address the address of the instruction
+   * @return a new instruction, equal to the one that was translated (linked)
+   */
+  public Instruction getInstruction(int address) {
+    Objects.checkIndex(address, size);
+    int word = (int) INT.get(code, address * INSTRUCTION_SIZE);
+    int imm = (int) INT.get(code, address * INSTRUCTION_SIZE + 4);
+    return CompactProgram.decode(address, word & 0xFF, (word >>> 8) & 0xFF, (word >>> 16) & 0xFF,
+            imm, this::labelAt, calls, labels);
+  }
+
+  /**
+   * Returns an unmodifiable list view of the program, whose instructions
+   * are created when they are read.
+   *
+   * @return the instructions
+   */
+  public List<Instruction> asList() {
+    return new InstructionList(this);
+  }
+
+  /**
+   * Returns the off-heap program behind the given list, if it is the view of one.
+   *
+   * @param program the program (list of instructions)
+   * @return the off-heap program, or an empty optional
+   */
+  public static Optional<OffHeapProgram> from(List<Instruction> program) {
+    return (program instanceof InstructionList list) ? Optional.of(list.program) : Optional.empty();
+  }
+
+  private String labelAt(int address) {
+    int index = Arrays.binarySearch(labelled, address);
+    return (index < 0) ? null : names[index];
+  }
+
+  /**
+   * Represents the list view of an off-heap program.
+   */
+  private static final class InstructionList extends AbstractList<Instruction> implements RandomAccess {
+    private final OffHeapProgram program;
+
+    InstructionList(OffHeapProgram program) {
+      this.program = program;
+    }
+
+    @Override
+    public Instruction get(int index) {
+      return program.getInstruction(index);
+    }
+
+    @Override
+    public int size() {
+      return program.size();
+    }
+  }
+}
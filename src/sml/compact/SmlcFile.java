@@ -0,0 +1,294 @@
+package sml.compact;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Program;
+import sml.Registers;
+import sml.Tokenizer;
+import sml.Translator;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.util.Arrays;
+
+import static sml.compact.OffHeapProgram.INSTRUCTION_SIZE;
+import static sml.engine.Bytecode.*;
+
+/**
+ * Represents a translated program precompiled into the binary {@code .smlc}
+ * format, and the loader that memory-maps it.
+ * <p>
+ * The format is little-endian throughout:
+ * <pre>
+ *   header        magic "SMLC", version, flags, instruction count,
+ *                 label count, call count, source name length (7 ints)
+ *   instructions  8 bytes each, encoded as in {@link OffHeapProgram}
+ *   line map      the source line of each instruction (an int each), if flag 1 is set
+ *   labels        address, name length and UTF-8 name of each label
+ *   calls         length and UTF-8 text of each instruction run through CALL
+ *   source        the UTF-8 name of the source
+ * </pre>
+ * A loaded file runs straight from the mapping through {@link #toProgram()},
+ * or is expanded into arrays through {@link #toCompactProgram()}; either way
+ * nothing is parsed but the labels and the few instructions without an encoding.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class SmlcFile {
+  public static final String EXTENSION = ".smlc";
+  public static final int VERSION = 1;
+
+  private static final int MAGIC = 0x434C4D53; // "SMLC", little-endian
+  private static final int HEADER_SIZE = 7 * Integer.BYTES;
+  private static final int LINE_MAP = 1;
+
+  private final String source;
+  private final ByteBuffer code;
+  private final int size;
+  private final IntBuffer lines;      // a view of the mapped line map, or null
+  private final Labels labels;
+  private final Instruction[] calls;
+
+  private SmlcFile(String source, ByteBuffer code, int size, IntBuffer lines, Labels labels, Instruction[] calls) {
+    this.source = source;
+    this.code = code;
+    this.size = size;
+    this.lines = lines;
+    this.labels = labels;
+    this.calls = calls;
+  }
+
+  /**
+   * Translates the given SML file and writes it in the binary format.
+   *
+   * @param source the file containing the SML code
+   * @param target the file the program is written to; it is overwritten
+   * @throws IOException              if a file cannot be read or written
+   * @throws IllegalArgumentException if a label is duplicated or does not exist
+   */
+  public static void compile(Path source, Path target) throws IOException {
+    write(Translator.translateCompact(source).getCompact(), source.toString(), target);
+  }
+
+  /**
+   * Writes the given program in the binary format.
+   *
+   * @param program the compact program
+   * @param source  the name of the source of the program
+   * @param target  the file the program is written to; it is overwritten
+   * @throws IOException              if the file cannot be written
+   * @throws IllegalArgumentException if an instruction without an encoding cannot be read back
+   */
+  public static void write(CompactProgram program, String source, Path target) throws IOException {
+    byte[][] names = program.getLabels().getAddresses().keySet().stream()
+            .map(name -> name.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+    byte[][] calls = new byte[program.calls.length][];
+    for (int i = 0; i < calls.length; i++)
+      calls[i] = text(program.calls[i]);
+    byte[] sourceName = source.getBytes(StandardCharsets.UTF_8);
+
+    int size = program.size();
+    long length = HEADER_SIZE + (long) size * INSTRUCTION_SIZE
+            + ((program.lines == null) ? 0 : (long) size * Integer.BYTES)
+            + Arrays.stream(names).mapToLong(name -> 2L * Integer.BYTES + name.length).sum()
+            + Arrays.stream(calls).mapToLong(call -> Integer.BYTES + call.length).sum()
+            + sourceName.length;
+    if (length > Integer.MAX_VALUE)
+      throw new IllegalArgumentException("Program of " + size + " instructions is too large");
+
+    ByteBuffer buffer = ByteBuffer.allocate((int) length).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC).putInt(VERSION).putInt((program.lines == null) ? 0 : LINE_MAP)
+            .putInt(size).putInt(names.length).putInt(calls.length).putInt(sourceName.length);
+    OffHeapProgram.encode(program, buffer.slice(HEADER_SIZE, size * INSTRUCTION_SIZE));
+    buffer.position(HEADER_SIZE + size * INSTRUCTION_SIZE);
+    if (program.lines != null)
+      for (int line : program.lines)
+        buffer.putInt(line);
+    for (byte[] name : names) {
+      String label = new String(name, StandardCharsets.UTF_8);
+      buffer.putInt(program.getLabels().getAddress(label)).putInt(name.length).put(name);
+    }
+    for (byte[] call : calls)
+      buffer.putInt(call.length).put(call);
+    buffer.put(sourceName).flip();
+
+    try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      while (buffer.hasRemaining())
+        channel.write(buffer);
+    }
+  }
+
+  // the source text of an instruction, which must lex back to the same instruction
+  private static byte[] text(Instruction instruction) {
+    String text = instruction.toString();
+    int colon = text.indexOf(": ");
+    if (instruction.getLabel() != null && colon >= 0)
+      text = text.substring(colon + 2);
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    Instruction lexed;
+    try {
+      lexed = new Tokenizer("<call>", ByteBuffer.wrap(bytes)).next();
+    } catch (RuntimeException e) {
+      lexed = null;
+    }
+    if (lexed == null || lexed.getClass() != instruction.getClass() || !text.equals(lexed.toString()))
+      throw new IllegalArgumentException("Instruction cannot be written: " + instruction);
+    return bytes;
+  }
+
+  /**
+   * Memory-maps the given file in the binary format.
+   *
+   * @param file the file containing the program
+   * @return the loaded program
+   * @throws IOException if the file cannot be read or is not a valid program of this version
+   */
+  public static SmlcFile load(Path file) throws IOException {
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE)
+        throw new IOException(file + " is not an SMLC file");
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    try {
+      if (buffer.getInt() != MAGIC)
+        throw new IOException(file + " is not an SMLC file");
+      int version = buffer.getInt();
+      if (version != VERSION)
+        throw new IOException(file + " has version " + version + ", expected " + VERSION);
+      int flags = buffer.getInt();
+      int size = buffer.getInt();
+      int labelCount = buffer.getInt();
+      int callCount = buffer.getInt();
+      int sourceLength = buffer.getInt();
+
+      ByteBuffer code = buffer.slice(HEADER_SIZE, Math.multiplyExact(size, INSTRUCTION_SIZE))
+              .order(ByteOrder.LITTLE_ENDIAN);
+      buffer.position(HEADER_SIZE + code.limit());
+      IntBuffer lines = null;
+      if ((flags & LINE_MAP) != 0) {
+        lines = buffer.slice(buffer.position(), size * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        buffer.position(buffer.position() + size * Integer.BYTES);
+      }
+
+      Labels labels = new Labels();
+      for (int i = 0; i < labelCount; i++) {
+        int address = buffer.getInt();
+        labels.addLabel(string(buffer, buffer.getInt()), address);
+      }
+      Instruction[] calls = new Instruction[callCount];
+      for (int i = 0; i < callCount; i++) {
+        byte[] text = new byte[buffer.getInt()];
+        buffer.get(text);
+        calls[i] = new Tokenizer(file.toString(), ByteBuffer.wrap(text)).next();
+      }
+      String source = string(buffer, sourceLength);
+
+      verify(file, code, size, callCount);
+      return new SmlcFile(source, code, size, lines, Labels.copyOf(labels), calls);
+    } catch (RuntimeException e) {
+      throw new IOException(file + " is not a valid SMLC file: " + e.getMessage(), e);
+    }
+  }
+
+  private static String string(ByteBuffer buffer, int length) {
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  // checks every opcode, register and jump once, so the engines never index out of bounds
+  private static void verify(Path file, ByteBuffer code, int size, int calls) throws IOException {
+    for (int address = 0; address < size; address++) {
+      int word = code.getInt(address * INSTRUCTION_SIZE);
+      int imm = code.getInt(address * INSTRUCTION_SIZE + 4);
+      int op = word & 0xFF;
+      boolean valid = op <= MUL_JNZ
+              && ((word >>> 8) & 0xFF) < Registers.COUNT && ((word >>> 16) & 0xFF) < Registers.COUNT
+              && (op < JNZ || (op == CALL ? imm >= 0 && imm < calls : imm >= 0 && imm <= size));
+      if (!valid)
+        throw new IOException(file + " has an invalid instruction at address " + address);
+    }
+  }
+
+  /**
+   * Gets the name of the source the program was compiled from.
+   *
+   * @return the source name
+   */
+  public String getSource() {
+    return source;
+  }
+
+  /**
+   * Gets the number of instructions in the program.
+   *
+   * @return the program size
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Get the labels present in the program (unmodifiable).
+   *
+   * @return labels present in the program
+   */
+  public Labels getLabels() {
+    return labels;
+  }
+
+  /**
+   * Gets the number of the source line the instruction at the given address was compiled from.
+   *
+   * @param address the address of the instruction
+   * @return the line number (starting at 1), or 0 if the file has no line map
+   */
+  public int getLine(int address) {
+    return (lines == null) ? 0 : lines.get(address);
+  }
+
+  /**
+   * Returns the program run straight from the mapped file.
+   *
+   * @return the program, backed by an {@link OffHeapProgram}
+   */
+  public Program toProgram() {
+    return Program.of(source, new OffHeapProgram(code, size, calls.clone(), labels));
+  }
+
+  /**
+   * Expands the mapped instructions into a compact program on the heap.
+   *
+   * @return the compact program
+   */
+  public CompactProgram toCompactProgram() {
+    byte[] op = new byte[size];
+    byte[] a = new byte[size];
+    byte[] b = new byte[size];
+    int[] imm = new int[size];
+    for (int address = 0; address < size; address++) {
+      int word = code.getInt(address * INSTRUCTION_SIZE);
+      op[address] = (byte) word;
+      a[address] = (byte) (word >>> 8);
+      b[address] = (byte) (word >>> 16);
+      imm[address] = code.getInt(address * INSTRUCTION_SIZE + 4);
+    }
+    int[] lines = null;
+    if (this.lines != null) {
+      lines = new int[size];
+      this.lines.get(0, lines);
+    }
+    return new CompactProgram(op, a, b, imm, calls.clone(), labels, lines);
+  }
+}
@@ -0,0 +1,144 @@
+package sml.engine;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.instruction.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents a program lowered into a dense int-encoded code array.
+ * <p>
+ * Every instruction occupies {@link #STRIDE} ints: the opcode, operand A,
+ * operand B and an immediate. Register operands are register ordinals,
+ * and jump targets are resolved to offsets in the code array, so the
+ * address of instruction {@code i} is {@code i * STRIDE}.
+ * Instructions that have no encoding are kept in a side table and run
+ * through {@link Instruction#execute} by the {@code CALL} opcode.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class Bytecode {
+  public static final int STRIDE = 4;
+
+  // offsets of the fields of an encoded instruction
+  public static final int OP = 0;
+  public static final int A = 1;
+  public static final int B = 2;
+  public static final int IMM = 3;
+
+  // opcodes
+  public static final int MOV = 0;   // A := IMM
+  public static final int ADD = 1;   // A := A + B
+  public static final int SUB = 2;   // A := A - B
+  public static final int MUL = 3;   // A := A * B
+  public static final int DIV = 4;   // A := A / B, unchanged if B is 0
+  public static final int OUT = 5;   // print A
+  public static final int WOW = 6;   // print "Wow!" IMM times
+  public static final int JNZ = 7;   // if A != 0 jump to IMM
+  public static final int CALL = 8;  // execute the instruction IMM of the side table
+  public static final int ADD_JNZ = 9;  // A := A + B, then if A != 0 jump to IMM
+  public static final int SUB_JNZ = 10; // A := A - B, then if A != 0 jump to IMM
+  public static final int MUL_JNZ = 11; // A := A * B, then if A != 0 jump to IMM
+
+  private final int[] code;
+  private final Instruction[] calls;
+
+  private Bytecode(int[] code, Instruction[] calls) {
+    this.code = code;
+    this.calls = calls;
+  }
+
+  /**
+   * Lowers the given program into bytecode.
+   *
+   * @param labels  the labels of the program
+   * @param program the program (list of instructions)
+   * @return the encoded program
+   * @throws IllegalArgumentException if a jump refers to an unknown label
+   */
+  public static Bytecode compile(Labels labels, List<Instruction> program) {
+    int[] code = new int[program.size() * STRIDE];
+    List<Instruction> calls = new ArrayList<>();
+
+    for (int address = 0; address < program.size(); address++) {
+      Instruction instruction = program.get(address);
+      int pc = address * STRIDE;
+      if (instruction instanceof MovInstruction ins) {
+        encode(code, pc, MOV, ins.getResult().ordinal(), 0, ins.getValue());
+      } else if (instruction instanceof AddInstruction ins) {
+        encode(code, pc, ADD, ins.getResult().ordinal(), ins.getSource().ordinal(), 0);
+      } else if (instruction instanceof SubInstruction ins) {
+        encode(code, pc, SUB, ins.getResult().ordinal(), ins.getSource().ordinal(), 0);
+      } else if (instruction instanceof MulInstruction ins) {
+        encode(code, pc, MUL, ins.getResult().ordinal(), ins.getSource().ordinal(), 0);
+      } else if (instruction instanceof DivInstruction ins) {
+        encode(code, pc, DIV, ins.getResult().ordinal(), ins.getSource().ordinal(), 0);
+      } else if (instruction instanceof OutInstruction ins) {
+        encode(code, pc, OUT, ins.getSource().ordinal(), 0, 0);
+      } else if (instruction instanceof WowInstruction ins) {
+        encode(code, pc, WOW, 0, 0, ins.getTimes());
+      } else if (instruction instanceof JnzInstruction ins) {
+        int target = ((JnzInstruction) ins.link(labels)).getAddress();
+        encode(code, pc, JNZ, ins.getSource().ordinal(), 0, target * STRIDE);
+      } else if (instruction instanceof ArithmeticJnzInstruction ins) {
+        int target = ((ArithmeticJnzInstruction) ins.link(labels)).getAddress();
+        encode(code, pc, opcode(ins.getOperator()), ins.getResult().ordinal(), ins.getSource().ordinal(),
+                target * STRIDE);
+      } else {
+        encode(code, pc, CALL, 0, 0, calls.size());
+        calls.add(instruction);
+      }
+    }
+    return new Bytecode(code, calls.toArray(new Instruction[0]));
+  }
+
+  /**
+   * Gets the opcode of a fused jump with the given operator.
+   *
+   * @param operator the operator of the fused jump
+   * @return one of {@code ADD_JNZ}, {@code SUB_JNZ} and {@code MUL_JNZ}
+   */
+  public static int opcode(ArithmeticJnzInstruction.Operator operator) {
+    return switch (operator) {
+      case ADD -> ADD_JNZ;
+      case SUB -> SUB_JNZ;
+      case MUL -> MUL_JNZ;
+    };
+  }
+
+  private static void encode(int[] code, int pc, int op, int a, int b, int imm) {
+    code[pc + OP] = op;
+    code[pc + A] = a;
+    code[pc + B] = b;
+    code[pc + IMM] = imm;
+  }
+
+  /**
+   * Gets the code array (not a copy; it must not be modified).
+   *
+   * @return the encoded instructions
+   */
+  public int[] getCode() {
+    return code;
+  }
+
+  /**
+   * Gets the instructions that are run through the {@code CALL} opcode.
+   *
+   * @return the side table of instructions
+   */
+  public Instruction[] getCalls() {
+    return calls;
+  }
+
+  /**
+   * Gets the number of instructions in the program.
+   *
+   * @return the program size
+   */
+  public int size() {
+    return code.length / STRIDE;
+  }
+}
@@ -0,0 +1,133 @@
+package sml.engine;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+import sml.instruction.DivInstruction;
+import sml.instruction.WowInstruction;
+import sml.metrics.Metrics;
+import sml.output.OutputSink;
+
+import static sml.Instruction.NORMAL_PROGRAM_COUNTER_UPDATE;
+import static sml.engine.Bytecode.*;
+
+/**
+ * Represents the bytecode engine, which lowers the program into a
+ * {@link Bytecode} array and runs it in one switch-dispatch loop over
+ * a local copy of the registers.
+ * <p>
+ * The register values it leaves behind are identical to those of the
+ * object {@link Interpreter}.
+ * <p>
+ * A shared program is lowered once, and its bytecode is kept for as long
+ * as the program is reachable, so a program run many times is not lowered
+ * again on every run.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class BytecodeEngine implements ExecutionEngine {
+  private final ProgramCache<Bytecode> lowered = new ProgramCache<>(Bytecode::compile);
+
+  /**
+   * Lowers (unless it is already lowered) and runs the program of the given machine.
+   *
+   * @param machine the machine whose program is run
+   * @return the program counter at which execution stopped
+   */
+  @Override
+  public int run(Machine machine) {
+    return run(machine, lowered.get(machine));
+  }
+
+  /**
+   * Runs already lowered bytecode on the given machine, counting the
+   * instructions it executes if the {@link Metrics} are {@link Metrics#COUNTING}.
+   *
+   * @param machine  the machine providing the registers
+   * @param bytecode the encoded program
+   * @return the program counter at which execution stopped
+   */
+  public static int run(Machine machine, Bytecode bytecode) {
+    Registers registers = machine.getRegisters();
+    int[] code = bytecode.getCode();
+    Instruction[] calls = bytecode.getCalls();
+    OutputSink output = machine.getOutput();
+    int[] r = registers.toArray();
+
+    int pc = 0;
+    final int end = code.length;
+    int start = 0; // the address the straight run being executed started at
+    long executed = 0;
+    while (pc < end) {
+      switch (code[pc]) {
+        case MOV -> r[code[pc + A]] = code[pc + IMM];
+        case ADD -> r[code[pc + A]] += r[code[pc + B]];
+        case SUB -> r[code[pc + A]] -= r[code[pc + B]];
+        case MUL -> r[code[pc + A]] *= r[code[pc + B]];
+        case DIV -> {
+          int divisor = r[code[pc + B]];
+          if (divisor == 0) {
+            Metrics.divisionByZero();
+            output.write(DivInstruction.DIVISION_BY_ZERO);
+          } else
+            r[code[pc + A]] /= divisor;
+        }
+        case OUT -> output.writeInt(r[code[pc + A]]);
+        case WOW -> {
+          for (int i = code[pc + IMM]; i > 0; i--)
+            output.writeLine(WowInstruction.WOW);
+        }
+        case JNZ -> {
+          if (r[code[pc + A]] != 0) {
+            if (Metrics.COUNTING)
+              executed = Metrics.count(executed, (pc - start) / STRIDE + 1);
+            pc = start = code[pc + IMM];
+            continue;
+          }
+        }
+        case ADD_JNZ -> {
+          if ((r[code[pc + A]] += r[code[pc + B]]) != 0) {
+            if (Metrics.COUNTING)
+              executed = Metrics.count(executed, (pc - start) / STRIDE + 1);
+            pc = start = code[pc + IMM];
+            continue;
+          }
+        }
+        case SUB_JNZ -> {
+          if ((r[code[pc + A]] -= r[code[pc + B]]) != 0) {
+            if (Metrics.COUNTING)
+              executed = Metrics.count(executed, (pc - start) / STRIDE + 1);
+            pc = start = code[pc + IMM];
+            continue;
+          }
+        }
+        case MUL_JNZ -> {
+          if ((r[code[pc + A]] *= r[code[pc + B]]) != 0) {
+            if (Metrics.COUNTING)
+              executed = Metrics.count(executed, (pc - start) / STRIDE + 1);
+            pc = start = code[pc + IMM];
+            continue;
+          }
+        }
+        case CALL -> {
+          registers.setAll(r);
+          int update = calls[code[pc + IMM]].execute(machine);
+          r = registers.toArray();
+          if (update != NORMAL_PROGRAM_COUNTER_UPDATE) {
+            if (Metrics.COUNTING)
+              executed = Metrics.count(executed, (pc - start) / STRIDE + 1);
+            pc = start = update * STRIDE;
+            continue;
+          }
+        }
+        default -> throw new IllegalStateException("Invalid opcode " + code[pc] + " at " + pc / STRIDE);
+      }
+      pc += STRIDE;
+    }
+
+    registers.setAll(r);
+    if (Metrics.COUNTING)
+      Metrics.executed(executed + (pc - start) / STRIDE);
+    return pc / STRIDE;
+  }
+}
@@ -0,0 +1,20 @@
+package sml.engine;
+
+import sml.Machine;
+
+/**
+ * Represents an SML program compiled into a JVM class by {@link JvmCompiler}.
+ *
+ * @author Szymon Swendrowski
+ */
+public interface CompiledProgram {
+  /**
+   * Runs the compiled program from instruction 0.
+   *
+   * @param registers the register values, read on entry and written back on exit
+   *                  (indexed by register ordinal)
+   * @param machine   the machine the program runs on
+   * @return the program counter at which execution stopped
+   */
+  int run(int[] registers, Machine machine);
+}
@@ -0,0 +1,33 @@
+package sml.engine;
+
+import sml.Machine;
+import sml.instruction.DivInstruction;
+import sml.instruction.WowInstruction;
+import sml.metrics.Metrics;
+import sml.output.OutputSink;
+
+/**
+ * Represents the run-time support called from compiled programs
+ * for the instructions that are not plain arithmetic.
+ *
+ * @author Szymon Swendrowski
+ */
+final class CompiledSupport {
+  private CompiledSupport() {
+  }
+
+  static void out(Machine machine, int value) {
+    machine.getOutput().writeInt(value);
+  }
+
+  static void wow(Machine machine, int times) {
+    OutputSink output = machine.getOutput();
+    for (int i = times; i > 0; i--)
+      output.writeLine(WowInstruction.WOW);
+  }
+
+  static void divisionByZero(Machine machine) {
+    Metrics.divisionByZero();
+    machine.getOutput().write(DivInstruction.DIVISION_BY_ZERO);
+  }
+}
@@ -0,0 +1,41 @@
+package sml.engine;
+
+import sml.Machine;
+import sml.Registers;
+
+import java.util.Optional;
+
+/**
+ * Represents the engine that compiles the whole program into a JVM class
+ * with {@link JvmCompiler} and runs it, falling back to the object
+ * {@link Interpreter} for programs the compiler does not support.
+ * <p>
+ * A shared program is compiled once, and its class is kept for as long as
+ * the program is reachable (see {@link sml.Machine#getSharedProgram()}), so
+ * repeated runs reuse code that HotSpot has already warmed up.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class CompilingEngine implements ExecutionEngine {
+  private final ExecutionEngine fallback = new Interpreter();
+  private final ProgramCache<Optional<CompiledProgram>> compiled = new ProgramCache<>(JvmCompiler::compile);
+
+  /**
+   * Compiles, unless it already has, and runs the program of the given machine.
+   *
+   * @param machine the machine whose program is run
+   * @return the program counter at which execution stopped
+   */
+  @Override
+  public int run(Machine machine) {
+    Optional<CompiledProgram> compiled = this.compiled.get(machine);
+    if (compiled.isEmpty())
+      return fallback.run(machine);
+
+    Registers registers = machine.getRegisters();
+    int[] values = registers.toArray();
+    int programCounter = compiled.get().run(values, machine);
+    registers.setAll(values);
+    return programCounter;
+  }
+}
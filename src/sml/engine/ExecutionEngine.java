@@ -0,0 +1,23 @@
+package sml.engine;
+
+import sml.Machine;
+
+/**
+ * Represents a strategy for running the program held by a machine.
+ * <p>
+ * The machine links the program and clears its registers before handing
+ * it to the engine; the engine leaves the final register values in the
+ * machine's registers.
+ *
+ * @author Szymon Swendrowski
+ */
+@FunctionalInterface
+public interface ExecutionEngine {
+  /**
+   * Runs the program of the given machine, beginning at instruction 0.
+   *
+   * @param machine the machine whose program is run
+   * @return the program counter at which execution stopped
+   */
+  int run(Machine machine);
+}
@@ -0,0 +1,43 @@
+package sml.engine;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.metrics.Metrics;
+
+import java.util.List;
+
+import static sml.Instruction.NORMAL_PROGRAM_COUNTER_UPDATE;
+
+/**
+ * Represents the object interpreter, which executes the instructions
+ * of the program one at a time by calling {@link Instruction#execute}.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class Interpreter implements ExecutionEngine {
+  /**
+   * Runs the program of the given machine, instruction by instruction,
+   * counting them if the {@link Metrics} are {@link Metrics#COUNTING}.
+   *
+   * @param machine the machine whose program is run
+   * @return the program counter at which execution stopped
+   */
+  @Override
+  public int run(Machine machine) {
+    List<Instruction> program = machine.getProgram();
+    int programCounter = 0;
+    long executed = 0;
+    while (programCounter < program.size()) {
+      if (Metrics.COUNTING)
+        executed = Metrics.count(executed, 1);
+      Instruction ins = program.get(programCounter);
+      int programCounterUpdate = ins.execute(machine);
+      programCounter = (programCounterUpdate == NORMAL_PROGRAM_COUNTER_UPDATE)
+              ? programCounter + 1
+              : programCounterUpdate;
+    }
+    if (Metrics.COUNTING)
+      Metrics.executed(executed);
+    return programCounter;
+  }
+}
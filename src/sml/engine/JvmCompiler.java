@@ -0,0 +1,517 @@
+package sml.engine;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Registers;
+import sml.instruction.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * Represents the whole-program compiler that turns a translated SML program
+ * into a hidden JVM class implementing {@link CompiledProgram}.
+ * <p>
+ * The SML registers become JVM locals and every {@code jnz} becomes a real
+ * conditional branch, so HotSpot sees SML loops as ordinary loops.
+ * Programs containing instructions the compiler does not know about, or
+ * whose method would be longer than {@value #MAX_CODE_LENGTH} bytes, are not
+ * compiled: HotSpot never compiles a method that long to machine code, so
+ * it would only run in the JVM's own interpreter.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class JvmCompiler {
+  private static final String CLASS_NAME = "sml/engine/CompiledSml";
+  private static final String MACHINE = "sml/Machine";
+  private static final String SUPPORT = "sml/engine/CompiledSupport";
+  private static final String RUN_DESCRIPTOR = "([IL" + MACHINE + ";)I";
+
+  // locals of the run method: this, the register array, the machine, then the registers
+  private static final int REGISTER_ARRAY = 1;
+  private static final int MACHINE_LOCAL = 2;
+  private static final int FIRST_REGISTER = 3;
+  private static final int MAX_LOCALS = FIRST_REGISTER + Registers.COUNT;
+  private static final int MAX_STACK = 3;
+
+  // the longest method HotSpot compiles (HugeMethodLimit); short branches reach across it
+  private static final int MAX_CODE_LENGTH = 8000;
+
+  // JVM opcodes
+  private static final int ICONST_0 = 0x03;
+  private static final int BIPUSH = 0x10;
+  private static final int SIPUSH = 0x11;
+  private static final int LDC_W = 0x13;
+  private static final int ILOAD = 0x15;
+  private static final int ALOAD_0 = 0x2a;
+  private static final int ALOAD_1 = 0x2b;
+  private static final int ALOAD_2 = 0x2c;
+  private static final int IALOAD = 0x2e;
+  private static final int ISTORE = 0x36;
+  private static final int IASTORE = 0x4f;
+  private static final int IADD = 0x60;
+  private static final int ISUB = 0x64;
+  private static final int IMUL = 0x68;
+  private static final int IDIV = 0x6c;
+  private static final int IFNE = 0x9a;
+  private static final int GOTO = 0xa7;
+  private static final int IRETURN = 0xac;
+  private static final int RETURN = 0xb1;
+  private static final int INVOKESPECIAL = 0xb7;
+  private static final int INVOKESTATIC = 0xb8;
+
+  private JvmCompiler() {
+  }
+
+  /**
+   * Returns true if every instruction of the program can be compiled.
+   *
+   * @param program the program (list of instructions)
+   * @return True or False
+   */
+  public static boolean supports(List<Instruction> program) {
+    return program.stream().allMatch(JvmCompiler::supports);
+  }
+
+  private static boolean supports(Instruction instruction) {
+    return instruction instanceof MovInstruction
+            || instruction instanceof AddInstruction
+            || instruction instanceof SubInstruction
+            || instruction instanceof MulInstruction
+            || instruction instanceof DivInstruction
+            || instruction instanceof OutInstruction
+            || instruction instanceof WowInstruction
+            || instruction instanceof JnzInstruction
+            || instruction instanceof ArithmeticJnzInstruction
+            || instruction instanceof MovRunInstruction;
+  }
+
+  /**
+   * Compiles the program into a hidden class.
+   *
+   * @param labels  the labels of the program
+   * @param program the program (list of instructions)
+   * @return the compiled program, or an empty optional if the program
+   * cannot be compiled and has to be interpreted
+   */
+  public static Optional<CompiledProgram> compile(Labels labels, List<Instruction> program) {
+    return compile(labels, program, 0, program.size());
+  }
+
+  /**
+   * Compiles the region of the program between the given addresses into a
+   * hidden class. The compiled code is entered at the start of the region;
+   * when control leaves the region the registers are written back and the
+   * address at which execution has to continue is returned.
+   *
+   * @param labels  the labels of the program
+   * @param program the program (list of instructions)
+   * @param from    the address of the first instruction of the region
+   * @param to      the address just past the last instruction of the region
+   * @return the compiled region, or an empty optional if the region
+   * cannot be compiled and has to be interpreted
+   */
+  public static Optional<CompiledProgram> compile(Labels labels, List<Instruction> program,
+                                                  int from, int to) {
+    if (from < 0 || to > program.size() || from > to || !supports(program.subList(from, to)))
+      return Optional.empty();
+
+    byte[] classFile = generate(labels, program, from, to);
+    if (classFile == null)
+      return Optional.empty();
+
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+      Object instance = lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class))
+              .invoke();
+      return Optional.of((CompiledProgram) instance);
+    } catch (Throwable e) {
+      throw new IllegalStateException("Failed to load the compiled program", e);
+    }
+  }
+
+  /*
+   Generates the class file.
+   Returns null if the code is longer than MAX_CODE_LENGTH.
+  */
+  private static byte[] generate(Labels labels, List<Instruction> program, int from, int to) {
+    ConstantPool pool = new ConstantPool();
+    int thisClass = pool.classRef(CLASS_NAME);
+    int objectClass = pool.classRef("java/lang/Object");
+    int programInterface = pool.classRef("sml/engine/CompiledProgram");
+    int objectInit = pool.methodRef("java/lang/Object", "<init>", "()V");
+    int outMethod = pool.methodRef(SUPPORT, "out", "(L" + MACHINE + ";I)V");
+    int wowMethod = pool.methodRef(SUPPORT, "wow", "(L" + MACHINE + ";I)V");
+    int divisionByZero = pool.methodRef(SUPPORT, "divisionByZero", "(L" + MACHINE + ";)V");
+    int registerArray = pool.classRef("[I");
+    int machine = pool.classRef(MACHINE);
+
+    Code code = new Code();
+    // labels of the addresses in the region, and of the exits to addresses outside it
+    Label[] addresses = new Label[to - from];
+    Arrays.setAll(addresses, i -> new Label());
+    Map<Integer, Label> exits = new HashMap<>();
+    IntFunction<Label> target = address -> (address >= from && address < to)
+            ? addresses[address - from]
+            : exits.computeIfAbsent(address, a -> new Label());
+    target.apply(to); // the region falls out at its end
+
+    // load the registers into locals
+    for (int i = 0; i < Registers.COUNT; i++) {
+      code.op(ALOAD_1);
+      code.pushInt(i, pool);
+      code.op(IALOAD);
+      code.local(ISTORE, FIRST_REGISTER + i);
+    }
+
+    for (int address = from; address < to; address++) {
+      code.bind(addresses[address - from]);
+      Instruction instruction = program.get(address);
+      if (instruction instanceof MovInstruction ins) {
+        code.pushInt(ins.getValue(), pool);
+        code.local(ISTORE, register(ins.getResult().ordinal()));
+      } else if (instruction instanceof AddInstruction ins) {
+        code.arithmetic(IADD, ins.getResult().ordinal(), ins.getSource().ordinal());
+      } else if (instruction instanceof SubInstruction ins) {
+        code.arithmetic(ISUB, ins.getResult().ordinal(), ins.getSource().ordinal());
+      } else if (instruction instanceof MulInstruction ins) {
+        code.arithmetic(IMUL, ins.getResult().ordinal(), ins.getSource().ordinal());
+      } else if (instruction instanceof DivInstruction ins) {
+        Label divide = new Label();
+        code.local(ILOAD, register(ins.getSource().ordinal()));
+        code.branch(IFNE, divide);
+        code.op(ALOAD_2);
+        code.invoke(INVOKESTATIC, divisionByZero);
+        code.branch(GOTO, target.apply(address + 1));
+        code.bind(divide);
+        code.arithmetic(IDIV, ins.getResult().ordinal(), ins.getSource().ordinal());
+      } else if (instruction instanceof OutInstruction ins) {
+        code.op(ALOAD_2);
+        code.local(ILOAD, register(ins.getSource().ordinal()));
+        code.invoke(INVOKESTATIC, outMethod);
+      } else if (instruction instanceof WowInstruction ins) {
+        code.op(ALOAD_2);
+        code.pushInt(ins.getTimes(), pool);
+        code.invoke(INVOKESTATIC, wowMethod);
+      } else if (instruction instanceof JnzInstruction ins) {
+        Label jump = target.apply(((JnzInstruction) ins.link(labels)).getAddress());
+        code.jumpIfNotZero(ins.getSource().ordinal(), jump);
+      } else if (instruction instanceof ArithmeticJnzInstruction ins) {
+        Label jump = target.apply(((ArithmeticJnzInstruction) ins.link(labels)).getAddress());
+        int op = switch (ins.getOperator()) {
+          case ADD -> IADD;
+          case SUB -> ISUB;
+          case MUL -> IMUL;
+        };
+        code.arithmetic(op, ins.getResult().ordinal(), ins.getSource().ordinal());
+        code.jumpIfNotZero(ins.getResult().ordinal(), jump);
+      } else if (instruction instanceof MovRunInstruction ins) {
+        for (int i = 0; i < ins.size(); i++) {
+          code.pushInt(ins.getValue(i), pool);
+          code.local(ISTORE, register(ins.getResult(i).ordinal()));
+        }
+      }
+    }
+
+    // each exit stores the locals back into the registers and returns its address;
+    // the exit at the end of the region comes first as the region falls into it
+    code.exit(exits.remove(to), to, pool);
+    for (Map.Entry<Integer, Label> exit : exits.entrySet())
+      code.exit(exit.getValue(), exit.getKey(), pool);
+
+    if (code.length() > MAX_CODE_LENGTH)
+      return null;
+    code.resolve();
+
+    Code init = new Code();
+    init.op(ALOAD_0);
+    init.invoke(INVOKESPECIAL, objectInit);
+    init.op(RETURN);
+
+    // every branch target needs a frame: this, the register array, the machine, 8 ints
+    int[] locals = new int[MAX_LOCALS];
+    locals[0] = thisClass;
+    locals[REGISTER_ARRAY] = registerArray;
+    locals[MACHINE_LOCAL] = machine;
+
+    int codeName = pool.utf8("Code");
+    int stackMapName = pool.utf8("StackMapTable");
+    int initName = pool.utf8("<init>");
+    int initDescriptor = pool.utf8("()V");
+    int runName = pool.utf8("run");
+    int runDescriptor = pool.utf8(RUN_DESCRIPTOR);
+
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(0xCAFEBABE);
+      out.writeShort(0);
+      out.writeShort(52);
+      pool.write(out);
+      out.writeShort(0x0010 | 0x0020); // ACC_FINAL | ACC_SUPER
+      out.writeShort(thisClass);
+      out.writeShort(objectClass);
+      out.writeShort(1);
+      out.writeShort(programInterface);
+      out.writeShort(0); // fields
+      out.writeShort(2); // methods
+      writeMethod(out, initName, initDescriptor, codeName, init, 1, 1, null, 0);
+      writeMethod(out, runName, runDescriptor, codeName, code, MAX_STACK, MAX_LOCALS, locals, stackMapName);
+      out.writeShort(0); // attributes
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static int register(int ordinal) {
+    return FIRST_REGISTER + ordinal;
+  }
+
+  private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeName,
+                                  Code code, int maxStack, int maxLocals,
+                                  int[] frameLocals, int stackMapName) throws IOException {
+    byte[] stackMap = (frameLocals == null) ? null : code.stackMap(frameLocals);
+    byte[] bytecode = code.toByteArray();
+
+    out.writeShort(0x0001); // ACC_PUBLIC
+    out.writeShort(name);
+    out.writeShort(descriptor);
+    out.writeShort(1);
+    out.writeShort(codeName);
+    int attributeLength = 2 + 2 + 4 + bytecode.length + 2 + 2
+            + ((stackMap == null) ? 0 : 6 + stackMap.length);
+    out.writeInt(attributeLength);
+    out.writeShort(maxStack);
+    out.writeShort(maxLocals);
+    out.writeInt(bytecode.length);
+    out.write(bytecode);
+    out.writeShort(0); // exception table
+    if (stackMap == null) {
+      out.writeShort(0);
+    } else {
+      out.writeShort(1);
+      out.writeShort(stackMapName);
+      out.writeInt(stackMap.length);
+      out.write(stackMap);
+    }
+  }
+
+  /**
+   * Represents a position in the code that branches can refer to.
+   */
+  private static final class Label {
+    private int offset = -1;
+  }
+
+  /**
+   * Represents the code of a method under construction.
+   */
+  private static final class Code {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final List<Fixup> fixups = new ArrayList<>();
+    private byte[] code;
+
+    private record Fixup(int instruction, int position, Label label) {
+    }
+
+    void op(int opcode) {
+      bytes.write(opcode);
+    }
+
+    void u2(int value) {
+      bytes.write(value >>> 8);
+      bytes.write(value);
+    }
+
+    void local(int opcode, int index) {
+      op(opcode);
+      bytes.write(index);
+    }
+
+    void invoke(int opcode, int method) {
+      op(opcode);
+      u2(method);
+    }
+
+    void pushInt(int value, ConstantPool pool) {
+      if (value >= -1 && value <= 5) {
+        op(ICONST_0 + value);
+      } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+        op(BIPUSH);
+        bytes.write(value);
+      } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+        op(SIPUSH);
+        u2(value);
+      } else {
+        op(LDC_W);
+        u2(pool.integer(value));
+      }
+    }
+
+    // result := result (op) source
+    void arithmetic(int opcode, int result, int source) {
+      local(ILOAD, register(result));
+      local(ILOAD, register(source));
+      op(opcode);
+      local(ISTORE, register(result));
+    }
+
+    // stores the register locals back into the register array and returns the address
+    void exit(Label label, int address, ConstantPool pool) {
+      bind(label);
+      for (int i = 0; i < Registers.COUNT; i++) {
+        op(ALOAD_1);
+        pushInt(i, pool);
+        local(ILOAD, FIRST_REGISTER + i);
+        op(IASTORE);
+      }
+      pushInt(address, pool);
+      op(IRETURN);
+    }
+
+    // jumps to the label if the register is not zero
+    void jumpIfNotZero(int source, Label label) {
+      local(ILOAD, register(source));
+      branch(IFNE, label);
+    }
+
+    void branch(int opcode, Label label) {
+      int instruction = bytes.size();
+      op(opcode);
+      fixups.add(new Fixup(instruction, bytes.size(), label));
+      u2(0);
+    }
+
+    void bind(Label label) {
+      label.offset = bytes.size();
+    }
+
+    int length() {
+      return bytes.size();
+    }
+
+    void resolve() {
+      code = bytes.toByteArray();
+      for (Fixup fixup : fixups) {
+        int offset = fixup.label.offset - fixup.instruction;
+        code[fixup.position] = (byte) (offset >>> 8);
+        code[fixup.position + 1] = (byte) offset;
+      }
+    }
+
+    byte[] toByteArray() {
+      return (code == null) ? bytes.toByteArray() : code;
+    }
+
+    // one full frame per distinct branch target; all frames share the same locals
+    byte[] stackMap(int[] locals) {
+      SortedSet<Integer> offsets = new TreeSet<>();
+      for (Fixup fixup : fixups)
+        offsets.add(fixup.label.offset);
+
+      ByteArrayOutputStream frames = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(frames);
+      try {
+        out.writeShort(offsets.size());
+        int previous = -1;
+        for (int offset : offsets) {
+          out.writeByte(255); // full_frame
+          out.writeShort(offset - previous - 1);
+          out.writeShort(locals.length);
+          for (int local : locals) {
+            if (local == 0) {
+              out.writeByte(1); // Integer
+            } else {
+              out.writeByte(7); // Object
+              out.writeShort(local);
+            }
+          }
+          out.writeShort(0); // empty stack
+          previous = offset;
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return frames.toByteArray();
+    }
+  }
+
+  /**
+   * Represents the constant pool of the generated class.
+   */
+  private static final class ConstantPool {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(bytes);
+    private final Map<String, Integer> entries = new HashMap<>();
+    private int count = 1;
+
+    int utf8(String value) {
+      return entry("U" + value, () -> {
+        out.writeByte(1);
+        out.writeUTF(value);
+      });
+    }
+
+    int integer(int value) {
+      return entry("I" + value, () -> {
+        out.writeByte(3);
+        out.writeInt(value);
+      });
+    }
+
+    int classRef(String name) {
+      int nameIndex = utf8(name);
+      return entry("C" + name, () -> {
+        out.writeByte(7);
+        out.writeShort(nameIndex);
+      });
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+      int ownerIndex = classRef(owner);
+      int nameIndex = utf8(name);
+      int descriptorIndex = utf8(descriptor);
+      int nameAndType = entry("N" + name + ":" + descriptor, () -> {
+        out.writeByte(12);
+        out.writeShort(nameIndex);
+        out.writeShort(descriptorIndex);
+      });
+      return entry("M" + owner + "." + name + descriptor, () -> {
+        out.writeByte(10);
+        out.writeShort(ownerIndex);
+        out.writeShort(nameAndType);
+      });
+    }
+
+    private interface Writer {
+      void write() throws IOException;
+    }
+
+    private int entry(String key, Writer writer) {
+      Integer index = entries.get(key);
+      if (index != null)
+        return index;
+      try {
+        writer.write();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      entries.put(key, count);
+      return count++;
+    }
+
+    void write(DataOutputStream target) throws IOException {
+      target.writeShort(count);
+      target.write(bytes.toByteArray());
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package sml.engine;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.Program;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * Represents what an engine derives from the programs it runs, such as
+ * their bytecode or compiled class, kept per shared {@link Program}.
+ * <p>
+ * A shared program never changes, so what is derived from it is kept for
+ * as long as the program is reachable, and found again by its identity.
+ * The program a machine owns can change between runs, so what is derived
+ * from it is derived again on every run.
+ *
+ * @param <T> the type of what is derived
+ * @author Szymon Swendrowski
+ */
+final class ProgramCache<T> {
+  private final BiFunction<Labels, List<Instruction>, T> derive;
+  private final Map<Program, T> derived = Collections.synchronizedMap(new WeakHashMap<>());
+
+  /**
+   * Constructor: a cache deriving its values with the given function,
+   * which must not keep a reference to the program itself.
+   *
+   * @param derive derives the value from the labels and instructions of a program
+   */
+  ProgramCache(BiFunction<Labels, List<Instruction>, T> derive) {
+    this.derive = derive;
+  }
+
+  /**
+   * Gets the value derived from the program of the given machine.
+   *
+   * @param machine the machine whose program is run
+   * @return the derived value
+   */
+  T get(Machine machine) {
+    Program program = machine.getSharedProgram();
+    if (program == null)
+      return derive.apply(machine.getLabels(), machine.getProgram());
+    return derived.computeIfAbsent(program, p -> derive.apply(p.getLabels(), p.getInstructions()));
+  }
+}
@@ -0,0 +1,214 @@
+package sml.engine;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.Registers;
+import sml.metrics.Metrics;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static sml.Instruction.NORMAL_PROGRAM_COUNTER_UPDATE;
+
+/**
+ * Represents the tiered engine: programs start in the object interpreter,
+ * and loops that turn out to be hot are compiled in the background and
+ * entered at their header in the middle of the run.
+ * <p>
+ * Taken backward {@code jnz} edges are counted per target address. When the
+ * count for a loop header reaches the compile threshold, the loop region
+ * (from the header to the jump) is queued for compilation with
+ * {@link JvmCompiler}. Once the compiled region is installed, the next time
+ * the interpreter reaches the header it hands over the current register
+ * state and continues wherever the compiled code leaves the region.
+ * Requests that do not fit into the compile queue are dropped and retried
+ * after another threshold's worth of iterations, and loops too long for
+ * {@link JvmCompiler} stay interpreted.
+ * <p>
+ * The counts and the compiled loops of a shared {@link sml.Program} are kept
+ * for as long as the program is reachable, so every later run of it enters
+ * the loops compiled in earlier runs from their first iteration. Those of a
+ * program a machine owns, which can change between runs, only last for one
+ * run. Machines that share a program may run it on several threads at once;
+ * their updates of the counts may then be lost, which only delays compilation.
+ * <p>
+ * The instructions interpreted are counted if the {@link Metrics} are
+ * {@link Metrics#COUNTING}; those run by compiled loops are not.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class TieredEngine implements ExecutionEngine, AutoCloseable {
+  public static final int DEFAULT_COMPILE_THRESHOLD = 10_000;
+  public static final int DEFAULT_QUEUE_SIZE = 16;
+
+  // states of a loop header
+  private static final int INTERPRETED = 0;
+  private static final int QUEUED = 1;
+  private static final int INSTALLED = 2;
+  private static final int FAILED = 3;
+
+  private final int compileThreshold;
+  private final ThreadPoolExecutor compiler;
+
+  // the profile and compiled loops of each shared program
+  private final ProgramCache<Session> sessions = new ProgramCache<>(Session::new);
+
+  private final LongAdder installed = new LongAdder();
+  private final LongAdder entered = new LongAdder();
+
+  /**
+   * Constructor: a tiered engine with the default threshold and queue size.
+   */
+  public TieredEngine() {
+    this(DEFAULT_COMPILE_THRESHOLD, DEFAULT_QUEUE_SIZE);
+  }
+
+  /**
+   * Constructor: a tiered engine with the given threshold and queue size.
+   *
+   * @param compileThreshold the number of taken backward jumps to a loop header
+   *                         after which the loop is compiled
+   * @param queueSize        the maximum number of loops waiting to be compiled
+   */
+  public TieredEngine(int compileThreshold, int queueSize) {
+    if (compileThreshold < 1)
+      throw new IllegalArgumentException("Compile threshold must be positive: " + compileThreshold);
+    if (queueSize < 1)
+      throw new IllegalArgumentException("Queue size must be positive: " + queueSize);
+    this.compileThreshold = compileThreshold;
+    this.compiler = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueSize), runnable -> {
+      Thread thread = new Thread(runnable, "sml-tiered-compiler");
+      thread.setDaemon(true);
+      return thread;
+    }, new ThreadPoolExecutor.AbortPolicy());
+  }
+
+  /**
+   * Runs the program of the given machine, promoting hot loops to compiled code.
+   *
+   * @param machine the machine whose program is run
+   * @return the program counter at which execution stopped
+   */
+  @Override
+  public int run(Machine machine) {
+    List<Instruction> program = machine.getProgram();
+    Registers registers = machine.getRegisters();
+    Session session = sessions.get(machine);
+
+    int programCounter = 0;
+    long executed = 0;
+    while (programCounter < program.size()) {
+      int programCounterUpdate = program.get(programCounter).execute(machine);
+      if (Metrics.COUNTING)
+        executed = Metrics.count(executed, 1);
+      if (programCounterUpdate == NORMAL_PROGRAM_COUNTER_UPDATE) {
+        programCounter++;
+        continue;
+      }
+
+      if (programCounterUpdate <= programCounter) {
+        CompiledProgram loop = session.loops.get(programCounterUpdate);
+        if (loop != null) {
+          // on-stack replacement at the loop header
+          entered.increment();
+          int[] values = registers.toArray();
+          programCounterUpdate = loop.run(values, machine);
+          registers.setAll(values);
+        } else {
+          session.backwardJump(programCounterUpdate, programCounter);
+        }
+      }
+      programCounter = programCounterUpdate;
+    }
+    if (Metrics.COUNTING)
+      Metrics.executed(executed);
+    return programCounter;
+  }
+
+  /**
+   * Gets the number of loops compiled and installed so far.
+   *
+   * @return the number of installed loops
+   */
+  public long getLoopsInstalled() {
+    return installed.sum();
+  }
+
+  /**
+   * Gets the number of times the interpreter handed over to a compiled loop
+   * at its header so far.
+   *
+   * @return the number of entries into compiled loops
+   */
+  public long getLoopsEntered() {
+    return entered.sum();
+  }
+
+  /**
+   * Gets the number of taken backward jumps after which a loop is compiled.
+   *
+   * @return the compile threshold
+   */
+  public int getCompileThreshold() {
+    return compileThreshold;
+  }
+
+  /**
+   * Stops the background compiler; loops queued for compilation are discarded.
+   */
+  @Override
+  public void close() {
+    compiler.shutdownNow();
+  }
+
+  /**
+   * Represents the profile and the compiled loops of a program.
+   */
+  private final class Session {
+    private final Labels labels;
+    private final List<Instruction> program;
+    private final int[] counters;
+    private final AtomicIntegerArray states;
+    private final AtomicReferenceArray<CompiledProgram> loops;
+
+    Session(Labels labels, List<Instruction> program) {
+      this.labels = labels;
+      this.program = List.copyOf(program);
+      this.counters = new int[program.size()];
+      this.states = new AtomicIntegerArray(program.size());
+      this.loops = new AtomicReferenceArray<>(program.size());
+    }
+
+    void backwardJump(int header, int jump) {
+      if (++counters[header] < compileThreshold || states.get(header) != INTERPRETED)
+        return;
+      counters[header] = 0;
+      states.set(header, QUEUED);
+      try {
+        compiler.execute(() -> compile(header, jump));
+      } catch (RejectedExecutionException e) {
+        states.set(header, INTERPRETED);
+      }
+    }
+
+    private void compile(int header, int jump) {
+      Optional<CompiledProgram> loop;
+      try {
+        loop = JvmCompiler.compile(labels, program, header, jump + 1);
+      } catch (RuntimeException e) {
+        loop = Optional.empty();
+      }
+      loop.ifPresent(compiled -> {
+        loops.set(header, compiled);
+        installed.increment();
+      });
+      states.set(header, loop.isPresent() ? INSTALLED : FAILED);
+    }
+  }
+}
@@ -3,6 +3,7 @@ package sml.instruction;
 import sml.Instruction;
 import sml.Machine;
 import sml.RegisterName;
+import sml.Registers;
 
 import java.util.Objects;
 
@@ -55,12 +56,30 @@ public class AddInstruction extends Instruction {
    */
   @Override
   public int execute(Machine m) {
-    int value1 = m.getRegisters().get(result);
-    int value2 = m.getRegisters().get(source);
-    m.getRegisters().set(result, value1 + value2);
+    Registers registers = m.getRegisters();
+    int index = result.ordinal();
+    registers.set(index, registers.get(index) + registers.get(source.ordinal()));
     return NORMAL_PROGRAM_COUNTER_UPDATE;
   }
 
+  /**
+   * Gets the register the result is stored in.
+   *
+   * @return the result register
+   */
+  public RegisterName getResult() {
+    return result;
+  }
+
+  /**
+   * Gets the source register.
+   *
+   * @return the source register
+   */
+  public RegisterName getSource() {
+    return source;
+  }
+
   /**
    * Computes the hash code of the add instruction.
    *
@@ -0,0 +1,219 @@
+package sml.instruction;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.RegisterName;
+import sml.Registers;
+
+import java.util.Objects;
+
+/**
+ * Represents the fused arithmetic and jump superinstruction, which combines
+ * two registers with an {@link Operator} and jumps to a label if the result
+ * is not zero.
+ * <p>
+ * It is produced by the fusion pass from {@code add/sub/mul r s} followed by
+ * {@code jnz r L}, and behaves exactly like that pair of instructions.
+ *
+ * @author Szymon Swendrowski
+ */
+public class ArithmeticJnzInstruction extends Instruction {
+  /**
+   * Represents the arithmetic operation of a fused jump.
+   */
+  public enum Operator {
+    ADD(AddInstruction.OP_CODE) {
+      @Override
+      public int apply(int result, int source) {
+        return result + source;
+      }
+    },
+    SUB(SubInstruction.OP_CODE) {
+      @Override
+      public int apply(int result, int source) {
+        return result - source;
+      }
+    },
+    MUL(MulInstruction.OP_CODE) {
+      @Override
+      public int apply(int result, int source) {
+        return result * source;
+      }
+    };
+
+    private final String opcode;
+
+    Operator(String opcode) {
+      this.opcode = opcode;
+    }
+
+    /**
+     * Applies the operation to the values of the two registers.
+     *
+     * @param result the value of the result register
+     * @param source the value of the source register
+     * @return the new value of the result register
+     */
+    public abstract int apply(int result, int source);
+
+    /**
+     * Gets the opcode of the arithmetic instruction the operation comes from.
+     *
+     * @return the opcode
+     */
+    public String getOpcode() {
+      return opcode;
+    }
+  }
+
+  private final Operator operator;
+  private final RegisterName result;
+  private final RegisterName source;
+  private final String L;
+  // the address L refers to, or UNRESOLVED until the program is linked
+  private final int address;
+
+  private static final int UNRESOLVED = -1;
+
+  /**
+   * Constructor: an instruction to combine the values in two registers and
+   * jump to a label if the result is not zero.
+   *
+   * @param label    optional label (can be null)
+   * @param operator the operation combining the registers
+   * @param result   the register to store the result in
+   * @param source   the register to combine with the result
+   * @param L        the label to jump to
+   */
+  public ArithmeticJnzInstruction(String label, Operator operator, RegisterName result,
+                                  RegisterName source, String L) {
+    this(label, operator, result, source, L, UNRESOLVED);
+  }
+
+  private ArithmeticJnzInstruction(String label, Operator operator, RegisterName result,
+                                   RegisterName source, String L, int address) {
+    super(label, operator.getOpcode() + JnzInstruction.OP_CODE);
+    this.operator = operator;
+    this.result = result;
+    this.source = source;
+    this.L = L;
+    this.address = address;
+  }
+
+  /**
+   * Returns true if the given object is a fused arithmetic and jump
+   * instruction with the same operator, registers and label.
+   *
+   * @param o object to compare
+   * @return True or False
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (o instanceof ArithmeticJnzInstruction other) {
+      return operator == other.operator
+              && Objects.equals(result, other.result)
+              && Objects.equals(source, other.source)
+              && Objects.equals(L, other.L);
+    }
+    return false;
+  }
+
+  /**
+   * Executes the fused arithmetic and jump instruction in the given machine.
+   *
+   * @param m the machine the instruction runs on
+   * @return the new program counter if the result is not zero, otherwise
+   * NORMAL_PROGRAM_COUNTER_UPDATE
+   */
+  @Override
+  public int execute(Machine m) {
+    Registers registers = m.getRegisters();
+    int index = result.ordinal();
+    int value = operator.apply(registers.get(index), registers.get(source.ordinal()));
+    registers.set(index, value);
+    if (value == 0)
+      return NORMAL_PROGRAM_COUNTER_UPDATE;
+    return (address != UNRESOLVED) ? address : m.getLabels().getAddress(L);
+  }
+
+  /**
+   * Returns a copy of the instruction with its label resolved to an address.
+   *
+   * @param labels the labels of the program
+   * @return the linked instruction
+   * @throws IllegalArgumentException if the label does not exist
+   */
+  @Override
+  public Instruction link(Labels labels) {
+    int target = labels.getAddress(L);
+    return (target == address) ? this : new ArithmeticJnzInstruction(label, operator, result, source, L, target);
+  }
+
+  /**
+   * Gets the operation combining the registers.
+   *
+   * @return the operator
+   */
+  public Operator getOperator() {
+    return operator;
+  }
+
+  /**
+   * Gets the register the result is stored in (and whose value is checked).
+   *
+   * @return the result register
+   */
+  public RegisterName getResult() {
+    return result;
+  }
+
+  /**
+   * Gets the source register.
+   *
+   * @return the source register
+   */
+  public RegisterName getSource() {
+    return source;
+  }
+
+  /**
+   * Gets the label jumped to.
+   *
+   * @return the target label
+   */
+  public String getTarget() {
+    return L;
+  }
+
+  /**
+   * Gets the address the target label was resolved to.
+   *
+   * @return the target address, or a negative value if the instruction is not linked
+   */
+  public int getAddress() {
+    return address;
+  }
+
+  /**
+   * Computes the hash code of the fused arithmetic and jump instruction.
+   *
+   * @return the hash code of the instruction
+   */
+  @Override
+  public int hashCode() {
+    return Objects.hash(operator, result, source, L);
+  }
+
+  /**
+   * Computes the string representation of the fused instruction,
+   * as the pair of instructions it replaces.
+   *
+   * @return the string representation of the instruction
+   */
+  @Override
+  public String toString() {
+    return getLabelString() + operator.getOpcode() + " " + result + " " + source
+            + "; " + JnzInstruction.OP_CODE + " " + result + " " + L;
+  }
+}
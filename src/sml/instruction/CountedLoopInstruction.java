@@ -0,0 +1,337 @@
+package sml.instruction;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.RegisterName;
+import sml.Registers;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Represents a counted loop evaluated in closed form.
+ * <p>
+ * The loop is a body of {@code add}, {@code sub}, {@code mul} and {@code mov}
+ * instructions closed by a {@code jnz} on a counter register back to its
+ * first instruction. The counter is only changed by adding or subtracting
+ * registers that the loop never writes, so after {@code n} iterations it is
+ * {@code c + n * delta} and the number of iterations is the smallest
+ * {@code n >= 1} for which that is zero modulo 2<sup>32</sup>. Every
+ * {@code mul} multiplies by such a loop-invariant register, so one iteration
+ * is an affine map of the registers over the int ring, and the final state
+ * is that map raised to the {@code n}-th power, which gives exactly the same
+ * (overflowing) values as running the loop. If the counter never reaches
+ * zero the loop is run as written, which never terminates, as before.
+ * <p>
+ * Raising the map to a power takes a few multiplications of
+ * {@value #SIZE}&times;{@value #SIZE} matrices, so a loop of at most
+ * {@value #STEPPED_ITERATIONS} iterations is simply stepped through instead.
+ *
+ * @author Szymon Swendrowski
+ */
+public class CountedLoopInstruction extends Instruction {
+  public static final String OP_CODE = "loop";
+
+  private static final int ADD = 0;
+  private static final int SUB = 1;
+  private static final int MUL = 2;
+  private static final int MOV = 3;
+
+  // the affine maps work on the registers plus a constant 1; a map is a
+  // SIZE x SIZE matrix stored by rows in one array
+  private static final int SIZE = Registers.COUNT + 1;
+
+  // the number of iterations up to which stepping is cheaper than the closed form
+  private static final int STEPPED_ITERATIONS = 256;
+
+  private final int[] ops;
+  private final int[] results;
+  private final int[] operands; // a source register ordinal, or the value of a mov
+  private final int counter;
+  private final int exit;
+  private final String text;
+
+  private CountedLoopInstruction(String label, int[] ops, int[] results, int[] operands,
+                                 int counter, int exit, String text) {
+    super(label, OP_CODE);
+    this.ops = ops;
+    this.results = results;
+    this.operands = operands;
+    this.counter = counter;
+    this.exit = exit;
+    this.text = text;
+  }
+
+  /**
+   * Returns the closed-form instruction for the given loop, if it is a counted loop.
+   *
+   * @param loop the instructions of the loop, from its header up to and
+   *             including the jump back to the header
+   * @param exit the address execution continues at once the loop is finished
+   * @return the closed-form loop, or an empty optional if the loop has side
+   * effects or an exit that depends on the data
+   */
+  public static Optional<Instruction> of(List<Instruction> loop, int exit) {
+    if (loop.isEmpty())
+      return Optional.empty();
+
+    List<int[]> body = new ArrayList<>();
+    RegisterName checked;
+    for (Instruction instruction : loop.subList(0, loop.size() - 1)) {
+      if (!decode(instruction, body))
+        return Optional.empty();
+    }
+    Instruction jump = loop.get(loop.size() - 1);
+    if (jump instanceof JnzInstruction ins) {
+      checked = ins.getSource();
+    } else if (jump instanceof ArithmeticJnzInstruction ins) {
+      int op = switch (ins.getOperator()) {
+        case ADD -> ADD;
+        case SUB -> SUB;
+        case MUL -> MUL;
+      };
+      body.add(new int[]{op, ins.getResult().ordinal(), ins.getSource().ordinal()});
+      checked = ins.getResult();
+    } else {
+      return Optional.empty();
+    }
+
+    boolean[] written = new boolean[Registers.COUNT];
+    for (int[] op : body)
+      written[op[1]] = true;
+    int counter = checked.ordinal();
+    boolean counted = false;
+    for (int[] op : body) {
+      // mul must scale by an invariant for the iteration to be affine
+      if (op[0] == MUL && written[op[2]])
+        return Optional.empty();
+      // the counter may only step by invariants, so its exit is predictable
+      if (op[1] == counter) {
+        if ((op[0] != ADD && op[0] != SUB) || written[op[2]])
+          return Optional.empty();
+        counted = true;
+      }
+    }
+    if (!counted)
+      return Optional.empty();
+
+    int[] ops = body.stream().mapToInt(op -> op[0]).toArray();
+    int[] results = body.stream().mapToInt(op -> op[1]).toArray();
+    int[] operands = body.stream().mapToInt(op -> op[2]).toArray();
+    String label = loop.get(0).getLabel();
+    String prefix = (label == null) ? "" : label + ": ";
+    String text = loop.stream()
+            .map(Instruction::toString)
+            .map(line -> line.startsWith(prefix) ? line.substring(prefix.length()) : line)
+            .collect(Collectors.joining("; "));
+    return Optional.of(new CountedLoopInstruction(label, ops, results, operands, counter, exit, text));
+  }
+
+  private static boolean decode(Instruction instruction, List<int[]> body) {
+    if (instruction instanceof AddInstruction ins) {
+      body.add(new int[]{ADD, ins.getResult().ordinal(), ins.getSource().ordinal()});
+    } else if (instruction instanceof SubInstruction ins) {
+      body.add(new int[]{SUB, ins.getResult().ordinal(), ins.getSource().ordinal()});
+    } else if (instruction instanceof MulInstruction ins) {
+      body.add(new int[]{MUL, ins.getResult().ordinal(), ins.getSource().ordinal()});
+    } else if (instruction instanceof MovInstruction ins) {
+      body.add(new int[]{MOV, ins.getResult().ordinal(), ins.getValue()});
+    } else if (instruction instanceof MovRunInstruction ins) {
+      for (int i = 0; i < ins.size(); i++)
+        body.add(new int[]{MOV, ins.getResult(i).ordinal(), ins.getValue(i)});
+    } else {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns true if the given object is a closed-form loop with the same body and exit.
+   *
+   * @param o object to compare
+   * @return True or False
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (o instanceof CountedLoopInstruction other) {
+      return Arrays.equals(ops, other.ops)
+              && Arrays.equals(results, other.results)
+              && Arrays.equals(operands, other.operands)
+              && counter == other.counter
+              && exit == other.exit;
+    }
+    return false;
+  }
+
+  /**
+   * Executes the whole loop in the given machine.
+   *
+   * @param m the machine the loop runs on
+   * @return the address just past the loop
+   */
+  @Override
+  public int execute(Machine m) {
+    Registers registers = m.getRegisters();
+    int[] r = registers.toArray();
+
+    int delta = 0;
+    for (int i = 0; i < ops.length; i++)
+      if (results[i] == counter)
+        delta += (ops[i] == ADD) ? r[operands[i]] : -r[operands[i]];
+
+    long iterations = iterations(r[counter], delta);
+    if (iterations < 0) {
+      do {
+        step(r);
+      } while (r[counter] != 0);
+    } else if (iterations <= STEPPED_ITERATIONS) {
+      for (long i = 0; i < iterations; i++)
+        step(r);
+    } else {
+      int[] power = power(iteration(r), iterations);
+      int[] x = Arrays.copyOf(r, SIZE);
+      x[Registers.COUNT] = 1;
+      for (int i = 0; i < Registers.COUNT; i++) {
+        int value = 0;
+        for (int j = 0; j < SIZE; j++)
+          value += power[i * SIZE + j] * x[j];
+        r[i] = value;
+      }
+    }
+    registers.setAll(r);
+    return exit;
+  }
+
+  /*
+   The smallest n >= 1 with start + n * delta == 0 (mod 2^32),
+   or -1 if there is none and the loop never ends.
+  */
+  private static long iterations(int start, int delta) {
+    if (delta == 0)
+      return (start == 0) ? 1 : -1;
+    int shift = Integer.numberOfTrailingZeros(delta);
+    long rest = (-(long) start) & 0xFFFFFFFFL;
+    if ((rest & ((1L << shift) - 1)) != 0)
+      return -1;
+    long mask = (1L << (32 - shift)) - 1;
+    long n = ((rest >>> shift) * (inverse(delta >>> shift) & mask)) & mask;
+    return (n == 0) ? mask + 1 : n;
+  }
+
+  // the inverse of an odd number modulo 2^32 (Newton's iteration)
+  private static int inverse(int odd) {
+    int inverse = odd;
+    for (int i = 0; i < 5; i++)
+      inverse *= 2 - odd * inverse;
+    return inverse;
+  }
+
+  private void step(int[] r) {
+    for (int i = 0; i < ops.length; i++) {
+      switch (ops[i]) {
+        case ADD -> r[results[i]] += r[operands[i]];
+        case SUB -> r[results[i]] -= r[operands[i]];
+        case MUL -> r[results[i]] *= r[operands[i]];
+        default -> r[results[i]] = operands[i];
+      }
+    }
+  }
+
+  // the affine map of one iteration, with the invariant multipliers taken from r
+  private int[] iteration(int[] r) {
+    int[] map = identity();
+    for (int i = 0; i < ops.length; i++) {
+      int row = results[i] * SIZE;
+      switch (ops[i]) {
+        case ADD, SUB -> {
+          int source = operands[i] * SIZE;
+          int sign = (ops[i] == ADD) ? 1 : -1;
+          for (int j = 0; j < SIZE; j++)
+            map[row + j] += sign * map[source + j];
+        }
+        case MUL -> {
+          int factor = r[operands[i]];
+          for (int j = 0; j < SIZE; j++)
+            map[row + j] *= factor;
+        }
+        default -> {
+          Arrays.fill(map, row, row + SIZE, 0);
+          map[row + Registers.COUNT] = operands[i];
+        }
+      }
+    }
+    return map;
+  }
+
+  private static int[] identity() {
+    int[] identity = new int[SIZE * SIZE];
+    for (int i = 0; i < SIZE; i++)
+      identity[i * SIZE + i] = 1;
+    return identity;
+  }
+
+  // raises the map to the power by squaring, reusing three buffers throughout
+  private static int[] power(int[] map, long exponent) {
+    int[] result = identity();
+    int[] product = new int[SIZE * SIZE];
+    while (exponent > 0) {
+      if ((exponent & 1) != 0) {
+        multiply(result, map, product);
+        int[] swap = result;
+        result = product;
+        product = swap;
+      }
+      exponent >>>= 1;
+      if (exponent > 0) {
+        multiply(map, map, product);
+        int[] swap = map;
+        map = product;
+        product = swap;
+      }
+    }
+    return result;
+  }
+
+  // product := a * b; product must be neither a nor b
+  private static void multiply(int[] a, int[] b, int[] product) {
+    Arrays.fill(product, 0);
+    for (int i = 0; i < SIZE; i++)
+      for (int k = 0; k < SIZE; k++) {
+        int factor = a[i * SIZE + k];
+        if (factor != 0)
+          for (int j = 0; j < SIZE; j++)
+            product[i * SIZE + j] += factor * b[k * SIZE + j];
+      }
+  }
+
+  /**
+   * Gets the address execution continues at once the loop is finished.
+   *
+   * @return the exit address
+   */
+  public int getExit() {
+    return exit;
+  }
+
+  /**
+   * Computes the hash code of the closed-form loop.
+   *
+   * @return the hash code of the instruction
+   */
+  @Override
+  public int hashCode() {
+    return Objects.hash(Arrays.hashCode(ops), Arrays.hashCode(results),
+            Arrays.hashCode(operands), counter, exit);
+  }
+
+  /**
+   * Computes the string representation of the closed-form loop,
+   * as the instructions of the loop.
+   *
+   * @return the string representation of the instruction
+   */
+  @Override
+  public String toString() {
+    return getLabelString() + OP_CODE + " [" + text + "]";
+  }
+}
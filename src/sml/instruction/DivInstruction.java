@@ -3,6 +3,8 @@ package sml.instruction;
 import sml.Instruction;
 import sml.Machine;
 import sml.RegisterName;
+import sml.Registers;
+import sml.metrics.Metrics;
 
 import java.util.Objects;
 
@@ -13,6 +15,8 @@ import java.util.Objects;
  */
 public class DivInstruction extends Instruction {
   public static final String OP_CODE = "div";
+  public static final String DIVISION_BY_ZERO = "Error: Division by zero, "
+          + "value of result register won't change";
   private final RegisterName result;
   private final RegisterName source;
 
@@ -54,17 +58,37 @@ public class DivInstruction extends Instruction {
    */
   @Override
   public int execute(Machine m) {
-    int value1 = m.getRegisters().get(result);
-    int value2 = m.getRegisters().get(source);
+    Registers registers = m.getRegisters();
+    int index = result.ordinal();
+    int value1 = registers.get(index);
+    int value2 = registers.get(source.ordinal());
     try {
-      m.getRegisters().set(result, value1 / value2);
+      registers.set(index, value1 / value2);
     } catch (ArithmeticException e) {
-      System.out.print("Error: Division by zero, " +
-              "value of result register won't change");
+      Metrics.divisionByZero();
+      m.getOutput().write(DIVISION_BY_ZERO);
     }
     return NORMAL_PROGRAM_COUNTER_UPDATE;
   }
 
+  /**
+   * Gets the register the result is stored in.
+   *
+   * @return the result register
+   */
+  public RegisterName getResult() {
+    return result;
+  }
+
+  /**
+   * Gets the source register.
+   *
+   * @return the source register
+   */
+  public RegisterName getSource() {
+    return source;
+  }
+
   /**
    * Computes the hash code of the divide instruction.
    *
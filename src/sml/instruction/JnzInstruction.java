@@ -1,6 +1,7 @@
 package sml.instruction;
 
 import sml.Instruction;
+import sml.Labels;
 import sml.Machine;
 import sml.RegisterName;
 
@@ -15,6 +16,10 @@ public class JnzInstruction extends Instruction {
   public static final String OP_CODE = "jnz";
   private final RegisterName source;
   private final String L;
+  // the address L refers to, or UNRESOLVED until the program is linked
+  private final int address;
+
+  private static final int UNRESOLVED = -1;
 
   /**
    * Constructor: an instruction to jump to a label if the value in a register is not zero.
@@ -24,9 +29,18 @@ public class JnzInstruction extends Instruction {
    * @param L      the label to jump to
    */
   public JnzInstruction(String label, RegisterName source, String L) {
+    this(label, source, L, UNRESOLVED);
+  }
+
+  /*
+   This constructor is private so that the instruction factory, which uses
+   the first public constructor, only ever sees the one above.
+  */
+  private JnzInstruction(String label, RegisterName source, String L, int address) {
     super(label, OP_CODE);
     this.source = source;
     this.L = L;
+    this.address = address;
   }
 
   /**
@@ -53,9 +67,49 @@ public class JnzInstruction extends Instruction {
    */
   @Override
   public int execute(Machine m) {
-    return m.getRegisters().get(source) != 0
-            ? m.getLabels().getAddress(L)
-            : NORMAL_PROGRAM_COUNTER_UPDATE;
+    if (m.getRegisters().get(source.ordinal()) == 0)
+      return NORMAL_PROGRAM_COUNTER_UPDATE;
+    return (address != UNRESOLVED) ? address : m.getLabels().getAddress(L);
+  }
+
+  /**
+   * Returns a copy of the jump instruction with its label resolved to an address.
+   *
+   * @param labels the labels of the program
+   * @return the linked jump instruction
+   * @throws IllegalArgumentException if the label does not exist
+   */
+  @Override
+  public Instruction link(Labels labels) {
+    int target = labels.getAddress(L);
+    return (target == address) ? this : new JnzInstruction(label, source, L, target);
+  }
+
+  /**
+   * Gets the register whose value is checked.
+   *
+   * @return the source register
+   */
+  public RegisterName getSource() {
+    return source;
+  }
+
+  /**
+   * Gets the label jumped to.
+   *
+   * @return the target label
+   */
+  public String getTarget() {
+    return L;
+  }
+
+  /**
+   * Gets the address the target label was resolved to.
+   *
+   * @return the target address, or a negative value if the instruction is not linked
+   */
+  public int getAddress() {
+    return address;
   }
 
   /**
@@ -42,10 +42,28 @@ public class MovInstruction extends Instruction {
    */
   @Override
   public int execute(Machine m) {
-    m.getRegisters().set(result, x);
+    m.getRegisters().set(result.ordinal(), x);
     return NORMAL_PROGRAM_COUNTER_UPDATE;
   }
 
+  /**
+   * Gets the register the integer is stored in.
+   *
+   * @return the result register
+   */
+  public RegisterName getResult() {
+    return result;
+  }
+
+  /**
+   * Gets the integer stored into the result.
+   *
+   * @return the integer value
+   */
+  public int getValue() {
+    return x;
+  }
+
   /**
    * Computes the hash code of the move instruction.
    *
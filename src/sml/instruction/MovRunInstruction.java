@@ -0,0 +1,124 @@
+package sml.instruction;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.RegisterName;
+import sml.Registers;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Represents the fused move superinstruction, which stores a run of
+ * integer values in registers.
+ * <p>
+ * It is produced by the fusion pass from consecutive {@code mov}
+ * instructions, and behaves exactly like them executed in order.
+ *
+ * @author Szymon Swendrowski
+ */
+public class MovRunInstruction extends Instruction {
+  public static final String OP_CODE = "movrun";
+  private final RegisterName[] results;
+  private final int[] values;
+
+  /**
+   * Constructor: an instruction to store integer values in registers.
+   *
+   * @param label   optional label (can be null)
+   * @param results the registers to store the integers in
+   * @param values  the integers to store, one per register
+   */
+  public MovRunInstruction(String label, RegisterName[] results, int[] values) {
+    super(label, OP_CODE);
+    if (results.length != values.length)
+      throw new IllegalArgumentException("Expected " + results.length
+              + " values but got " + values.length);
+    this.results = results.clone();
+    this.values = values.clone();
+  }
+
+  /**
+   * Returns true if the given object is a fused move instruction with
+   * the same registers and values.
+   *
+   * @param o object to compare
+   * @return True or False
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (o instanceof MovRunInstruction other) {
+      return Arrays.equals(results, other.results)
+              && Arrays.equals(values, other.values);
+    }
+    return false;
+  }
+
+  /**
+   * Executes the fused move instruction in the given machine.
+   *
+   * @param m the machine the instruction runs on
+   * @return NORMAL_PROGRAM_COUNTER_UPDATE to indicate that
+   * the instruction with the next address is to be executed
+   */
+  @Override
+  public int execute(Machine m) {
+    Registers registers = m.getRegisters();
+    for (int i = 0; i < results.length; i++)
+      registers.set(results[i].ordinal(), values[i]);
+    return NORMAL_PROGRAM_COUNTER_UPDATE;
+  }
+
+  /**
+   * Gets the number of moves in the run.
+   *
+   * @return the number of moves
+   */
+  public int size() {
+    return results.length;
+  }
+
+  /**
+   * Gets the register of the given move.
+   *
+   * @param i the index of the move in the run
+   * @return the result register
+   */
+  public RegisterName getResult(int i) {
+    return results[i];
+  }
+
+  /**
+   * Gets the integer of the given move.
+   *
+   * @param i the index of the move in the run
+   * @return the integer value
+   */
+  public int getValue(int i) {
+    return values[i];
+  }
+
+  /**
+   * Computes the hash code of the fused move instruction.
+   *
+   * @return the hash code of the instruction
+   */
+  @Override
+  public int hashCode() {
+    return 31 * Arrays.hashCode(results) + Arrays.hashCode(values);
+  }
+
+  /**
+   * Computes the string representation of the fused instruction,
+   * as the moves it replaces.
+   *
+   * @return the string representation of the instruction
+   */
+  @Override
+  public String toString() {
+    return getLabelString() + IntStream.range(0, results.length)
+            .mapToObj(i -> MovInstruction.OP_CODE + " " + results[i] + " " + values[i])
+            .collect(Collectors.joining("; "));
+  }
+}
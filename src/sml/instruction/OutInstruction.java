@@ -50,11 +50,19 @@ public class OutInstruction extends Instruction {
    */
   @Override
   public int execute(Machine m) {
-    int value1 = m.getRegisters().get(source);
-    System.out.println(value1);
+    m.getOutput().writeInt(m.getRegisters().get(source.ordinal()));
     return NORMAL_PROGRAM_COUNTER_UPDATE;
   }
 
+  /**
+   * Gets the register whose value is printed.
+   *
+   * @return the source register
+   */
+  public RegisterName getSource() {
+    return source;
+  }
+
   /**
    * Computes the hash value of the output instruction.
    *
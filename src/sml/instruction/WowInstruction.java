@@ -2,9 +2,9 @@ package sml.instruction;
 
 import sml.Instruction;
 import sml.Machine;
+import sml.output.OutputSink;
 
 import java.util.Objects;
-import java.util.stream.IntStream;
 
 /**
  * Represents a wow instruction.
@@ -13,6 +13,7 @@ import java.util.stream.IntStream;
  */
 public class WowInstruction extends Instruction {
   public static final String OP_CODE = "out";
+  public static final String WOW = "Wow!";
   private final int t;
 
   /**
@@ -50,10 +51,21 @@ public class WowInstruction extends Instruction {
    */
   @Override
   public int execute(Machine m) {
-    IntStream.range(0, t).mapToObj(i -> "Wow!").forEach(System.out::println);
+    OutputSink output = m.getOutput();
+    for (int i = 0; i < t; i++)
+      output.writeLine(WOW);
     return NORMAL_PROGRAM_COUNTER_UPDATE;
   }
 
+  /**
+   * Gets the number of times "Wow!" is printed.
+   *
+   * @return the repeat count
+   */
+  public int getTimes() {
+    return t;
+  }
+
   /**
    * Computes the hash value of the wow instruction.
    *
@@ -0,0 +1,255 @@
+package sml.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Represents the live statistics of the interpreter, shared by every
+ * machine and translator in the virtual machine.
+ * <p>
+ * Each statistic is a {@link LongAdder}, whose cells are striped over the
+ * threads that update it, so machines running on many threads do not
+ * contend on one counter. The hot paths only report in bulk. When the
+ * engines are {@link #COUNTING}, the engines over arrays count a straight
+ * run of instructions at a time, at the jump that ends it, and every
+ * counting engine adds its count through {@link #count(long, int)} in
+ * batches and the rest when the program halts. A {@link sml.output.BufferedSink}
+ * adds its bytes when it writes its buffer out. Instructions run by the
+ * sampling engine, or by code compiled to JVM bytecode, are not counted.
+ * <p>
+ * The rate of instructions is the rate over the last {@value #INTERVAL_MILLIS}
+ * milliseconds, sampled on a daemon timer once the metrics are exported.
+ * <p>
+ * The statistics can be read through JMX, once {@link #register()} has been
+ * called, or as text (see {@link #write(Appendable)} and {@link MetricsServer}).
+ *
+ * @author Szymon Swendrowski
+ */
+public final class Metrics implements MetricsMBean {
+  public static final String OBJECT_NAME = "sml:type=Metrics";
+
+  /**
+   * True if the engines count the instructions they execute, as they do when
+   * the system property {@code sml.metrics.instructions} is {@code true}.
+   * It is constant, so the compiler removes the counting from the engines
+   * that do not count.
+   */
+  public static final boolean COUNTING = Boolean.getBoolean("sml.metrics.instructions");
+
+  // the number of instructions an engine counts between reports
+  static final int BATCH = 1 << 16;
+
+  // the interval the rate of instructions is sampled at
+  static final long INTERVAL_MILLIS = 1000;
+
+  private static final Metrics INSTANCE = new Metrics();
+
+  private final LongAdder instructions = new LongAdder();
+  private final LongAdder programs = new LongAdder();
+  private final LongAdder translationNanos = new LongAdder();
+  private final LongAdder machines = new LongAdder();
+  private final LongAdder outputBytes = new LongAdder();
+  private final LongAdder divisionsByZero = new LongAdder();
+
+  // the timer that samples the rate, once the metrics are exported
+  private ScheduledExecutorService timer;
+  private volatile double rate;
+
+  // the instruction count and time the rate was last sampled at, read by the timer only
+  private long lastInstructions;
+  private long lastNanos;
+
+  private Metrics() {
+  }
+
+  /**
+   * Gets the statistics of the interpreter.
+   *
+   * @return the metrics
+   */
+  public static Metrics get() {
+    return INSTANCE;
+  }
+
+  /**
+   * Starts sampling the rate of instructions, unless it already is.
+   */
+  static synchronized void startRate() {
+    if (INSTANCE.timer != null)
+      return;
+    INSTANCE.lastInstructions = INSTANCE.instructions.sum();
+    INSTANCE.lastNanos = System.nanoTime();
+    INSTANCE.timer = Executors.newSingleThreadScheduledExecutor(task -> {
+      Thread thread = new Thread(task, "sml-metrics-rate");
+      thread.setDaemon(true);
+      return thread;
+    });
+    INSTANCE.timer.scheduleAtFixedRate(INSTANCE::sampleRate, INTERVAL_MILLIS, INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  private void sampleRate() {
+    long count = instructions.sum();
+    long now = System.nanoTime();
+    rate = (count - lastInstructions) * 1e9 / (now - lastNanos);
+    lastInstructions = count;
+    lastNanos = now;
+  }
+
+  /**
+   * Registers the metrics with the platform MBean server, unless they already are,
+   * and starts sampling the rate of instructions.
+   *
+   * @return the name the metrics are registered under
+   * @throws IllegalStateException if they cannot be registered
+   */
+  public static ObjectName register() {
+    startRate();
+    try {
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (!server.isRegistered(name)) {
+        try {
+          server.registerMBean(INSTANCE, name);
+        } catch (InstanceAlreadyExistsException e) {
+          // registered by another thread in the meantime
+        }
+      }
+      return name;
+    } catch (JMException e) {
+      throw new IllegalStateException("Cannot register " + OBJECT_NAME, e);
+    }
+  }
+
+  /**
+   * Records instructions executed by a program.
+   *
+   * @param count the number of instructions
+   */
+  public static void executed(long count) {
+    INSTANCE.instructions.add(count);
+  }
+
+  /**
+   * Adds a run of instructions to the count kept by an engine, and records
+   * the count once it reaches a batch.
+   *
+   * @param executed the count kept by the engine
+   * @param length   the number of instructions in the run
+   * @return the new count kept by the engine
+   */
+  public static long count(long executed, int length) {
+    executed += length;
+    if (executed < BATCH)
+      return executed;
+    INSTANCE.instructions.add(executed);
+    return 0;
+  }
+
+  /**
+   * Records the translation of a program.
+   *
+   * @param nanos the time the translation took, in nanoseconds
+   */
+  public static void translated(long nanos) {
+    INSTANCE.programs.increment();
+    INSTANCE.translationNanos.add(nanos);
+  }
+
+  /**
+   * Records that a machine started running its program.
+   */
+  public static void machineStarted() {
+    INSTANCE.machines.increment();
+  }
+
+  /**
+   * Records that a machine stopped running its program.
+   */
+  public static void machineStopped() {
+    INSTANCE.machines.decrement();
+  }
+
+  /**
+   * Records bytes of program output written out.
+   *
+   * @param bytes the number of bytes
+   */
+  public static void output(long bytes) {
+    INSTANCE.outputBytes.add(bytes);
+  }
+
+  /**
+   * Records a division by zero.
+   */
+  public static void divisionByZero() {
+    INSTANCE.divisionsByZero.increment();
+  }
+
+  @Override
+  public long getInstructionsExecuted() {
+    return instructions.sum();
+  }
+
+  @Override
+  public double getInstructionsPerSecond() {
+    return rate;
+  }
+
+  @Override
+  public long getProgramsTranslated() {
+    return programs.sum();
+  }
+
+  @Override
+  public double getTranslationTimeMillis() {
+    return translationNanos.sum() / 1e6;
+  }
+
+  @Override
+  public long getActiveMachines() {
+    return machines.sum();
+  }
+
+  @Override
+  public long getOutputBytes() {
+    return outputBytes.sum();
+  }
+
+  @Override
+  public long getDivisionByZeroEvents() {
+    return divisionsByZero.sum();
+  }
+
+  /**
+   * Writes the statistics as text, one {@code name value} line each, in the
+   * exposition format Prometheus scrapes.
+   *
+   * @param out where the statistics are written
+   * @throws IOException if they cannot be written
+   */
+  public void write(Appendable out) throws IOException {
+    line(out, "sml_instructions_executed_total", getInstructionsExecuted());
+    line(out, "sml_instructions_per_second", getInstructionsPerSecond());
+    line(out, "sml_programs_translated_total", getProgramsTranslated());
+    line(out, "sml_translation_seconds_total", translationNanos.sum() / 1e9);
+    line(out, "sml_active_machines", getActiveMachines());
+    line(out, "sml_output_bytes_total", getOutputBytes());
+    line(out, "sml_division_by_zero_total", getDivisionByZeroEvents());
+  }
+
+  private static void line(Appendable out, String name, long value) throws IOException {
+    out.append(name).append(' ').append(String.valueOf(value)).append('\n');
+  }
+
+  private static void line(Appendable out, String name, double value) throws IOException {
+    out.append(name).append(' ').append(String.valueOf(value)).append('\n');
+  }
+}
@@ -0,0 +1,60 @@
+package sml.metrics;
+
+/**
+ * Represents the management interface of the interpreter {@link Metrics},
+ * registered with the platform MBean server as {@value Metrics#OBJECT_NAME}.
+ *
+ * @author Szymon Swendrowski
+ */
+public interface MetricsMBean {
+  /**
+   * Gets the number of instructions executed, if the engines count them
+   * (see {@link Metrics#COUNTING}).
+   *
+   * @return the instruction count
+   */
+  long getInstructionsExecuted();
+
+  /**
+   * Gets the rate at which instructions were executed over the last interval
+   * the rate was sampled at, or 0 before the first interval has passed.
+   *
+   * @return the instructions executed per second
+   */
+  double getInstructionsPerSecond();
+
+  /**
+   * Gets the number of programs translated.
+   *
+   * @return the program count
+   */
+  long getProgramsTranslated();
+
+  /**
+   * Gets the time spent translating programs, on all threads.
+   *
+   * @return the translation time in milliseconds
+   */
+  double getTranslationTimeMillis();
+
+  /**
+   * Gets the number of machines running a program.
+   *
+   * @return the machine count
+   */
+  long getActiveMachines();
+
+  /**
+   * Gets the number of bytes of program output written out.
+   *
+   * @return the byte count
+   */
+  long getOutputBytes();
+
+  /**
+   * Gets the number of divisions by zero.
+   *
+   * @return the event count
+   */
+  long getDivisionByZeroEvents();
+}
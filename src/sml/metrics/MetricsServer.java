@@ -0,0 +1,113 @@
+package sml.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Represents the local HTTP endpoint that serves the {@link Metrics} as
+ * text at {@value #PATH}, for scraping by a monitoring system.
+ * <p>
+ * The server only listens on the loopback address and serves requests on
+ * one daemon thread, so it never keeps the virtual machine alive. It is started by
+ * {@link #startDefault()} when the system property {@code sml.metrics.port}
+ * is set.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class MetricsServer implements AutoCloseable {
+  public static final String PATH = "/metrics";
+
+  private final HttpServer server;
+
+  private MetricsServer(HttpServer server) {
+    this.server = server;
+  }
+
+  /**
+   * Starts a server on the given port of the loopback address.
+   *
+   * @param port the port, or 0 for any free port
+   * @return the server, which must be closed
+   * @throws IOException if the port cannot be bound
+   */
+  public static MetricsServer start(int port) throws IOException {
+    Metrics.startRate();
+    HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext(PATH, MetricsServer::handle);
+    server.setExecutor(null); // requests are served on the dispatcher thread
+
+    // the dispatcher thread is a daemon if the thread that starts the server is
+    Thread starter = new Thread(server::start, "sml-metrics");
+    starter.setDaemon(true);
+    starter.start();
+    boolean interrupted = false;
+    while (starter.isAlive()) {
+      try {
+        starter.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted)
+      Thread.currentThread().interrupt();
+    return new MetricsServer(server);
+  }
+
+  /**
+   * Starts a server on the port given by the system property {@code sml.metrics.port}.
+   *
+   * @return the server, or null if the property is not set
+   * @throws IOException              if the port cannot be bound
+   * @throws IllegalArgumentException if the property is not a port number
+   */
+  public static MetricsServer startDefault() throws IOException {
+    String port = System.getProperty("sml.metrics.port");
+    if (port == null || port.isBlank())
+      return null;
+    try {
+      return start(Integer.parseInt(port.trim()));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(port + " is not a valid sml.metrics.port", e);
+    }
+  }
+
+  /**
+   * Gets the port the server listens on.
+   *
+   * @return the port
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Stops the server.
+   */
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+
+  private static void handle(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      if (!exchange.getRequestMethod().equals("GET")) {
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+      StringBuilder text = new StringBuilder();
+      Metrics.get().write(text);
+      byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package sml.optimise;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.instruction.*;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Represents the optimisation that evaluates counted loops in closed form.
+ * <p>
+ * A loop is a backward jump to a header with no other way into it. If the
+ * loop is free of side effects and its exit only depends on a counter
+ * stepped by loop invariants (see {@link CountedLoopInstruction}), its
+ * header is replaced by one instruction that computes the final registers
+ * and jumps past the loop. The rest of the loop is left in place, so every
+ * address and label of the program stays the same; it just becomes
+ * unreachable. Loops containing {@code out}, {@code wow}, {@code div},
+ * another jump, or a label in their middle are left alone.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class CountedLoopPass {
+  private CountedLoopPass() {
+  }
+
+  /**
+   * Replaces every counted loop of the program in place.
+   *
+   * @param labels  the labels of the program
+   * @param program the program (list of instructions)
+   * @return the number of loops replaced
+   */
+  public static int apply(Labels labels, List<Instruction> program) {
+    boolean[] targets = new boolean[program.size() + 1];
+    for (int address : labels.getAddresses().values())
+      if (address >= 0 && address < targets.length)
+        targets[address] = true;
+    for (int address = 0; address < program.size(); address++)
+      if (program.get(address).getLabel() != null)
+        targets[address] = true;
+
+    int replaced = 0;
+    for (int jump = 0; jump < program.size(); jump++) {
+      String target = target(program.get(jump));
+      if (target == null)
+        continue;
+      Integer header = labels.getAddresses().get(target);
+      if (header == null || header > jump || entered(targets, header, jump))
+        continue;
+
+      Optional<Instruction> loop = CountedLoopInstruction.of(program.subList(header, jump + 1), jump + 1);
+      if (loop.isPresent()) {
+        program.set(header, loop.get());
+        replaced++;
+      }
+    }
+    return replaced;
+  }
+
+  // the label a (possibly fused) jump refers to, or null for other instructions
+  private static String target(Instruction instruction) {
+    if (instruction instanceof JnzInstruction ins)
+      return ins.getTarget();
+    if (instruction instanceof ArithmeticJnzInstruction ins)
+      return ins.getTarget();
+    return null;
+  }
+
+  // true if some label refers to the middle of the loop
+  private static boolean entered(boolean[] targets, int header, int jump) {
+    for (int address = header + 1; address <= jump; address++)
+      if (targets[address])
+        return true;
+    return false;
+  }
+}
@@ -0,0 +1,124 @@
+package sml.optimise;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.RegisterName;
+import sml.instruction.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents the peephole pass that fuses common instruction sequences
+ * into superinstructions, so fewer instructions are dispatched per iteration:
+ * <ul>
+ *   <li>{@code add/sub/mul r s; jnz r L} becomes one fused arithmetic jump;</li>
+ *   <li>a run of {@code mov} instructions becomes one {@link MovRunInstruction}.</li>
+ * </ul>
+ * A sequence is never fused across a label: only its first instruction may
+ * be the target of a jump, so every label still refers to the start of an
+ * instruction after the pass and is simply moved to its new address.
+ * <p>
+ * No entry point runs the pass: a caller applies it to a program of its own
+ * before linking it, since the shared programs the engines run cannot be changed.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class FusionPass {
+  private FusionPass() {
+  }
+
+  /**
+   * Fuses the program in place and moves the labels to the new addresses.
+   *
+   * @param labels  the labels of the program
+   * @param program the program (list of instructions)
+   * @return the number of instructions removed by fusion
+   */
+  public static int apply(Labels labels, List<Instruction> program) {
+    boolean[] targets = new boolean[program.size() + 1];
+    for (int address : labels.getAddresses().values())
+      if (address >= 0 && address < targets.length)
+        targets[address] = true;
+
+    List<Instruction> fused = new ArrayList<>(program.size());
+    int[] addresses = new int[program.size() + 1];
+    int address = 0;
+    while (address < program.size()) {
+      int start = address;
+      Instruction instruction = program.get(address);
+      Instruction next = (address + 1 < program.size() && !isTarget(targets, address + 1, program))
+              ? program.get(address + 1)
+              : null;
+
+      if (next instanceof JnzInstruction jump && fusesWith(instruction, jump)) {
+        fused.add(fuse(instruction, jump));
+        address += 2;
+      } else if (instruction instanceof MovInstruction && next instanceof MovInstruction) {
+        List<MovInstruction> run = new ArrayList<>();
+        do {
+          run.add((MovInstruction) program.get(address++));
+        } while (address < program.size() && !isTarget(targets, address, program)
+                && program.get(address) instanceof MovInstruction);
+        fused.add(fuse(run));
+      } else {
+        fused.add(instruction);
+        address++;
+      }
+
+      for (int i = start; i < address; i++)
+        addresses[i] = fused.size() - 1;
+    }
+    addresses[program.size()] = fused.size();
+
+    Map<String, Integer> moved = new HashMap<>(labels.getAddresses());
+    labels.reset();
+    moved.forEach((label, old) -> labels.addLabel(label,
+            (old >= 0 && old < addresses.length) ? addresses[old] : old));
+
+    int removed = program.size() - fused.size();
+    program.clear();
+    program.addAll(fused);
+    return removed;
+  }
+
+  private static boolean isTarget(boolean[] targets, int address, List<Instruction> program) {
+    return targets[address] || program.get(address).getLabel() != null;
+  }
+
+  private static boolean fusesWith(Instruction instruction, JnzInstruction jump) {
+    RegisterName checked = jump.getSource();
+    if (instruction instanceof AddInstruction ins)
+      return ins.getResult().equals(checked);
+    if (instruction instanceof SubInstruction ins)
+      return ins.getResult().equals(checked);
+    if (instruction instanceof MulInstruction ins)
+      return ins.getResult().equals(checked);
+    return false;
+  }
+
+  private static Instruction fuse(Instruction instruction, JnzInstruction jump) {
+    String label = instruction.getLabel();
+    if (instruction instanceof AddInstruction ins)
+      return new ArithmeticJnzInstruction(label, ArithmeticJnzInstruction.Operator.ADD,
+              ins.getResult(), ins.getSource(), jump.getTarget());
+    if (instruction instanceof SubInstruction ins)
+      return new ArithmeticJnzInstruction(label, ArithmeticJnzInstruction.Operator.SUB,
+              ins.getResult(), ins.getSource(), jump.getTarget());
+    MulInstruction ins = (MulInstruction) instruction;
+    return new ArithmeticJnzInstruction(label, ArithmeticJnzInstruction.Operator.MUL,
+            ins.getResult(), ins.getSource(), jump.getTarget());
+  }
+
+  private static Instruction fuse(List<MovInstruction> run) {
+    RegisterName[] results = new RegisterName[run.size()];
+    int[] values = new int[run.size()];
+    for (int i = 0; i < run.size(); i++) {
+      results[i] = run.get(i).getResult();
+      values[i] = run.get(i).getValue();
+    }
+    return new MovRunInstruction(run.get(0).getLabel(), results, values);
+  }
+}
@@ -0,0 +1,174 @@
+package sml.output;
+
+import sml.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Represents a sink that collects output in a large byte buffer and writes it
+ * to an output stream according to a {@link FlushPolicy}.
+ * <p>
+ * In text mode an int is written as its decimal digits straight into the
+ * buffer, without creating a {@code String}, followed by the line separator,
+ * so the bytes are the same as {@code println} would produce. In binary mode
+ * an int is written as 4 big-endian bytes, and a line as its UTF-8 bytes
+ * followed by {@code '\n'}.
+ * <p>
+ * A sink belongs to one machine and is not thread-safe.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class BufferedSink implements OutputSink {
+  public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+  private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+  private static final int MAX_INT_LENGTH = 11; // "-2147483648"
+
+  private final OutputStream out;
+  private final FlushPolicy policy;
+  private final boolean binary;
+  private final byte[] buffer;
+  private int count;
+  private long lastFlush = System.nanoTime();
+
+  /**
+   * Constructor: a text sink with the default buffer size.
+   *
+   * @param out    the stream the output is written to
+   * @param policy when the buffer is written out
+   */
+  public BufferedSink(OutputStream out, FlushPolicy policy) {
+    this(out, policy, false, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Constructor: a sink with the given mode and buffer size.
+   *
+   * @param out        the stream the output is written to
+   * @param policy     when the buffer is written out
+   * @param binary     true to write ints as 4 big-endian bytes rather than text
+   * @param bufferSize the size of the buffer in bytes
+   */
+  public BufferedSink(OutputStream out, FlushPolicy policy, boolean binary, int bufferSize) {
+    if (bufferSize < MAX_INT_LENGTH + LINE_SEPARATOR.length)
+      throw new IllegalArgumentException("Buffer size too small: " + bufferSize);
+    this.out = out;
+    this.policy = policy;
+    this.binary = binary;
+    this.buffer = new byte[bufferSize];
+  }
+
+  @Override
+  public void writeInt(int value) {
+    ensure(MAX_INT_LENGTH + LINE_SEPARATOR.length);
+    if (binary) {
+      buffer[count++] = (byte) (value >>> 24);
+      buffer[count++] = (byte) (value >>> 16);
+      buffer[count++] = (byte) (value >>> 8);
+      buffer[count++] = (byte) value;
+    } else {
+      writeDigits(value);
+      newLine();
+    }
+    written();
+  }
+
+  @Override
+  public void write(String text) {
+    copy(text.getBytes(StandardCharsets.UTF_8));
+    written();
+  }
+
+  @Override
+  public void writeLine(String line) {
+    copy(line.getBytes(StandardCharsets.UTF_8));
+    int end = binary ? 1 : LINE_SEPARATOR.length;
+    ensure(end);
+    if (binary)
+      buffer[count++] = '\n';
+    else
+      newLine();
+    written();
+  }
+
+  @Override
+  public void flush() {
+    drain();
+    try {
+      out.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void writeDigits(int value) {
+    long rest = value;
+    if (rest < 0) {
+      buffer[count++] = '-';
+      rest = -rest;
+    }
+    int end = count + digits(rest);
+    int position = end;
+    do {
+      buffer[--position] = (byte) ('0' + rest % 10);
+      rest /= 10;
+    } while (rest != 0);
+    count = end;
+  }
+
+  private static int digits(long value) {
+    int digits = 1;
+    while (value >= 10) {
+      value /= 10;
+      digits++;
+    }
+    return digits;
+  }
+
+  // copies the bytes into the buffer, or writes them through if they do not fit
+  private void copy(byte[] bytes) {
+    if (bytes.length > buffer.length) {
+      drain();
+      write(bytes, bytes.length);
+    } else {
+      ensure(bytes.length);
+      System.arraycopy(bytes, 0, buffer, count, bytes.length);
+      count += bytes.length;
+    }
+  }
+
+  private void newLine() {
+    for (byte b : LINE_SEPARATOR)
+      buffer[count++] = b;
+  }
+
+  // makes room for the given number of bytes
+  private void ensure(int bytes) {
+    if (count + bytes > buffer.length)
+      drain();
+  }
+
+  private void written() {
+    if (count >= policy.size()
+            || (policy.timed() && System.nanoTime() - lastFlush >= policy.intervalNanos()))
+      flush();
+  }
+
+  private void drain() {
+    write(buffer, count);
+    count = 0;
+    lastFlush = System.nanoTime();
+  }
+
+  private void write(byte[] bytes, int length) {
+    try {
+      out.write(bytes, 0, length);
+      Metrics.output(length);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
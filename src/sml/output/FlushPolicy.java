@@ -0,0 +1,63 @@
+package sml.output;
+
+/**
+ * Represents when a {@link BufferedSink} writes its buffer out.
+ * A buffer is always written out when it is full and when the program halts.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class FlushPolicy {
+  private final int size;
+  private final long intervalNanos;
+
+  private FlushPolicy(int size, long intervalNanos) {
+    this.size = size;
+    this.intervalNanos = intervalNanos;
+  }
+
+  /**
+   * Returns the policy that only flushes when the buffer is full or the program halts.
+   *
+   * @return the flush policy
+   */
+  public static FlushPolicy onHalt() {
+    return new FlushPolicy(Integer.MAX_VALUE, Long.MAX_VALUE);
+  }
+
+  /**
+   * Returns the policy that flushes once the given number of bytes is buffered.
+   *
+   * @param bytes the number of buffered bytes that triggers a flush
+   * @return the flush policy
+   */
+  public static FlushPolicy onSize(int bytes) {
+    if (bytes < 1)
+      throw new IllegalArgumentException("Flush size must be positive: " + bytes);
+    return new FlushPolicy(bytes, Long.MAX_VALUE);
+  }
+
+  /**
+   * Returns the policy that flushes on the first write after the given time
+   * has passed since the last flush.
+   *
+   * @param millis the time between flushes in milliseconds
+   * @return the flush policy
+   */
+  public static FlushPolicy onTime(long millis) {
+    if (millis < 0)
+      throw new IllegalArgumentException("Flush interval must not be negative: " + millis);
+    return new FlushPolicy(Integer.MAX_VALUE, millis * 1_000_000);
+  }
+
+  int size() {
+    return size;
+  }
+
+  long intervalNanos() {
+    return intervalNanos;
+  }
+
+  boolean timed() {
+    return intervalNanos != Long.MAX_VALUE;
+  }
+}
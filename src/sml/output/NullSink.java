@@ -0,0 +1,29 @@
+package sml.output;
+
+/**
+ * Represents the sink that discards all output, for benchmark runs.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class NullSink implements OutputSink {
+  public static final NullSink INSTANCE = new NullSink();
+
+  private NullSink() {
+  }
+
+  @Override
+  public void writeInt(int value) {
+  }
+
+  @Override
+  public void write(String text) {
+  }
+
+  @Override
+  public void writeLine(String line) {
+  }
+
+  @Override
+  public void flush() {
+  }
+}
@@ -0,0 +1,37 @@
+package sml.output;
+
+/**
+ * Represents the destination of the output of a program
+ * (the values printed by {@code out}, the lines printed by {@code wow}
+ * and the message reported by {@code div} on a division by zero).
+ *
+ * @author Szymon Swendrowski
+ */
+public interface OutputSink {
+  /**
+   * Writes an int value followed by a line separator.
+   *
+   * @param value the value to write
+   */
+  void writeInt(int value);
+
+  /**
+   * Writes text as it is, without a line separator.
+   *
+   * @param text the text to write
+   */
+  void write(String text);
+
+  /**
+   * Writes a line of text followed by a line separator.
+   *
+   * @param line the text to write
+   */
+  void writeLine(String line);
+
+  /**
+   * Writes any buffered output to its destination.
+   * Called by the machine when the program halts.
+   */
+  void flush();
+}
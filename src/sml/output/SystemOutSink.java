@@ -0,0 +1,55 @@
+package sml.output;
+
+import sml.metrics.Metrics;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Represents the unbuffered sink that prints every value with
+ * {@code System.out.println}, as the instructions originally did.
+ * <p>
+ * {@code System.out} is looked up on every write, so redirecting it
+ * with {@link System#setOut} takes effect immediately.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class SystemOutSink implements OutputSink {
+  private static final int LINE_SEPARATOR = System.lineSeparator().length();
+
+  @Override
+  public void writeInt(int value) {
+    System.out.println(value);
+    Metrics.output(width(value) + LINE_SEPARATOR);
+  }
+
+  // the number of characters of the value in decimal, without making a string of it
+  private static int width(int value) {
+    if (value == Integer.MIN_VALUE)
+      return 11;
+    int width = 1;
+    if (value < 0) {
+      value = -value;
+      width++;
+    }
+    for (; value >= 10; value /= 10)
+      width++;
+    return width;
+  }
+
+  @Override
+  public void write(String text) {
+    System.out.print(text);
+    Metrics.output(text.getBytes(StandardCharsets.UTF_8).length);
+  }
+
+  @Override
+  public void writeLine(String line) {
+    System.out.println(line);
+    Metrics.output(line.getBytes(StandardCharsets.UTF_8).length + LINE_SEPARATOR);
+  }
+
+  @Override
+  public void flush() {
+    System.out.flush();
+  }
+}
@@ -0,0 +1,106 @@
+package sml.profile;
+
+import java.util.Arrays;
+
+/**
+ * Represents the execution counts of a program, kept in primitive arrays
+ * indexed by instruction address.
+ * <p>
+ * For every address the profile holds how many times the instruction ran,
+ * how many of those times it jumped (a jump taken) and, for the conditional
+ * jumps of the jnz family, how many times it fell through (not taken). Counts accumulate over every run
+ * of a {@link ProfilingEngine} using the profile until it is {@link #reset()}.
+ * A profile is not thread-safe; give each machine a profile of its own
+ * and {@link #add(Profile)} them together.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class Profile {
+  final long[] counts;
+  final long[] taken;
+  final long[] notTaken;
+
+  /**
+   * Constructor: an empty profile of a program of the given size.
+   *
+   * @param size the number of instructions in the program
+   */
+  public Profile(int size) {
+    this.counts = new long[size];
+    this.taken = new long[size];
+    this.notTaken = new long[size];
+  }
+
+  /**
+   * Gets the number of instructions in the profiled program.
+   *
+   * @return the program size
+   */
+  public int size() {
+    return counts.length;
+  }
+
+  /**
+   * Gets the number of times the instruction at the given address ran.
+   *
+   * @param address the address of the instruction
+   * @return the execution count
+   */
+  public long getCount(int address) {
+    return counts[address];
+  }
+
+  /**
+   * Gets the number of times the jump at the given address was taken.
+   *
+   * @param address the address of the instruction
+   * @return the taken count (0 if the instruction never jumps)
+   */
+  public long getTaken(int address) {
+    return taken[address];
+  }
+
+  /**
+   * Gets the number of times the jump at the given address was not taken.
+   *
+   * @param address the address of the instruction
+   * @return the not-taken count (0 if the instruction is not a conditional jump)
+   */
+  public long getNotTaken(int address) {
+    return notTaken[address];
+  }
+
+  /**
+   * Gets the number of instructions executed in all.
+   *
+   * @return the sum of the execution counts
+   */
+  public long getTotal() {
+    return Arrays.stream(counts).sum();
+  }
+
+  /**
+   * Adds the counts of the given profile, of the same program, to this profile.
+   *
+   * @param other the other profile
+   * @throws IllegalArgumentException if the profiles are of programs of different sizes
+   */
+  public void add(Profile other) {
+    if (other.size() != size())
+      throw new IllegalArgumentException("Profiles of " + size() + " and " + other.size() + " instructions");
+    for (int address = 0; address < counts.length; address++) {
+      counts[address] += other.counts[address];
+      taken[address] += other.taken[address];
+      notTaken[address] += other.notTaken[address];
+    }
+  }
+
+  /**
+   * Clears every count.
+   */
+  public void reset() {
+    Arrays.fill(counts, 0);
+    Arrays.fill(taken, 0);
+    Arrays.fill(notTaken, 0);
+  }
+}
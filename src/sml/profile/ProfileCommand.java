@@ -0,0 +1,111 @@
+package sml.profile;
+
+import sml.Machine;
+import sml.Registers;
+import sml.Translator;
+import sml.output.BufferedSink;
+import sml.output.FlushPolicy;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Represents the profile mode of the command line:
+ * <pre>
+ *   --profile file [--collapsed file | --sample [us]]
+ * </pre>
+ * The program is run once with a {@link ProfilingEngine}; its output is
+ * followed by the hot-spot report, and with {@code --collapsed} the
+ * collapsed stacks are written to the given file. With {@code --sample}
+ * the program is run under a {@link Sampler} instead, taking a sample
+ * every given number of microseconds, and its histogram is printed.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class ProfileCommand {
+  public static final String OPTION = "--profile";
+
+  private static final String USAGE = "Usage - Machine --profile <file> [--collapsed <file> | --sample [<us>]]";
+
+  private ProfileCommand() {
+  }
+
+  /**
+   * Runs the profile described by the given arguments (those after {@code --profile}).
+   *
+   * @param out  where the output of the program and the report are printed
+   * @param args the program file and the options
+   * @return the exit status: 0 on success, 1 if a file cannot be read or written, -1 on bad arguments
+   */
+  public static int run(PrintStream out, String... args) {
+    if (args.length == 0 || args.length > 3) {
+      System.err.println(USAGE);
+      return -1;
+    }
+    Path file = Path.of(args[0]);
+    if (args.length > 1 && args[1].equals("--sample")) {
+      Duration interval = Sampler.DEFAULT_INTERVAL;
+      if (args.length == 3) {
+        try {
+          interval = Duration.ofNanos(Math.multiplyExact(Long.parseLong(args[2]), 1000L));
+        } catch (ArithmeticException | NumberFormatException e) {
+          interval = Duration.ZERO;
+        }
+        if (interval.isNegative() || interval.isZero()) {
+          System.err.println(args[2] + " is not a positive number for --sample - " + USAGE);
+          return -1;
+        }
+      }
+      return sample(out, file, interval);
+    }
+    if (args.length != 1 && !(args.length == 3 && args[1].equals("--collapsed"))) {
+      System.err.println(USAGE);
+      return -1;
+    }
+    try {
+      Machine machine = Translator.translate(file);
+      Profile profile = new Profile(machine.getProgram().size());
+      machine.setEngine(new ProfilingEngine(profile));
+      machine.setOutput(new BufferedSink(out, FlushPolicy.onHalt()));
+      machine.execute();
+
+      ProfileReport report = new ProfileReport(profile, machine.getLabels(), machine.getProgram());
+      report.write(out);
+      if (args.length == 3) {
+        try (Writer writer = Files.newBufferedWriter(Path.of(args[2]))) {
+          report.writeCollapsed(writer, file.getFileName().toString());
+        }
+      }
+      out.flush();
+      return 0;
+    } catch (IOException e) {
+      System.err.println("Error: " + e.getMessage());
+      return 1;
+    }
+  }
+
+  // the program is translated into a compact program, whose line map the histogram uses
+  private static int sample(PrintStream out, Path file, Duration interval) {
+    try {
+      Machine machine = new Machine(Translator.translateCompact(file), new Registers());
+      machine.setOutput(new BufferedSink(out, FlushPolicy.onHalt()));
+      Sampler sampler = Sampler.start(interval);
+      try (sampler) {
+        machine.setEngine(sampler.engine());
+        machine.execute();
+      }
+      // the histograms are complete once the sampler is closed
+      for (SampleHistogram histogram : sampler.getHistograms())
+        histogram.write(out);
+      out.flush();
+      return 0;
+    } catch (IOException e) {
+      System.err.println("Error: " + e.getMessage());
+      return 1;
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package sml.profile;
+
+import sml.Instruction;
+import sml.Labels;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Represents the reports made from a {@link Profile}: a hot-spot report
+ * grouped by label region and by opcode, and a collapsed-stack export.
+ * <p>
+ * A label region runs from a labelled instruction up to the next label;
+ * the instructions before the first label are the {@code <entry>} region.
+ * The collapsed stacks are lines of {@code source;region;opcode count},
+ * the input of flame-graph tools such as {@code flamegraph.pl}.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class ProfileReport {
+  public static final String ENTRY_REGION = "<entry>";
+  private static final int TOP = 10;
+
+  private final Profile profile;
+  private final List<Instruction> program;
+  private final String[] regions; // the label region of each address
+  private final String[] opcodes; // the opcode of each address
+
+  /**
+   * Constructor: the reports of the given profile of the given program.
+   *
+   * @param profile the profile
+   * @param labels  the labels of the program
+   * @param program the program (list of instructions)
+   */
+  public ProfileReport(Profile profile, Labels labels, List<Instruction> program) {
+    if (profile.size() != program.size())
+      throw new IllegalArgumentException("Profile of " + profile.size()
+              + " instructions for a program of " + program.size());
+    this.profile = profile;
+    this.program = program;
+    this.regions = regions(labels, program.size());
+    this.opcodes = new String[program.size()];
+    for (int address = 0; address < opcodes.length; address++)
+      opcodes[address] = program.get(address).getOpcode();
+  }
+
+  /**
+   * Returns the label region of every address of a program.
+   *
+   * @param labels the labels of the program
+   * @param size   the number of instructions in the program
+   * @return the name of the region of each address
+   */
+  static String[] regions(Labels labels, int size) {
+    String[] regions = new String[size];
+    labels.getAddresses().forEach((label, address) -> {
+      if (address >= 0 && address < size)
+        regions[address] = label;
+    });
+    String region = ENTRY_REGION;
+    for (int address = 0; address < size; address++) {
+      if (regions[address] != null)
+        region = regions[address];
+      regions[address] = region;
+    }
+    return regions;
+  }
+
+  /**
+   * Writes the hot-spot report: the label regions and the opcodes that ran
+   * most, and the hottest instructions with their jump counts.
+   *
+   * @param out where the report is written
+   * @throws IOException if the report cannot be written
+   */
+  public void write(Appendable out) throws IOException {
+    long total = profile.getTotal();
+    out.append(String.format("Profile: %d instructions executed%n", total));
+
+    out.append(String.format("%nBy label region:%n%-16s %14s %7s %12s %12s%n",
+            "region", "executed", "%", "taken", "not taken"));
+    for (var entry : top(group(regions))) {
+      long[] counts = entry.getValue();
+      out.append(String.format("%-16s %14d %6.2f%% %12d %12d%n", entry.getKey(), counts[0],
+              percent(counts[0], total), counts[1], counts[2]));
+    }
+
+    out.append(String.format("%nBy opcode:%n%-16s %14s %7s%n", "opcode", "executed", "%"));
+    for (var entry : top(group(opcodes)))
+      out.append(String.format("%-16s %14d %6.2f%%%n", entry.getKey(), entry.getValue()[0],
+              percent(entry.getValue()[0], total)));
+
+    out.append(String.format("%nHottest instructions:%n%8s %14s %7s %12s %12s  %s%n",
+            "address", "executed", "%", "taken", "not taken", "instruction"));
+    Integer[] addresses = new Integer[profile.size()];
+    Arrays.setAll(addresses, address -> address);
+    Arrays.sort(addresses, Comparator.comparingLong((Integer address) -> profile.counts[address]).reversed());
+    for (int i = 0; i < Math.min(TOP, addresses.length) && profile.counts[addresses[i]] > 0; i++) {
+      int address = addresses[i];
+      out.append(String.format("%8d %14d %6.2f%% %12d %12d  %s%n", address, profile.counts[address],
+              percent(profile.counts[address], total), profile.taken[address], profile.notTaken[address],
+              program.get(address)));
+    }
+  }
+
+  /**
+   * Writes the collapsed stacks of the profile, one line for each label
+   * region and opcode that ran, in address order.
+   *
+   * @param out    where the stacks are written
+   * @param source the name of the program, the root frame of every stack
+   * @throws IOException if the stacks cannot be written
+   */
+  public void writeCollapsed(Appendable out, String source) throws IOException {
+    Map<String, Long> stacks = new LinkedHashMap<>();
+    for (int address = 0; address < regions.length; address++)
+      if (profile.counts[address] > 0)
+        stacks.merge(frame(source) + ";" + frame(regions[address]) + ";" + opcodes[address],
+                profile.counts[address], Long::sum);
+    for (var entry : stacks.entrySet())
+      out.append(entry.getKey()).append(' ').append(String.valueOf(entry.getValue())).append('\n');
+  }
+
+  // frames are separated by ';' and a stack ends at the first space
+  private static String frame(String name) {
+    return name.replace(';', '_').replace(' ', '_');
+  }
+
+  // the executed, taken and not-taken counts of each group of addresses that ran
+  private Map<String, long[]> group(String[] keys) {
+    Map<String, long[]> groups = new HashMap<>();
+    for (int address = 0; address < keys.length; address++) {
+      if (profile.counts[address] == 0)
+        continue;
+      long[] counts = groups.computeIfAbsent(keys[address], key -> new long[3]);
+      counts[0] += profile.counts[address];
+      counts[1] += profile.taken[address];
+      counts[2] += profile.notTaken[address];
+    }
+    return groups;
+  }
+
+  private static List<Map.Entry<String, long[]>> top(Map<String, long[]> groups) {
+    return groups.entrySet().stream()
+            .sorted(Comparator.comparingLong((Map.Entry<String, long[]> entry) -> entry.getValue()[0])
+                    .reversed().thenComparing(Map.Entry.comparingByKey()))
+            .toList();
+  }
+
+  private static double percent(long count, long total) {
+    return (total == 0) ? 0 : 100.0 * count / total;
+  }
+}
@@ -0,0 +1,95 @@
+package sml.profile;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.engine.ExecutionEngine;
+import sml.instruction.ArithmeticJnzInstruction;
+import sml.instruction.JnzInstruction;
+import sml.metrics.Metrics;
+
+import java.util.Objects;
+
+import static sml.Instruction.NORMAL_PROGRAM_COUNTER_UPDATE;
+
+/**
+ * Represents the profiling interpreter, which executes the instructions of
+ * the program one at a time, as the object interpreter does, and counts them
+ * in a {@link Profile}.
+ * <p>
+ * Profiling is a matter of choosing this engine; the other engines hold no
+ * counters and pay nothing for it.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class ProfilingEngine implements ExecutionEngine {
+  private final Profile profile;
+
+  /**
+   * Constructor: an engine that counts into the given profile.
+   *
+   * @param profile the profile, of the size of the programs that are run
+   */
+  public ProfilingEngine(Profile profile) {
+    this.profile = Objects.requireNonNull(profile);
+  }
+
+  /**
+   * Gets the profile the engine counts into.
+   *
+   * @return the profile
+   */
+  public Profile getProfile() {
+    return profile;
+  }
+
+  /**
+   * Runs the program of the given machine, instruction by instruction, counting each.
+   *
+   * @param machine the machine whose program is run
+   * @return the program counter at which execution stopped
+   * @throws IllegalArgumentException if the profile is not of the size of the program
+   */
+  @Override
+  public int run(Machine machine) {
+    // instructions of a compact program are created once, not on every step
+    Instruction[] program = machine.getProgram().toArray(new Instruction[0]);
+    if (program.length != profile.size())
+      throw new IllegalArgumentException("Profile of " + profile.size()
+              + " instructions for a program of " + program.length);
+    boolean[] conditional = new boolean[program.length];
+    for (int address = 0; address < program.length; address++)
+      conditional[address] = isConditionalJump(program[address]);
+
+    long[] counts = profile.counts;
+    long[] taken = profile.taken;
+    long[] notTaken = profile.notTaken;
+    int programCounter = 0;
+    long executed = 0;
+    while (programCounter < program.length) {
+      executed++;
+      counts[programCounter]++;
+      int programCounterUpdate = program[programCounter].execute(machine);
+      if (programCounterUpdate == NORMAL_PROGRAM_COUNTER_UPDATE) {
+        if (conditional[programCounter])
+          notTaken[programCounter]++;
+        programCounter++;
+      } else {
+        taken[programCounter]++;
+        programCounter = programCounterUpdate;
+      }
+    }
+    if (Metrics.COUNTING)
+      Metrics.executed(executed);
+    return programCounter;
+  }
+
+  /**
+   * Returns true if the given instruction is a conditional jump of the jnz family.
+   *
+   * @param instruction the instruction
+   * @return True or False
+   */
+  static boolean isConditionalJump(Instruction instruction) {
+    return instruction instanceof JnzInstruction || instruction instanceof ArithmeticJnzInstruction;
+  }
+}
@@ -0,0 +1,129 @@
+package sml.profile;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.compact.CompactProgram;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Represents the samples a {@link Sampler} took of one program, by
+ * instruction address, mapped back to the label region and, for programs
+ * translated into a {@link CompactProgram}, the source line of each address.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class SampleHistogram {
+  private static final int TOP = 10;
+
+  final long[] samples; // only written by the sampling thread
+  private final List<Instruction> program;
+  private final String[] regions;
+  private final int[] lines; // null when the program has no line map
+  private final long interval;
+
+  SampleHistogram(Labels labels, List<Instruction> program, long interval) {
+    this.samples = new long[program.size()];
+    this.program = program;
+    this.regions = ProfileReport.regions(labels, program.size());
+    this.lines = CompactProgram.from(program)
+            .filter(compact -> compact.size() == 0 || compact.getLine(0) > 0)
+            .map(compact -> {
+              int[] lines = new int[compact.size()];
+              Arrays.setAll(lines, compact::getLine);
+              return lines;
+            })
+            .orElse(null);
+    this.interval = interval;
+  }
+
+  /**
+   * Gets the number of instructions in the sampled program.
+   *
+   * @return the program size
+   */
+  public int size() {
+    return samples.length;
+  }
+
+  /**
+   * Gets the number of samples taken while the instruction at the given address ran.
+   *
+   * @param address the address of the instruction
+   * @return the sample count
+   */
+  public long getSamples(int address) {
+    return samples[address];
+  }
+
+  /**
+   * Gets the number of samples taken of the program in all.
+   *
+   * @return the sum of the sample counts
+   */
+  public long getTotal() {
+    return Arrays.stream(samples).sum();
+  }
+
+  /**
+   * Gets the label region of the given address.
+   *
+   * @param address the address of the instruction
+   * @return the label the region starts at, or {@link ProfileReport#ENTRY_REGION}
+   */
+  public String getRegion(int address) {
+    return regions[address];
+  }
+
+  /**
+   * Gets the source line of the given address.
+   *
+   * @param address the address of the instruction
+   * @return the line number (starting at 1), or 0 if the program has no line map
+   */
+  public int getLine(int address) {
+    return (lines == null) ? 0 : lines[address];
+  }
+
+  /**
+   * Writes the histogram: the samples of each label region and the source
+   * lines sampled most.
+   *
+   * @param out where the histogram is written
+   * @throws IOException if the histogram cannot be written
+   */
+  public void write(Appendable out) throws IOException {
+    long total = getTotal();
+    out.append(String.format("Samples: %d of %d instructions, every %d us%n",
+            total, samples.length, interval / 1000));
+
+    Map<String, Long> byRegion = new HashMap<>();
+    for (int address = 0; address < samples.length; address++)
+      if (samples[address] > 0)
+        byRegion.merge(regions[address], samples[address], Long::sum);
+    out.append(String.format("%nBy label region:%n%-16s %14s %7s%n", "region", "samples", "%"));
+    for (var entry : byRegion.entrySet().stream()
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.comparingByKey()))
+            .toList())
+      out.append(String.format("%-16s %14d %6.2f%%%n", entry.getKey(), entry.getValue(),
+              percent(entry.getValue(), total)));
+
+    out.append(String.format("%nHottest lines:%n%8s %8s %14s %7s  %-16s %s%n",
+            "line", "address", "samples", "%", "region", "instruction"));
+    Integer[] addresses = new Integer[samples.length];
+    Arrays.setAll(addresses, address -> address);
+    Arrays.sort(addresses, Comparator.comparingLong((Integer address) -> samples[address]).reversed());
+    for (int i = 0; i < Math.min(TOP, addresses.length) && samples[addresses[i]] > 0; i++) {
+      int address = addresses[i];
+      out.append(String.format("%8s %8d %14d %6.2f%%  %-16s %s%n",
+              (lines == null) ? "-" : String.valueOf(lines[address]), address, samples[address],
+              percent(samples[address], total), regions[address], program.get(address)));
+    }
+  }
+
+  private static double percent(long count, long total) {
+    return (total == 0) ? 0 : 100.0 * count / total;
+  }
+}
@@ -0,0 +1,167 @@
+package sml.profile;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.engine.ExecutionEngine;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Represents the sampling profiler: a daemon thread that wakes at a fixed
+ * interval, reads the program counter published by every machine running
+ * on one of its engines, and adds a sample to the histogram of the program
+ * at that address.
+ * <p>
+ * Unlike a {@link ProfilingEngine}, the engines of a sampler count nothing;
+ * they only publish the program counter through an opaque write (see
+ * {@link Machine#publishProgramCounter(int)}), so the program runs at almost
+ * the speed of the object interpreter. Machines running the same program
+ * (the same list of instructions, as the jobs of a shared {@link sml.Program}
+ * do) add to the same histogram. Any number of machines, on any threads,
+ * can be sampled at once:
+ * <pre>
+ *   try (Sampler sampler = Sampler.start()) {
+ *     executor.setEngine(sampler::engine);
+ *     executor.run(jobs, listener);
+ *   }
+ * </pre>
+ *
+ * @author Szymon Swendrowski
+ */
+public final class Sampler implements AutoCloseable {
+  public static final Duration DEFAULT_INTERVAL = Duration.ofMillis(1);
+
+  private final long interval; // in nanoseconds
+  private final Set<Run> running = ConcurrentHashMap.newKeySet();
+  private final Map<List<Instruction>, SampleHistogram> histograms = new IdentityHashMap<>();
+  private final List<SampleHistogram> order = new ArrayList<>();
+  private final Thread thread;
+  private volatile boolean stopped;
+
+  private Sampler(Duration interval) {
+    if (interval.isNegative() || interval.isZero())
+      throw new IllegalArgumentException("Sampling interval must be positive: " + interval);
+    this.interval = interval.toNanos();
+    this.thread = new Thread(this::sample, "sml-sampler");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Starts a sampler taking a sample every {@link #DEFAULT_INTERVAL}.
+   *
+   * @return the sampler, which must be closed
+   */
+  public static Sampler start() {
+    return start(DEFAULT_INTERVAL);
+  }
+
+  /**
+   * Starts a sampler taking a sample at the given interval.
+   *
+   * @param interval the time between samples
+   * @return the sampler, which must be closed
+   * @throws IllegalArgumentException if the interval is not positive
+   */
+  public static Sampler start(Duration interval) {
+    return new Sampler(interval);
+  }
+
+  /**
+   * Returns a new engine whose machines are sampled. Engines hold no state,
+   * so one can be shared, but the method can also be used as the engine
+   * supplier of a {@link sml.batch.BatchExecutor}.
+   *
+   * @return the engine
+   */
+  public ExecutionEngine engine() {
+    return new SamplingEngine(this);
+  }
+
+  /**
+   * Gets the time between samples.
+   *
+   * @return the sampling interval
+   */
+  public Duration getInterval() {
+    return Duration.ofNanos(interval);
+  }
+
+  /**
+   * Gets the histograms of the programs sampled so far, in the order they
+   * first ran. The counts are only complete once the sampler is closed.
+   *
+   * @return the histograms
+   */
+  public synchronized List<SampleHistogram> getHistograms() {
+    return List.copyOf(order);
+  }
+
+  /**
+   * Stops the sampling thread and waits for it to finish.
+   */
+  @Override
+  public void close() {
+    stopped = true;
+    LockSupport.unpark(thread);
+    boolean interrupted = false;
+    while (thread.isAlive()) {
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted)
+      Thread.currentThread().interrupt();
+  }
+
+  // registers the machine while its program runs
+  Run begin(Machine machine, List<Instruction> program) {
+    Run run = new Run(machine, histogram(machine.getLabels(), program));
+    running.add(run);
+    return run;
+  }
+
+  void end(Run run) {
+    running.remove(run);
+  }
+
+  private synchronized SampleHistogram histogram(Labels labels, List<Instruction> program) {
+    return histograms.computeIfAbsent(program, key -> {
+      SampleHistogram histogram = new SampleHistogram(labels, program, interval);
+      order.add(histogram);
+      return histogram;
+    });
+  }
+
+  // the samples are only ever written by this thread
+  private void sample() {
+    while (!stopped) {
+      LockSupport.parkNanos(interval);
+      for (Run run : running) {
+        int address = run.machine.getPublishedProgramCounter();
+        long[] samples = run.histogram.samples;
+        if (address >= 0 && address < samples.length)
+          samples[address]++;
+      }
+    }
+  }
+
+  /**
+   * Represents a machine being sampled; runs are only equal to themselves.
+   */
+  static final class Run {
+    private final Machine machine;
+    private final SampleHistogram histogram;
+
+    private Run(Machine machine, SampleHistogram histogram) {
+      this.machine = machine;
+      this.histogram = histogram;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package sml.profile;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.engine.ExecutionEngine;
+
+import static sml.Instruction.NORMAL_PROGRAM_COUNTER_UPDATE;
+
+/**
+ * Represents the interpreter of a {@link Sampler}, which executes the
+ * instructions of the program one at a time, as the object interpreter
+ * does, publishing the program counter before each.
+ *
+ * @author Szymon Swendrowski
+ */
+final class SamplingEngine implements ExecutionEngine {
+  private final Sampler sampler;
+
+  SamplingEngine(Sampler sampler) {
+    this.sampler = sampler;
+  }
+
+  /**
+   * Runs the program of the given machine, instruction by instruction,
+   * while the sampler reads where it is.
+   *
+   * @param machine the machine whose program is run
+   * @return the program counter at which execution stopped
+   */
+  @Override
+  public int run(Machine machine) {
+    // instructions of a compact program are created once, not on every step
+    Instruction[] program = machine.getProgram().toArray(new Instruction[0]);
+    Sampler.Run run = sampler.begin(machine, machine.getProgram());
+    int programCounter = 0;
+    try {
+      while (programCounter < program.length) {
+        machine.publishProgramCounter(programCounter);
+        int programCounterUpdate = program[programCounter].execute(machine);
+        programCounter = (programCounterUpdate == NORMAL_PROGRAM_COUNTER_UPDATE)
+                ? programCounter + 1
+                : programCounterUpdate;
+      }
+    } finally {
+      machine.publishProgramCounter(-1);
+      sampler.end(run);
+    }
+    return programCounter;
+  }
+}
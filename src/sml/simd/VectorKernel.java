@@ -0,0 +1,268 @@
+package sml.simd;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.Registers;
+import sml.engine.Bytecode;
+import sml.instruction.DivInstruction;
+import sml.metrics.Metrics;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static sml.Instruction.NORMAL_PROGRAM_COUNTER_UPDATE;
+import static sml.engine.Bytecode.*;
+
+/**
+ * Represents a program run over many inputs at once, one input per vector lane.
+ * <p>
+ * The program is lowered to {@link Bytecode}, and each register becomes an
+ * {@link IntVector} holding that register for every lane, so {@code add},
+ * {@code sub}, {@code mul} and {@code div} are single lane-wise operations.
+ * A group of lanes shares one program counter and an active-lane mask.
+ * A {@code jnz} on which the active lanes disagree splits the group: the
+ * lanes that fall through become a new group that waits, while the others
+ * take the jump. Instructions without an encoding are run lane by lane
+ * through {@link Instruction#execute}, and split the group by where each
+ * lane continues.
+ * <p>
+ * The group with the lowest program counter always runs first, and groups
+ * that reach the same program counter are merged, so lanes split by a loop
+ * of varying length reconverge where the loop exits. Until then the paths
+ * of the split groups run one after the other, each with only its own lanes
+ * active, so a program whose lanes diverge often gains little from the
+ * vectors. A group down to a single lane is retired to the scalar
+ * interpreter, and is not merged again.
+ * <p>
+ * The final registers of every lane are identical to those of a scalar
+ * {@link Machine} started from the same registers. Program output is
+ * discarded, as in a sweep; a division by zero is reported once per lane
+ * to the output of the machine, as the scalar engines report it.
+ * <p>
+ * Needs the incubating Vector API: compile and run with
+ * {@code --add-modules jdk.incubator.vector}.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class VectorKernel {
+  private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+  private static final int LANES = SPECIES.length();
+
+  // the offset of each lane's first register in a block of tuples
+  private static final int[] TUPLES = new int[LANES];
+
+  static {
+    for (int lane = 0; lane < LANES; lane++)
+      TUPLES[lane] = lane * Registers.COUNT;
+  }
+
+  private final int[] code;
+  private final Instruction[] calls;
+  private final List<Instruction> program;
+
+  /**
+   * Constructor: the kernel of the given linked program.
+   *
+   * @param labels  the labels of the program
+   * @param program the program (list of instructions)
+   */
+  public VectorKernel(Labels labels, List<Instruction> program) {
+    Bytecode bytecode = Bytecode.compile(labels, program);
+    this.code = bytecode.getCode();
+    this.calls = bytecode.getCalls();
+    this.program = List.copyOf(program);
+  }
+
+  /**
+   * Gets the number of inputs run at once by this platform's vectors.
+   *
+   * @return the number of lanes
+   */
+  public static int lanes() {
+    return LANES;
+  }
+
+  /**
+   * Runs the program for a block of inputs.
+   *
+   * @param inputs  the initial register values, one tuple of {@link Registers#COUNT} per input
+   * @param outputs the array the final register values are written to, in the same layout
+   * @param count   the number of inputs
+   * @param machine a machine with the same program, used for lanes run one at a time
+   */
+  public void run(int[] inputs, int[] outputs, int count, Machine machine) {
+    PriorityQueue<Group> groups = new PriorityQueue<>(Comparator.comparingInt(group -> group.pc));
+    for (int base = 0; base < count; base += LANES) {
+      int offset = base * Registers.COUNT;
+      VectorMask<Integer> mask = SPECIES.indexInRange(0, count - base);
+      IntVector[] registers = new IntVector[Registers.COUNT];
+      for (int r = 0; r < Registers.COUNT; r++)
+        registers[r] = IntVector.fromArray(SPECIES, inputs, offset + r, TUPLES, 0, mask);
+
+      groups.add(new Group(0, mask, registers));
+      while (!groups.isEmpty()) {
+        Group group = groups.poll();
+        // the lanes waiting at the same instruction reconverge
+        while (!groups.isEmpty() && groups.peek().pc == group.pc)
+          group = group.merge(groups.poll());
+        run(group, groups, outputs, offset, machine);
+      }
+    }
+  }
+
+  // runs a group until it halts, or reaches the instruction at which another group waits
+  private void run(Group group, PriorityQueue<Group> groups, int[] outputs, int offset, Machine machine) {
+    IntVector[] r = group.registers;
+    VectorMask<Integer> mask = group.mask;
+    int pc = group.pc;
+    final int end = code.length;
+    int waiting = groups.isEmpty() ? end : groups.peek().pc;
+
+    if (mask.trueCount() == 1) {
+      retire(pc, mask, r, machine);
+      pc = end;
+    }
+    while (pc < end) {
+      if (pc >= waiting) {
+        // let the groups behind catch up
+        groups.add(new Group(pc, mask, r));
+        return;
+      }
+
+      int a = code[pc + A];
+      int b = code[pc + B];
+      switch (code[pc]) {
+        case MOV -> r[a] = IntVector.broadcast(SPECIES, code[pc + IMM]);
+        case ADD -> r[a] = r[a].add(r[b]);
+        case SUB -> r[a] = r[a].sub(r[b]);
+        case MUL -> r[a] = r[a].mul(r[b]);
+        case DIV -> {
+          VectorMask<Integer> zero = r[b].compare(VectorOperators.EQ, 0);
+          for (int i = zero.and(mask).trueCount(); i > 0; i--) {
+            Metrics.divisionByZero();
+            machine.getOutput().write(DivInstruction.DIVISION_BY_ZERO);
+          }
+          r[a] = r[a].div(r[b].blend(1, zero)).blend(r[a], zero);
+        }
+        case OUT, WOW -> {
+          // output is discarded
+        }
+        case JNZ, ADD_JNZ, SUB_JNZ, MUL_JNZ -> {
+          switch (code[pc]) {
+            case ADD_JNZ -> r[a] = r[a].add(r[b]);
+            case SUB_JNZ -> r[a] = r[a].sub(r[b]);
+            case MUL_JNZ -> r[a] = r[a].mul(r[b]);
+            default -> {
+              // a plain jnz only tests
+            }
+          }
+          VectorMask<Integer> taken = r[a].compare(VectorOperators.NE, 0).and(mask);
+          if (!taken.anyTrue())
+            break;
+          VectorMask<Integer> fallThrough = mask.andNot(taken);
+          if (fallThrough.anyTrue()) {
+            // the lanes diverge: split off the ones that fall through
+            groups.add(new Group(pc + STRIDE, fallThrough, r.clone()));
+            waiting = Math.min(waiting, pc + STRIDE);
+            mask = taken;
+            if (mask.trueCount() == 1) {
+              retire(code[pc + IMM], mask, r, machine);
+              pc = end;
+              continue;
+            }
+          }
+          pc = code[pc + IMM];
+          continue;
+        }
+        default -> {
+          call(pc, mask, r, groups, machine);
+          return;
+        }
+      }
+      pc += STRIDE;
+    }
+
+    for (int i = 0; i < Registers.COUNT; i++)
+      r[i].intoArray(outputs, offset + i, TUPLES, 0, mask);
+  }
+
+  // runs an instruction without an encoding lane by lane, then regroups the lanes by where they go
+  private void call(int pc, VectorMask<Integer> mask, IntVector[] r, PriorityQueue<Group> groups, Machine machine) {
+    int[][] values = new int[Registers.COUNT][];
+    for (int i = 0; i < Registers.COUNT; i++)
+      values[i] = r[i].toArray();
+
+    Instruction instruction = calls[code[pc + IMM]];
+    Registers registers = machine.getRegisters();
+    int[] next = new int[LANES];
+    for (int lane = 0; lane < LANES; lane++) {
+      if (!mask.laneIsSet(lane))
+        continue;
+      for (int i = 0; i < Registers.COUNT; i++)
+        registers.set(i, values[i][lane]);
+      int update = instruction.execute(machine);
+      next[lane] = (update == NORMAL_PROGRAM_COUNTER_UPDATE) ? pc + STRIDE : update * STRIDE;
+      for (int i = 0; i < Registers.COUNT; i++)
+        values[i][lane] = registers.get(i);
+    }
+
+    IntVector[] after = new IntVector[Registers.COUNT];
+    for (int i = 0; i < Registers.COUNT; i++)
+      after[i] = IntVector.fromArray(SPECIES, values[i], 0);
+    VectorMask<Integer> rest = mask;
+    while (rest.anyTrue()) {
+      int target = next[rest.firstTrue()];
+      boolean[] there = new boolean[LANES];
+      for (int lane = 0; lane < LANES; lane++)
+        there[lane] = rest.laneIsSet(lane) && next[lane] == target;
+      VectorMask<Integer> lanes = VectorMask.fromArray(SPECIES, there, 0);
+      groups.add(new Group(target, lanes, after.clone()));
+      rest = rest.andNot(lanes);
+    }
+  }
+
+  // runs the single remaining lane of a group to the end on the scalar interpreter
+  private void retire(int pc, VectorMask<Integer> mask, IntVector[] r, Machine machine) {
+    int lane = mask.firstTrue();
+    Registers registers = machine.getRegisters();
+    for (int i = 0; i < Registers.COUNT; i++)
+      registers.set(i, r[i].lane(lane));
+
+    int address = pc / STRIDE;
+    while (address < program.size()) {
+      int update = program.get(address).execute(machine);
+      address = (update == NORMAL_PROGRAM_COUNTER_UPDATE) ? address + 1 : update;
+    }
+    for (int i = 0; i < Registers.COUNT; i++)
+      r[i] = IntVector.broadcast(SPECIES, registers.get(i));
+  }
+
+  /**
+   * Represents lanes that share a program counter.
+   */
+  private static final class Group {
+    private final int pc;
+    private final VectorMask<Integer> mask;
+    private final IntVector[] registers;
+
+    Group(int pc, VectorMask<Integer> mask, IntVector[] registers) {
+      this.pc = pc;
+      this.mask = mask;
+      this.registers = registers;
+    }
+
+    // the group of the lanes of both groups, each with its own registers
+    Group merge(Group other) {
+      IntVector[] merged = new IntVector[Registers.COUNT];
+      for (int i = 0; i < Registers.COUNT; i++)
+        merged[i] = registers[i].blend(other.registers[i], other.mask);
+      return new Group(pc, mask.or(other.mask), merged);
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package sml.sweep;
+
+import sml.RegisterName;
+import sml.Registers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Represents the inputs of a sweep over every combination of register ranges.
+ * <p>
+ * Each range is written {@code REG=from..to} or {@code REG=from..to:step}
+ * (both ends included, a positive step). The last range varies fastest,
+ * as if the ranges were nested loops in the order given; registers
+ * without a range start at 0.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class RangeSource implements SweepSource {
+  private final int[] registers; // the ordinals of the swept registers
+  private final long[] from;
+  private final long[] steps;
+  private final long[] counts;
+  private final long size;
+  private final long[] position; // the step of each range the next tuple is at
+  private long remaining;
+
+  /**
+   * Constructor: the combinations of the given ranges.
+   *
+   * @param ranges the ranges, such as {@code EAX=0..99} or {@code EBX=-8..8:2}
+   * @throws IllegalArgumentException if a range is not valid
+   */
+  public RangeSource(List<String> ranges) {
+    int n = ranges.size();
+    registers = new int[n];
+    from = new long[n];
+    steps = new long[n];
+    counts = new long[n];
+    position = new long[n];
+    long size = 1;
+    List<String> seen = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      String range = ranges.get(i);
+      int equals = range.indexOf('=');
+      int dots = range.indexOf("..");
+      int colon = range.indexOf(':', Math.max(dots, 0));
+      if (equals < 0 || dots < equals)
+        throw new IllegalArgumentException(range + " is not a valid range");
+
+      String name = range.substring(0, equals);
+      RegisterName register;
+      try {
+        register = Registers.Register.valueOf(name);
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException(name + " is not a valid register");
+      }
+      if (seen.contains(name))
+        throw new IllegalArgumentException("Duplicate range for " + name);
+      seen.add(name);
+
+      long start = parse(range, range.substring(equals + 1, dots));
+      long end = parse(range, range.substring(dots + 2, (colon < 0) ? range.length() : colon));
+      long step = (colon < 0) ? 1 : parse(range, range.substring(colon + 1));
+      if (step <= 0 || end < start)
+        throw new IllegalArgumentException(range + " is not a valid range");
+
+      registers[i] = register.ordinal();
+      from[i] = start;
+      steps[i] = step;
+      counts[i] = (end - start) / step + 1;
+      size = Math.multiplyExact(size, counts[i]);
+    }
+    this.size = size;
+    this.remaining = size;
+  }
+
+  private static long parse(String range, String number) {
+    try {
+      return Integer.parseInt(number);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(range + " is not a valid range");
+    }
+  }
+
+  /**
+   * Gets the number of combinations of the ranges.
+   *
+   * @return the number of inputs of the sweep
+   */
+  public long size() {
+    return size;
+  }
+
+  @Override
+  public int next(int[] block, int capacity) {
+    int count = (int) Math.min(capacity, remaining);
+    for (int t = 0; t < count; t++) {
+      int base = t * Registers.COUNT;
+      Arrays.fill(block, base, base + Registers.COUNT, 0);
+      for (int i = 0; i < registers.length; i++)
+        block[base + registers[i]] = (int) (from[i] + position[i] * steps[i]);
+
+      // advance like an odometer, the last range fastest
+      for (int i = registers.length - 1; i >= 0; i--) {
+        if (++position[i] < counts[i])
+          break;
+        position[i] = 0;
+      }
+    }
+    remaining -= count;
+    return count;
+  }
+}
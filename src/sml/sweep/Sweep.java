@@ -0,0 +1,168 @@
+package sml.sweep;
+
+import sml.Machine;
+import sml.Program;
+import sml.Registers;
+import sml.engine.ExecutionEngine;
+import sml.output.NullSink;
+import sml.simd.VectorKernel;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+/**
+ * Represents a parameter sweep: one program run over many initial register values.
+ * <p>
+ * The program is translated and linked once into a shared {@link Program}.
+ * Inputs are read in blocks, and the blocks are run in parallel on a
+ * fork-join pool, each thread on a machine of its own that is reused for every run; the output of the program
+ * is discarded. Results are delivered in input order while later blocks are
+ * still running, and at most a few blocks per thread are in flight, so
+ * inputs of any size are streamed. Blocks are recycled, so a run allocates
+ * nothing beyond what its engine does.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class Sweep {
+  public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+  private static final int BLOCKS_PER_THREAD = 2;
+
+  private final Program program;
+  private final ForkJoinPool pool;
+  private Supplier<? extends ExecutionEngine> engines; // null to keep the engine each machine picks
+  private int blockSize = DEFAULT_BLOCK_SIZE;
+  private VectorKernel kernel; // null unless the runs are vectorized
+
+  /**
+   * Constructor: a sweep of the given program on the given pool.
+   *
+   * @param program the translated program
+   * @param pool    the pool the runs are spread over
+   */
+  public Sweep(Program program, ForkJoinPool pool) {
+    this.program = Objects.requireNonNull(program);
+    this.pool = Objects.requireNonNull(pool);
+  }
+
+  /**
+   * Sets how each thread of the sweep gets the engine its runs use.
+   * Until it is set, the runs use the engine a machine picks for the program,
+   * such as the compact engine for a compact program.
+   *
+   * @param engines creates an engine for each thread
+   */
+  public void setEngine(Supplier<? extends ExecutionEngine> engines) {
+    this.engines = Objects.requireNonNull(engines);
+  }
+
+  /**
+   * Sets whether the inputs of a block are run several at a time, one per
+   * vector lane, by a {@link VectorKernel} rather than one by one on the engine.
+   * This needs the incubating Vector API ({@code --add-modules jdk.incubator.vector}).
+   *
+   * @param vectorized true to run the inputs on vector lanes
+   */
+  public void setVectorized(boolean vectorized) {
+    if (!vectorized) {
+      kernel = null;
+    } else if (kernel == null) {
+      kernel = new VectorKernel(program.getLabels(), program.getInstructions());
+    }
+  }
+
+  /**
+   * Sets the number of inputs run together as one task.
+   *
+   * @param blockSize the number of inputs in a block
+   */
+  public void setBlockSize(int blockSize) {
+    if (blockSize < 1)
+      throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+    this.blockSize = blockSize;
+  }
+
+  /**
+   * Runs the program for every input of the source, handing the final register
+   * values to the consumer in input order.
+   *
+   * @param source   the initial register values
+   * @param consumer receives the result of each run, on the calling thread
+   * @return the number of runs
+   * @throws IOException if the source cannot be read
+   */
+  public long run(SweepSource source, SweepConsumer consumer) throws IOException {
+    ThreadLocal<Machine> machines = ThreadLocal.withInitial(this::newMachine);
+    ArrayDeque<Block> free = new ArrayDeque<>();
+    ArrayDeque<ForkJoinTask<Block>> running = new ArrayDeque<>();
+    int window = pool.getParallelism() * BLOCKS_PER_THREAD;
+    long index = 0;
+
+    try {
+      while (true) {
+        Block block = free.isEmpty() ? new Block(blockSize) : free.poll();
+        block.count = source.next(block.inputs, blockSize);
+        if (block.count == 0)
+          break;
+        VectorKernel kernel = this.kernel;
+        running.add(pool.submit(() -> block.run(machines.get(), kernel)));
+
+        // deliver the oldest block once enough are in flight
+        if (running.size() >= window)
+          index = deliver(running.poll().join(), index, consumer, free);
+      }
+      while (!running.isEmpty())
+        index = deliver(running.poll().join(), index, consumer, free);
+    } finally {
+      running.forEach(task -> task.cancel(false));
+    }
+    return index;
+  }
+
+  private static long deliver(Block block, long index, SweepConsumer consumer, ArrayDeque<Block> free) {
+    for (int i = 0; i < block.count; i++)
+      consumer.accept(index++, block.inputs, block.outputs, i * Registers.COUNT);
+    free.add(block);
+    return index;
+  }
+
+  private Machine newMachine() {
+    Machine machine = new Machine(program, new Registers());
+    if (engines != null)
+      machine.setEngine(engines.get());
+    machine.setOutput(NullSink.INSTANCE);
+    return machine;
+  }
+
+  /**
+   * Represents a block of inputs and the results of running them.
+   */
+  private static final class Block {
+    private final int[] inputs;
+    private final int[] outputs;
+    private int count;
+
+    Block(int size) {
+      inputs = new int[size * Registers.COUNT];
+      outputs = new int[size * Registers.COUNT];
+    }
+
+    Block run(Machine machine, VectorKernel kernel) {
+      if (kernel != null) {
+        kernel.run(inputs, outputs, count, machine);
+        return this;
+      }
+      Registers registers = machine.getRegisters();
+      for (int i = 0; i < count; i++) {
+        int offset = i * Registers.COUNT;
+        machine.execute(inputs, offset);
+        registers.copyTo(outputs, offset);
+      }
+      return this;
+    }
+  }
+}
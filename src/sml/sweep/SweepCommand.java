@@ -0,0 +1,113 @@
+package sml.sweep;
+
+import sml.Registers;
+import sml.Translator;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Represents the sweep mode of the command line:
+ * <pre>
+ *   --sweep file [--threads n] [--vector] (--range REG=from..to[:step]... | --tuples file [--registers REG,...])
+ * </pre>
+ * The program is translated once and run for every input; one line per
+ * input, in input order, gives its index and the final register values.
+ * With {@code --vector} the inputs run on vector lanes (see {@link sml.simd.VectorKernel}).
+ *
+ * @author Szymon Swendrowski
+ */
+public final class SweepCommand {
+  public static final String OPTION = "--sweep";
+
+  private static final String USAGE = "Usage - Machine --sweep <file> [--threads <n>] [--vector]"
+          + " (--range <REG=from..to[:step]>... | --tuples <file> [--registers <REG,...>])";
+
+  private SweepCommand() {
+  }
+
+  /**
+   * Runs the sweep described by the given arguments (those after {@code --sweep}).
+   *
+   * @param out  where the results are printed
+   * @param args the program file and the options
+   * @return the exit status: 0 on success, -1 on bad arguments or input
+   */
+  public static int run(PrintStream out, String... args) {
+    if (args.length == 0) {
+      System.err.println("No program - " + USAGE);
+      return -1;
+    }
+    Path file = Path.of(args[0]);
+    int threads = Runtime.getRuntime().availableProcessors();
+    List<String> ranges = new ArrayList<>();
+    boolean vector = false;
+    Path tuples = null;
+    List<Registers.Register> registers = Arrays.asList(Registers.Register.values());
+    try {
+      for (int i = 1; i < args.length; i++) {
+        switch (args[i]) {
+          case "--threads" -> threads = Integer.parseInt(value(args, ++i));
+          case "--vector" -> vector = true;
+          case "--range" -> ranges.add(value(args, ++i));
+          case "--tuples" -> tuples = Path.of(value(args, ++i));
+          case "--registers" -> registers = Arrays.stream(value(args, ++i).split(","))
+                  .map(Registers.Register::valueOf).toList();
+          default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+        }
+      }
+      if (threads < 1 || ranges.isEmpty() == (tuples == null))
+        throw new IllegalArgumentException("Give either ranges or tuples");
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage() + " - " + USAGE);
+      return -1;
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    PrintStream results = new PrintStream(new BufferedOutputStream(out, 1 << 16), false);
+    try {
+      Sweep sweep = new Sweep(Translator.translateProgram(file), pool);
+      sweep.setVectorized(vector);
+      StringBuilder line = new StringBuilder();
+      SweepConsumer printer = (index, inputs, outputs, offset) -> {
+        line.setLength(0);
+        line.append(index);
+        for (int r = 0; r < Registers.COUNT; r++)
+          line.append(' ').append(outputs[offset + r]);
+        results.append(line).println();
+      };
+
+      results.println("# index " + String.join(" ",
+              Arrays.stream(Registers.Register.values()).map(Enum::name).toList()));
+      if (tuples == null) {
+        sweep.run(new RangeSource(ranges), printer);
+      } else {
+        try (BufferedReader reader = Files.newBufferedReader(tuples, StandardCharsets.UTF_8)) {
+          sweep.run(new TupleSource(reader, registers), printer);
+        }
+      }
+      return 0;
+    } catch (IOException | RuntimeException e) {
+      System.err.println("Error running the sweep of " + file + ": " + e.getMessage());
+      return -1;
+    } finally {
+      results.flush();
+      pool.shutdown();
+    }
+  }
+
+  private static String value(String[] args, int index) {
+    if (index >= args.length)
+      throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+    return args[index];
+  }
+}
@@ -0,0 +1,21 @@
+package sml.sweep;
+
+/**
+ * Represents the receiver of the results of a sweep, which are delivered
+ * one at a time, in input order, on the thread that runs the sweep.
+ *
+ * @author Szymon Swendrowski
+ */
+@FunctionalInterface
+public interface SweepConsumer {
+  /**
+   * Receives the final register values of one run. The arrays are reused
+   * for later results, so the values must be copied to be kept.
+   *
+   * @param index   the position of the input in the sweep, starting at 0
+   * @param inputs  the array holding the initial register values
+   * @param outputs the array holding the final register values
+   * @param offset  the index in both arrays of the value of the first register
+   */
+  void accept(long index, int[] inputs, int[] outputs, int offset);
+}
@@ -0,0 +1,25 @@
+package sml.sweep;
+
+import java.io.IOException;
+
+/**
+ * Represents where the initial register values of a sweep come from.
+ * <p>
+ * Inputs are read in blocks of tuples; a tuple holds one value for each
+ * register, by register ordinal, so tuple {@code i} of a block occupies
+ * {@code block[i * Registers.COUNT]} to {@code block[(i + 1) * Registers.COUNT - 1]}.
+ *
+ * @author Szymon Swendrowski
+ */
+@FunctionalInterface
+public interface SweepSource {
+  /**
+   * Reads the next tuples of initial register values into the block.
+   *
+   * @param block    the array the tuples are written to
+   * @param capacity the largest number of tuples to read
+   * @return the number of tuples read, 0 once the inputs are exhausted
+   * @throws IOException if the inputs cannot be read
+   */
+  int next(int[] block, int capacity) throws IOException;
+}
@@ -0,0 +1,78 @@
+package sml.sweep;
+
+import sml.RegisterName;
+import sml.Registers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Represents the inputs of a sweep read as tuples, one per line.
+ * <p>
+ * Each line holds integers separated by whitespace or commas, which are the
+ * initial values of the given registers in order; registers without a value
+ * start at 0. Blank lines and lines starting with {@code #} are skipped.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class TupleSource implements SweepSource {
+  private final BufferedReader reader;
+  private final int[] registers; // the ordinals of the registers the values are for
+  private int lineNumber;
+
+  /**
+   * Constructor: tuples for the given registers read from the reader.
+   *
+   * @param reader    the reader of the tuples, which is not closed
+   * @param registers the registers the values of each tuple are for, in order
+   */
+  public TupleSource(BufferedReader reader, List<? extends RegisterName> registers) {
+    this.reader = reader;
+    this.registers = registers.stream().mapToInt(RegisterName::ordinal).toArray();
+  }
+
+  @Override
+  public int next(int[] block, int capacity) throws IOException {
+    int count = 0;
+    String line;
+    while (count < capacity && (line = reader.readLine()) != null) {
+      lineNumber++;
+      int base = count * Registers.COUNT;
+      Arrays.fill(block, base, base + Registers.COUNT, 0);
+      if (parse(line, block, base))
+        count++;
+    }
+    return count;
+  }
+
+  // reads the values of one line into the block, returning false for lines without a tuple
+  private boolean parse(String line, int[] block, int base) {
+    int values = 0;
+    int i = 0;
+    int length = line.length();
+    while (i < length) {
+      char c = line.charAt(i);
+      if (c == ',' || Character.isWhitespace(c)) {
+        i++;
+        continue;
+      }
+      if (c == '#' && values == 0)
+        return false;
+
+      int start = i;
+      while (i < length && line.charAt(i) != ',' && !Character.isWhitespace(line.charAt(i)))
+        i++;
+      String value = line.substring(start, i);
+      if (values == registers.length)
+        throw new IllegalArgumentException("Too many values at line " + lineNumber);
+      try {
+        block[base + registers[values++]] = Integer.parseInt(value);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(value + " is not a valid integer at line " + lineNumber);
+      }
+    }
+    return values > 0;
+  }
+}
@@ -0,0 +1,90 @@
+package sml.workload;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Represents the generate mode of the command line:
+ * <pre>
+ *   --generate shape instructions [--seed n] [--out file]
+ * </pre>
+ * A synthetic program (see {@link WorkloadGenerator}) is streamed to the
+ * file, or to the standard output without {@code --out}.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class GenerateCommand {
+  public static final String OPTION = "--generate";
+
+  private static final String USAGE = "Usage - Machine --generate <"
+          + Arrays.stream(WorkloadGenerator.Shape.values())
+          .map(shape -> shape.name().toLowerCase(Locale.ROOT)).collect(Collectors.joining("|"))
+          + "> <instructions> [--seed <n>] [--out <file>]";
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private GenerateCommand() {
+  }
+
+  /**
+   * Generates the program described by the given arguments (those after {@code --generate}).
+   *
+   * @param out  where the program is written without {@code --out}
+   * @param args the shape, the size and the options
+   * @return the exit status: 0 on success, 1 if the program cannot be written, -1 on bad arguments
+   */
+  public static int run(PrintStream out, String... args) {
+    WorkloadGenerator.Shape shape;
+    long instructions;
+    long seed = 0;
+    Path file = null;
+    try {
+      if (args.length < 2)
+        throw new IllegalArgumentException("Missing shape or size");
+      shape = WorkloadGenerator.Shape.of(args[0]);
+      instructions = Long.parseLong(args[1]);
+      for (int i = 2; i < args.length; i++) {
+        switch (args[i]) {
+          case "--seed" -> seed = Long.parseLong(value(args, ++i));
+          case "--out" -> file = Path.of(value(args, ++i));
+          default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage() + " - " + USAGE);
+      return -1;
+    }
+
+    WorkloadGenerator generator = new WorkloadGenerator(shape, seed);
+    try {
+      if (file == null) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        generator.generate(writer, instructions);
+        writer.flush();
+      } else {
+        try (Writer writer = Files.newBufferedWriter(file)) {
+          long count = generator.generate(writer, instructions);
+          System.err.println("Wrote " + count + " instructions to " + file + ".");
+        }
+      }
+      return 0;
+    } catch (IOException e) {
+      System.err.println("Error writing the program: " + e.getMessage());
+      return 1;
+    }
+  }
+
+  private static String value(String[] args, int index) {
+    if (index >= args.length)
+      throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+    return args[index];
+  }
+}
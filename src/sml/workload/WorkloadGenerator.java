@@ -0,0 +1,212 @@
+package sml.workload;
+
+import sml.Registers.Register;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import static sml.Registers.Register.*;
+
+/**
+ * Represents the generator of synthetic SML programs of a given size and shape.
+ * <p>
+ * The program is written to an {@link Appendable} as it is generated, a few
+ * lines at a time, so files of any size can be streamed to disk. The same
+ * shape, size and seed always give the same program. Every program
+ * translates cleanly and halts: all loops are counted, other jumps only go
+ * forward, and every division is by a register that is never zero.
+ * <p>
+ * Two registers hold constants: {@code ECX} is 1, the step of every loop
+ * counter, and {@code EDI} is the divisor.
+ *
+ * @author Szymon Swendrowski
+ */
+public final class WorkloadGenerator {
+  /**
+   * The shapes of program the generator writes.
+   */
+  public enum Shape {
+    /** straight-line arithmetic without any jump */
+    STRAIGHT,
+    /** nests of counted loops, up to five deep */
+    LOOPS,
+    /** counted blocks in which every other instruction is a forward jnz */
+    BRANCHES,
+    /** a label on every instruction, with short forward jumps between them */
+    LABELS,
+    /** counted loops that print on every iteration */
+    OUTPUT;
+
+    /**
+     * Returns the shape of the given name, in any case.
+     *
+     * @param name the name of the shape
+     * @return the shape
+     * @throws IllegalArgumentException if there is no such shape
+     */
+    public static Shape of(String name) {
+      return valueOf(name.toUpperCase(Locale.ROOT));
+    }
+  }
+
+  // the counter of each nesting level of a loop nest, outermost first
+  private static final Register[] COUNTERS = {ESI, EBP, ESP, EDX, EBX};
+  private static final Register[] WORK = {EAX, EBX, EDX, ESI, EBP, ESP};
+  private static final int MAX_DEPTH = COUNTERS.length;
+  private static final int BLOCK_SIZE = 16;
+  private static final int MAX_FORWARD = 8;
+
+  private final Shape shape;
+  private final SplittableRandom random;
+  private Appendable out;
+  private long count;  // the number of instructions written
+  private long labels; // the number of labels used
+
+  /**
+   * Constructor: a generator of programs of the given shape.
+   *
+   * @param shape the shape of the programs
+   * @param seed  the seed of the random choices
+   */
+  public WorkloadGenerator(Shape shape, long seed) {
+    this.shape = shape;
+    this.random = new SplittableRandom(seed);
+  }
+
+  /**
+   * Writes a program of at least the given number of instructions (a loop
+   * or block is never cut short, so a few more may be written).
+   *
+   * @param out          where the program is written
+   * @param instructions the number of instructions
+   * @return the number of instructions written
+   * @throws IOException if the program cannot be written
+   */
+  public long generate(Appendable out, long instructions) throws IOException {
+    this.out = out;
+    count = 0;
+    labels = 0;
+    emit(null, "mov ECX 1");
+    emit(null, "mov EDI " + nonZero(100));
+    while (count < instructions) {
+      switch (shape) {
+        case STRAIGHT -> emit(null, arithmetic(WORK));
+        case LOOPS -> loopNest();
+        case BRANCHES -> branchBlock();
+        case LABELS -> labelled(instructions);
+        case OUTPUT -> outputLoop();
+      }
+    }
+    return count;
+  }
+
+  // a nest of counted loops around a few arithmetic instructions
+  private void loopNest() throws IOException {
+    int depth = 1 + random.nextInt(MAX_DEPTH);
+    String[] heads = new String[depth];
+    String label = null;
+    for (int level = 0; level < depth; level++) {
+      emit(label, "mov " + COUNTERS[level] + " " + (2 + random.nextInt(7)));
+      label = heads[level] = nextLabel();
+    }
+
+    // the body only changes the registers that are not counters of this nest
+    Register[] work = new Register[MAX_DEPTH - depth + 1];
+    work[0] = EAX;
+    System.arraycopy(COUNTERS, depth, work, 1, MAX_DEPTH - depth);
+    for (int i = 1 + random.nextInt(8); i > 0; i--) {
+      emit(label, arithmetic(work));
+      label = null;
+    }
+
+    for (int level = depth - 1; level >= 0; level--) {
+      emit(null, "sub " + COUNTERS[level] + " ECX");
+      emit(null, "jnz " + COUNTERS[level] + " " + heads[level]);
+    }
+  }
+
+  // a counted block in which about half the instructions jump forward within the block
+  private void branchBlock() throws IOException {
+    String head = nextLabel();
+    String[] targets = new String[BLOCK_SIZE];
+    int[] jumps = new int[BLOCK_SIZE];
+    for (int i = 0; i < BLOCK_SIZE; i++) {
+      jumps[i] = -1;
+      if (i % 2 == 1 && i < BLOCK_SIZE - 1) {
+        jumps[i] = i + 1 + random.nextInt(BLOCK_SIZE - 1 - i);
+        if (targets[jumps[i]] == null)
+          targets[jumps[i]] = nextLabel();
+      }
+    }
+
+    emit(null, "mov ESP " + (1 + random.nextInt(16)));
+    for (int i = 0; i < BLOCK_SIZE; i++) {
+      String label = (i == 0) ? head : targets[i];
+      if (jumps[i] >= 0) {
+        emit(label, "jnz EAX " + targets[jumps[i]]);
+      } else if (random.nextBoolean()) {
+        // a value that is zero half of the time decides the next jump
+        emit(label, "mov EAX " + (random.nextBoolean() ? 0 : nonZero(50)));
+      } else {
+        emit(label, random.nextBoolean() ? "add EAX EBX" : "sub EAX ECX");
+      }
+    }
+    emit(null, "sub ESP ECX");
+    emit(null, "jnz ESP " + head);
+  }
+
+  // labelled instructions, with jumps forward to labels a few instructions on
+  private void labelled(long instructions) throws IOException {
+    long furthest = labels;
+    while (count < instructions || labels <= furthest) {
+      String label = nextLabel();
+      if (random.nextInt(4) == 0) {
+        long target = labels + random.nextInt(MAX_FORWARD);
+        furthest = Math.max(furthest, target);
+        emit(label, "jnz EAX L" + target);
+      } else {
+        emit(label, arithmetic(WORK));
+      }
+    }
+  }
+
+  // a counted loop that prints a register, and often "Wow!", on every iteration
+  private void outputLoop() throws IOException {
+    emit(null, "mov ESI " + (1 + random.nextInt(16)));
+    String head = nextLabel();
+    emit(head, "out " + WORK[random.nextInt(WORK.length)]);
+    if (random.nextBoolean())
+      emit(null, "wow " + (1 + random.nextInt(3)));
+    emit(null, "add EAX ESI");
+    emit(null, "sub ESI ECX");
+    emit(null, "jnz ESI " + head);
+  }
+
+  private String arithmetic(Register[] work) {
+    Register result = work[random.nextInt(work.length)];
+    return switch (random.nextInt(5)) {
+      case 0 -> "add " + result + " " + Register.of(random.nextInt(8));
+      case 1 -> "sub " + result + " " + Register.of(random.nextInt(8));
+      case 2 -> "mul " + result + " " + work[random.nextInt(work.length)];
+      case 3 -> "div " + result + " EDI";
+      default -> "mov " + result + " " + (random.nextInt(2001) - 1000);
+    };
+  }
+
+  private int nonZero(int bound) {
+    int value = 1 + random.nextInt(bound);
+    return random.nextBoolean() ? value : -value;
+  }
+
+  private String nextLabel() {
+    return "L" + labels++;
+  }
+
+  private void emit(String label, String instruction) throws IOException {
+    if (label != null)
+      out.append(label).append(": ");
+    out.append(instruction).append('\n');
+    count++;
+  }
+}
@@ -0,0 +1,88 @@
+package test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+import sml.instruction.AddInstruction;
+import sml.instruction.ArithmeticJnzInstruction;
+import sml.instruction.ArithmeticJnzInstruction.Operator;
+
+import java.util.Map;
+
+import static sml.Registers.Register.*;
+
+class ArithmeticJnzInstructionTest {
+  // for each operator: the result and source values of a jump, its result,
+  // and the result and source values that fall through
+  private static final Map<Operator, int[]> CASES = Map.of(
+          Operator.ADD, new int[]{5, 6, 11, -6, 6},
+          Operator.SUB, new int[]{20, 5, 15, 5, 5},
+          Operator.MUL, new int[]{6, 7, 42, 0, 9});
+
+  private Machine machine;
+  private Registers registers;
+
+  @BeforeEach
+  void setUp() {
+    machine = new Machine(new Registers());
+    registers = machine.getRegisters();
+    machine.getLabels().addLabel("f1", 7);
+  }
+
+  @AfterEach
+  void tearDown() {
+    machine = null;
+    registers = null;
+  }
+
+  @Test
+  void jumpTest() {
+    for (Operator operator : Operator.values()) {
+      int[] values = CASES.get(operator);
+      registers.set(EAX, values[0]);
+      registers.set(EBX, values[1]);
+      Instruction instruction = new ArithmeticJnzInstruction(null, operator, EAX, EBX, "f1");
+      Assertions.assertEquals(7, instruction.execute(machine), operator.name());
+      Assertions.assertEquals(values[2], machine.getRegisters().get(EAX), operator.name());
+    }
+  }
+
+  @Test
+  void fallThroughTest() {
+    for (Operator operator : Operator.values()) {
+      int[] values = CASES.get(operator);
+      registers.set(EAX, values[3]);
+      registers.set(EBX, values[4]);
+      Instruction instruction = new ArithmeticJnzInstruction(null, operator, EAX, EBX, "f1")
+              .link(machine.getLabels());
+      Assertions.assertEquals(Instruction.NORMAL_PROGRAM_COUNTER_UPDATE, instruction.execute(machine),
+              operator.name());
+      Assertions.assertEquals(0, machine.getRegisters().get(EAX), operator.name());
+    }
+  }
+
+  @Test
+  void equalsTest() {
+    Instruction instruction = new ArithmeticJnzInstruction(null, Operator.ADD, EAX, EBX, "f1");
+    Instruction instruction2 = new ArithmeticJnzInstruction(null, Operator.ADD, EAX, EBX, "f1");
+    Assertions.assertEquals(instruction, instruction2);
+    Assertions.assertEquals(instruction.hashCode(), instruction2.hashCode());
+    Assertions.assertNotEquals(instruction, new ArithmeticJnzInstruction(null, Operator.ADD, EAX, EBX, "f2"));
+    Assertions.assertNotEquals(instruction, new ArithmeticJnzInstruction(null, Operator.SUB, EAX, EBX, "f1"));
+    Assertions.assertNotEquals(instruction, new AddInstruction(null, EAX, EBX));
+  }
+
+  @Test
+  void toStringTest() {
+    for (Operator operator : Operator.values()) {
+      Instruction instruction = new ArithmeticJnzInstruction("f0", operator, EAX, EBX, "f1");
+      Assertions.assertEquals("f0: " + operator.getOpcode() + " EAX EBX; jnz EAX f1", instruction.toString());
+      Assertions.assertEquals(operator.getOpcode() + "jnz", instruction.getOpcode());
+    }
+  }
+}
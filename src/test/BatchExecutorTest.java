@@ -0,0 +1,75 @@
+package test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import sml.Translator;
+import sml.batch.BatchExecutor;
+import sml.batch.BatchJob;
+import sml.batch.BatchResult;
+import sml.batch.BatchStatistics;
+import sml.engine.BytecodeEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+class BatchExecutorTest {
+  private static final String COUNTDOWN = "mov EAX 3\nmov EBX 1\nf0: out EAX\nsub EAX EBX\njnz EAX f0\n";
+
+  @Test
+  void forkJoinTest() throws Exception {
+    List<BatchJob> jobs = new ArrayList<>();
+    for (int i = 0; i < 50; i++)
+      jobs.add(BatchJob.of("job" + i, "mov EAX " + i + "\nmov EBX 2\nmul EAX EBX\nout EAX\n"));
+
+    List<BatchResult> results = new ArrayList<>();
+    try (BatchExecutor executor = BatchExecutor.forkJoin(4)) {
+      BatchStatistics statistics = executor.run(jobs, results::add);
+      Assertions.assertEquals(50, statistics.getJobs());
+      Assertions.assertEquals(0, statistics.getFailures());
+    }
+    Assertions.assertEquals(50, results.size());
+    for (BatchResult result : results) {
+      int i = result.getIndex();
+      Assertions.assertEquals("job" + i, result.getName());
+      Assertions.assertEquals(2 * i, result.getRegisters().get(EAX));
+      Assertions.assertEquals(2 * i + System.lineSeparator(), result.getOutput());
+    }
+  }
+
+  @Test
+  void copiesTest() throws Exception {
+    List<BatchJob> jobs = BatchJob.copies(Translator.translateProgram(COUNTDOWN), 20);
+    List<BatchResult> results = new ArrayList<>();
+    try (BatchExecutor executor = BatchExecutor.virtualThreads()) {
+      executor.setEngine(BytecodeEngine::new);
+      executor.run(jobs, results::add);
+    }
+    String expected = String.join(System.lineSeparator(), "3", "2", "1") + System.lineSeparator();
+    for (BatchResult result : results) {
+      Assertions.assertTrue(result.succeeded());
+      Assertions.assertEquals(expected, result.getOutput());
+      Assertions.assertEquals(0, result.getRegisters().get(EAX));
+    }
+  }
+
+  @Test
+  void failureTest() throws Exception {
+    List<BatchJob> jobs = List.of(
+            BatchJob.of("good", "mov EAX 1\n"),
+            BatchJob.of("bad", "mov EAX x\n"),
+            BatchJob.of("unlinked", "jnz EAX nowhere\n"));
+    List<BatchResult> results = new ArrayList<>();
+    try (BatchExecutor executor = BatchExecutor.forkJoin(2)) {
+      BatchStatistics statistics = executor.run(jobs, results::add);
+      Assertions.assertEquals(2, statistics.getFailures());
+      Assertions.assertTrue(statistics.getLatency(100) >= statistics.getLatency(50));
+    }
+    results.sort((a, b) -> Integer.compare(a.getIndex(), b.getIndex()));
+    Assertions.assertTrue(results.get(0).succeeded());
+    Assertions.assertEquals("x is not a valid integer at <string>:1:9", results.get(1).getError().getMessage());
+    Assertions.assertInstanceOf(IllegalArgumentException.class, results.get(2).getError());
+  }
+}
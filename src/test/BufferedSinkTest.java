@@ -0,0 +1,123 @@
+package test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import sml.Machine;
+import sml.Registers;
+import sml.Translator;
+import sml.compact.CompactEngine;
+import sml.compact.OffHeapEngine;
+import sml.engine.BytecodeEngine;
+import sml.engine.ExecutionEngine;
+import sml.engine.Interpreter;
+import sml.instruction.DivInstruction;
+import sml.instruction.JnzInstruction;
+import sml.instruction.MovInstruction;
+import sml.instruction.OutInstruction;
+import sml.instruction.SubInstruction;
+import sml.instruction.WowInstruction;
+import sml.output.BufferedSink;
+import sml.output.FlushPolicy;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+class BufferedSinkTest {
+  private static final String NL = System.lineSeparator();
+
+  private Machine machine;
+  private ByteArrayOutputStream outContent;
+
+  @BeforeEach
+  void setUp() {
+    machine = new Machine(new Registers());
+    outContent = new ByteArrayOutputStream();
+  }
+
+  @AfterEach
+  void tearDown() {
+    machine = null;
+    outContent = null;
+  }
+
+  @Test
+  void textTest() {
+    BufferedSink sink = new BufferedSink(outContent, FlushPolicy.onHalt());
+    for (int value : new int[]{0, 7, -42, Integer.MAX_VALUE, Integer.MIN_VALUE})
+      sink.writeInt(value);
+    sink.writeLine("Wow!");
+    Assertions.assertEquals(0, outContent.size());
+    sink.flush();
+    Assertions.assertEquals("0" + NL + "7" + NL + "-42" + NL + Integer.MAX_VALUE + NL
+            + Integer.MIN_VALUE + NL + "Wow!" + NL, outContent.toString());
+  }
+
+  @Test
+  void divisionByZeroOrderTest() {
+    for (ExecutionEngine engine : List.of(new Interpreter(), new CompactEngine(),
+            new OffHeapEngine(), new BytecodeEngine())) {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      Machine machine = Translator.translate("mov EAX 7\nout EAX\ndiv EAX EBX\nout EAX");
+      machine.setEngine(engine);
+      machine.setOutput(new BufferedSink(output, FlushPolicy.onHalt()));
+      machine.execute();
+      Assertions.assertEquals("7" + NL + DivInstruction.DIVISION_BY_ZERO + "7" + NL,
+              output.toString(), engine.getClass().getSimpleName());
+    }
+  }
+
+  @Test
+  void binaryTest() {
+    BufferedSink sink = new BufferedSink(outContent, FlushPolicy.onHalt(), true, 64);
+    sink.writeInt(-2);
+    sink.writeInt(720);
+    sink.flush();
+    ByteBuffer bytes = ByteBuffer.wrap(outContent.toByteArray());
+    Assertions.assertEquals(8, bytes.remaining());
+    Assertions.assertEquals(-2, bytes.getInt());
+    Assertions.assertEquals(720, bytes.getInt());
+  }
+
+  @Test
+  void sizePolicyTest() {
+    BufferedSink sink = new BufferedSink(outContent, FlushPolicy.onSize(4), false, 64);
+    sink.writeInt(1);
+    Assertions.assertEquals(0, outContent.size());
+    sink.writeInt(23);
+    Assertions.assertEquals("1" + NL + "23" + NL, outContent.toString());
+  }
+
+  @Test
+  void smallBufferTest() {
+    BufferedSink sink = new BufferedSink(outContent, FlushPolicy.onHalt(), false, 16);
+    for (int i = 0; i < 100; i++)
+      sink.writeInt(-1000000 - i);
+    sink.writeLine("x".repeat(40));
+    sink.flush();
+    Assertions.assertEquals(100 * ("-1000000".length() + NL.length()) + 40 + NL.length(),
+            outContent.size());
+  }
+
+  @Test
+  void flushOnHaltTest() {
+    machine.setOutput(new BufferedSink(outContent, FlushPolicy.onHalt()));
+    machine.getProgram().addAll(List.of(
+            new MovInstruction(null, EAX, 3),
+            new MovInstruction(null, EBX, 1),
+            new OutInstruction("f1", EAX),
+            new WowInstruction(null, 1),
+            new SubInstruction(null, EAX, EBX),
+            new JnzInstruction(null, EAX, "f1")));
+    machine.getLabels().addLabel("f1", 2);
+    machine.execute();
+    Assertions.assertEquals("3" + NL + "Wow!" + NL + "2" + NL + "Wow!" + NL + "1" + NL + "Wow!" + NL,
+            outContent.toString());
+  }
+}
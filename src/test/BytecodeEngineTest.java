@@ -0,0 +1,145 @@
+package test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.Program;
+import sml.Registers;
+import sml.Translator;
+import sml.engine.BytecodeEngine;
+import sml.engine.Interpreter;
+import sml.instruction.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+class BytecodeEngineTest {
+  private Machine interpreted;
+  private Machine compiled;
+
+  // Setting up streams to capture output
+  private final ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+  private final PrintStream originalOut = System.out;
+
+  @BeforeEach
+  void setUp() {
+    interpreted = new Machine(new Registers());
+    interpreted.setEngine(new Interpreter());
+    compiled = new Machine(new Registers());
+    compiled.setEngine(new BytecodeEngine());
+    System.setOut(new PrintStream(outContent));
+  }
+
+  @AfterEach
+  void tearDown() {
+    interpreted = null;
+    compiled = null;
+    System.setOut(originalOut);
+  }
+
+  private void load(List<Instruction> program, String label, int address) {
+    for (Machine machine : List.of(interpreted, compiled)) {
+      machine.getProgram().addAll(program);
+      if (label != null)
+        machine.getLabels().addLabel(label, address);
+    }
+  }
+
+  @Test
+  void factorialTest() {
+    load(List.of(
+            new MovInstruction(null, EAX, 6),
+            new MovInstruction(null, EBX, 1),
+            new MovInstruction(null, ECX, 1),
+            new MulInstruction("f3", EBX, EAX),
+            new SubInstruction(null, EAX, ECX),
+            new JnzInstruction(null, EAX, "f3"),
+            new OutInstruction(null, EBX)), "f3", 3);
+    interpreted.execute();
+    compiled.execute();
+    Assertions.assertEquals(720, compiled.getRegisters().get(EBX));
+    Assertions.assertEquals(interpreted.getRegisters(), compiled.getRegisters());
+  }
+
+  @Test
+  void overflowAndDivisionTest() {
+    load(List.of(
+            new MovInstruction(null, EAX, Integer.MAX_VALUE),
+            new MovInstruction(null, EBX, 3),
+            new MulInstruction(null, EAX, EBX),
+            new MovInstruction(null, ECX, 7),
+            new DivInstruction(null, ECX, EDX),
+            new DivInstruction(null, EAX, ECX),
+            new AddInstruction(null, ESI, EAX)), null, 0);
+    interpreted.execute();
+    String interpretedOut = outContent.toString();
+    outContent.reset();
+    compiled.execute();
+    Assertions.assertEquals(interpreted.getRegisters(), compiled.getRegisters());
+    Assertions.assertEquals(interpretedOut, outContent.toString());
+  }
+
+  @Test
+  void fallbackCallTest() {
+    Instruction swap = new Instruction(null, "swap") {
+      @Override
+      public int execute(Machine m) {
+        int value = m.getRegisters().get(EAX);
+        m.getRegisters().set(EAX, m.getRegisters().get(EBX));
+        m.getRegisters().set(EBX, value);
+        return NORMAL_PROGRAM_COUNTER_UPDATE;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+        return o == this;
+      }
+
+      @Override
+      public int hashCode() {
+        return 0;
+      }
+
+      @Override
+      public String toString() {
+        return getOpcode();
+      }
+    };
+    load(List.of(
+            new MovInstruction(null, EAX, 1),
+            new MovInstruction(null, EBX, 2),
+            swap), null, 0);
+    compiled.execute();
+    Assertions.assertEquals(2, compiled.getRegisters().get(EAX));
+    Assertions.assertEquals(1, compiled.getRegisters().get(EBX));
+  }
+
+  @Test
+  void loweredOnceTest() {
+    BytecodeEngine engine = new BytecodeEngine();
+    Program program = Translator.translateProgram("mov EAX 6\nmov EBX 1\nmov ECX 1\n"
+            + "f3: mul EBX EAX\nsub EAX ECX\njnz EAX f3\n");
+    for (int run = 0; run < 3; run++) {
+      Machine machine = new Machine(program, new Registers());
+      machine.setEngine(engine);
+      machine.execute();
+      Assertions.assertEquals(720, machine.getRegisters().get(EBX));
+    }
+
+    // a program the machine owns can change, so it is lowered again
+    compiled.getProgram().add(new MovInstruction(null, EAX, 1));
+    compiled.execute();
+    compiled.getProgram().add(new MovInstruction(null, EAX, 2));
+    compiled.getRegisters().clear();
+    compiled.execute();
+    Assertions.assertEquals(2, compiled.getRegisters().get(EAX));
+  }
+}
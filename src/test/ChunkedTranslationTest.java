@@ -0,0 +1,76 @@
+package test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Translator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+class ChunkedTranslationTest {
+  @TempDir
+  static Path directory;
+  private static Path file;
+  private static Translator translator;
+
+  @BeforeAll
+  static void setUp() throws Exception {
+    // several chunks of a few MiB, with labels and jumps across chunk boundaries
+    file = directory.resolve("large.sml");
+    StringBuilder source = new StringBuilder();
+    for (int i = 0; source.length() < (6 << 20); i++) {
+      source.append("l").append(i).append(": mov EAX ").append(i).append('\n');
+      source.append("  add EAX EBX\n\n");
+      if (i % 7 == 0)
+        source.append("jnz EAX l").append(i / 2).append('\n');
+    }
+    Files.writeString(file, source);
+    translator = Translator.getInstance(file.toString());
+  }
+
+  private static List<String> text(List<Instruction> program) {
+    return program.stream().map(Instruction::toString).toList();
+  }
+
+  @Test
+  void sameAsSequentialTest() throws Exception {
+    Labels sequentialLabels = new Labels();
+    List<Instruction> sequential = new ArrayList<>();
+    translator.readAndTranslate(sequentialLabels, sequential);
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      Labels labels = new Labels();
+      List<Instruction> program = new ArrayList<>();
+      translator.readAndTranslate(labels, program, pool);
+      Assertions.assertEquals(text(sequential), text(program));
+      Assertions.assertEquals(sequentialLabels.getAddresses(), labels.getAddresses());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void duplicateLabelTest() throws Exception {
+    String source = Files.readString(file);
+    Files.writeString(file, source + "l5: out EAX\n");
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      long lines = source.lines().count() + 1;
+      IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class,
+              () -> translator.readAndTranslate(new Labels(), new ArrayList<>(), pool));
+      Assertions.assertEquals("Duplicate label: l5 at " + file + ":" + lines, e.getMessage());
+    } finally {
+      pool.shutdown();
+      Files.writeString(file, source);
+    }
+  }
+}
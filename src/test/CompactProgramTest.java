@@ -0,0 +1,121 @@
+package test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.Program;
+import sml.Registers;
+import sml.Translator;
+import sml.compact.CompactEngine;
+import sml.compact.CompactProgram;
+import sml.instruction.JnzInstruction;
+import sml.instruction.MovInstruction;
+import sml.output.BufferedSink;
+import sml.output.FlushPolicy;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+class CompactProgramTest {
+  private static final String FACTORIAL = "mov EAX 6\nmov EBX 1\nmov ECX 1\n"
+          + "f3: mul EBX EAX\nsub EAX ECX\njnz EAX f3\nout EBX\n"
+          + "mov EDX 0\ndiv EBX EDX\nwow 2\njnz EDX f9\nf9: out EDX\n";
+
+  private static String run(Machine machine) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    machine.setOutput(new BufferedSink(bytes, FlushPolicy.onHalt()));
+    machine.execute();
+    return bytes.toString();
+  }
+
+  @Test
+  void sameAsTranslatedTest() {
+    Program compact = Translator.translateCompact(FACTORIAL);
+    Program program = Translator.translateProgram(FACTORIAL);
+    Assertions.assertTrue(compact.isCompact());
+    Assertions.assertEquals(program.size(), compact.size());
+    Assertions.assertEquals(program.toString(), compact.toString());
+    Assertions.assertEquals(program.getLabels(), compact.getLabels());
+
+    Machine compactMachine = new Machine(compact, new Registers());
+    Machine machine = new Machine(program, new Registers());
+    Assertions.assertInstanceOf(CompactEngine.class, compactMachine.getEngine());
+    Assertions.assertEquals(run(machine), run(compactMachine));
+    Assertions.assertEquals(machine.getRegisters(), compactMachine.getRegisters());
+    Assertions.assertEquals(720, compactMachine.getRegisters().get(EBX));
+    Assertions.assertEquals(program.toString(), compactMachine.toString());
+  }
+
+  @Test
+  void lazyInstructionTest() {
+    CompactProgram compact = Translator.translateCompact(FACTORIAL).getCompact();
+    JnzInstruction jnz = (JnzInstruction) compact.getInstruction(5);
+    Assertions.assertEquals("f3", jnz.getTarget());
+    Assertions.assertEquals(3, jnz.getAddress());
+    Assertions.assertEquals("f3: mul EBX EAX", compact.asList().get(3).toString());
+    Assertions.assertThrows(UnsupportedOperationException.class,
+            () -> compact.asList().set(0, new MovInstruction(null, EAX, 1)));
+    Assertions.assertSame(compact, CompactProgram.from(compact.asList()).orElseThrow());
+  }
+
+  @Test
+  void callTest() {
+    // an instruction without an encoding runs through the side table
+    Instruction swap = new Instruction("s0", "swap") {
+      @Override
+      public int execute(Machine m) {
+        int value = m.getRegisters().get(EAX);
+        m.getRegisters().set(EAX, m.getRegisters().get(EBX));
+        m.getRegisters().set(EBX, value);
+        return NORMAL_PROGRAM_COUNTER_UPDATE;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+        return o == this;
+      }
+
+      @Override
+      public int hashCode() {
+        return 0;
+      }
+
+      @Override
+      public String toString() {
+        return getLabelString() + "swap";
+      }
+    };
+    CompactProgram compact = CompactProgram.of(List.of(
+            new MovInstruction(null, EAX, 1), new MovInstruction(null, EBX, 2), swap));
+    Assertions.assertSame(swap, compact.getInstruction(2));
+    Assertions.assertEquals(2, compact.getLabels().getAddress("s0"));
+
+    Machine machine = new Machine(Program.of("test", compact), new Registers());
+    machine.execute();
+    Assertions.assertEquals(2, machine.getRegisters().get(EAX));
+    Assertions.assertEquals(1, machine.getRegisters().get(EBX));
+  }
+
+  @Test
+  void engineOnOwnProgramTest() {
+    Machine machine = Translator.translate(FACTORIAL);
+    Machine compact = Translator.translate(FACTORIAL);
+    compact.setEngine(new CompactEngine());
+    Assertions.assertEquals(run(machine), run(compact));
+    Assertions.assertEquals(machine.getRegisters(), compact.getRegisters());
+  }
+
+  @Test
+  void labelErrorTest() {
+    IllegalArgumentException duplicate = Assertions.assertThrows(IllegalArgumentException.class,
+            () -> Translator.translateCompact("f0: mov EAX 1\nf0: mov EBX 1"));
+    Assertions.assertEquals("Duplicate label: f0 at <string>:2", duplicate.getMessage());
+    IllegalArgumentException missing = Assertions.assertThrows(IllegalArgumentException.class,
+            () -> Translator.translateCompact("mov EAX 1\njnz EAX f1"));
+    Assertions.assertTrue(missing.getMessage().startsWith("Label does not exist: f1"));
+  }
+}
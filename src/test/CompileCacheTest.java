@@ -0,0 +1,116 @@
+package test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import sml.Machine;
+import sml.Program;
+import sml.Registers;
+import sml.batch.BatchJob;
+import sml.compact.CompileCache;
+import sml.compact.SmlcFile;
+import sml.output.NullSink;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static sml.Registers.Register.*;
+
+class CompileCacheTest {
+  private static final String FACTORIAL = "mov EAX 6\nmov EBX 1\nmov ECX 1\n"
+          + "f3: mul EBX EAX\nsub EAX ECX\njnz EAX f3\n";
+
+  private static int run(Program program) {
+    Machine machine = new Machine(program, new Registers());
+    machine.setOutput(NullSink.INSTANCE);
+    machine.execute();
+    return machine.getRegisters().get(EBX);
+  }
+
+  private static long entries(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(file -> file.toString().endsWith(SmlcFile.EXTENSION)).count();
+    }
+  }
+
+  @Test
+  void hitAndMissTest(@TempDir Path directory) throws IOException {
+    Path source = directory.resolve("factorial.sml");
+    Files.writeString(source, FACTORIAL);
+    CompileCache cache = new CompileCache(directory.resolve("cache"), CompileCache.DEFAULT_MAX_SIZE);
+
+    Program translated = cache.load(source);
+    Assertions.assertEquals(720, run(translated));
+    Assertions.assertEquals(0, cache.getHits());
+    Assertions.assertEquals(1, cache.getMisses());
+
+    // a hit is the same kind of program as a miss, and runs on the same engine
+    Program cached = cache.load(source);
+    Assertions.assertFalse(cached.isOffHeap());
+    Assertions.assertNotNull(cached.getCompact());
+    Assertions.assertEquals(new Machine(translated, new Registers()).getEngine().getClass(),
+            new Machine(cached, new Registers()).getEngine().getClass());
+    Assertions.assertEquals(720, run(cached));
+    Assertions.assertEquals(1, cache.getHits());
+
+    // a changed source is a new entry
+    Files.writeString(source, FACTORIAL.replace("mov EAX 6", "mov EAX 5"));
+    Assertions.assertEquals(120, run(cache.load(source)));
+    Assertions.assertEquals(2, cache.getMisses());
+    Assertions.assertEquals(2, entries(cache.getDirectory()));
+
+    // another cache (as in another JVM) finds the entries
+    CompileCache other = new CompileCache(cache.getDirectory(), CompileCache.DEFAULT_MAX_SIZE);
+    Assertions.assertEquals(120, run(other.load(source)));
+    Assertions.assertEquals(1, other.getHits());
+
+    Machine machine = BatchJob.of(source, other).load();
+    machine.setOutput(NullSink.INSTANCE);
+    machine.execute();
+    Assertions.assertEquals(120, machine.getRegisters().get(EBX));
+    Assertions.assertEquals(2, other.getHits());
+  }
+
+  @Test
+  void corruptEntryTest(@TempDir Path directory) throws IOException {
+    CompileCache cache = new CompileCache(directory, CompileCache.DEFAULT_MAX_SIZE);
+    byte[] source = FACTORIAL.getBytes(StandardCharsets.UTF_8);
+    Files.writeString(directory.resolve(CompileCache.key(source) + SmlcFile.EXTENSION), "garbage");
+
+    Assertions.assertEquals(720, run(cache.load("test", source)));
+    Assertions.assertEquals(1, cache.getMisses());
+    Assertions.assertEquals(720, run(cache.load("test", source)));
+    Assertions.assertEquals(1, cache.getHits());
+  }
+
+  @Test
+  void evictionTest(@TempDir Path directory) throws IOException {
+    CompileCache probe = new CompileCache(directory.resolve("probe"), CompileCache.DEFAULT_MAX_SIZE);
+    probe.load("test", FACTORIAL.getBytes(StandardCharsets.UTF_8));
+    long entrySize;
+    try (Stream<Path> files = Files.list(probe.getDirectory())) {
+      entrySize = Files.size(files.findFirst().orElseThrow());
+    }
+
+    // room for about three entries
+    CompileCache cache = new CompileCache(directory.resolve("cache"), entrySize * 3 + entrySize / 2);
+    for (int i = 1; i <= 6; i++)
+      cache.load("test", FACTORIAL.replace("mov EAX 6", "mov EAX " + i).getBytes(StandardCharsets.UTF_8));
+    Assertions.assertEquals(3, entries(cache.getDirectory()));
+    Assertions.assertEquals(3, cache.getEvictions());
+  }
+
+  @Test
+  void concurrentTest(@TempDir Path directory) throws IOException {
+    CompileCache cache = new CompileCache(directory, CompileCache.DEFAULT_MAX_SIZE);
+    byte[] source = FACTORIAL.getBytes(StandardCharsets.UTF_8);
+    IntStream.range(0, 64).parallel().forEach(i -> Assertions.assertEquals(720, run(cache.load("test", source))));
+    Assertions.assertEquals(64, cache.getHits() + cache.getMisses());
+    Assertions.assertEquals(1, entries(directory));
+  }
+}
@@ -0,0 +1,112 @@
+package test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+import sml.engine.CompilingEngine;
+import sml.engine.JvmCompiler;
+import sml.instruction.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+class CompilingEngineTest {
+  private Machine machine;
+
+  // Setting up streams to capture output
+  private final ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+  private final PrintStream originalOut = System.out;
+
+  @BeforeEach
+  void setUp() {
+    machine = new Machine(new Registers());
+    machine.setEngine(new CompilingEngine());
+    System.setOut(new PrintStream(outContent));
+  }
+
+  @AfterEach
+  void tearDown() {
+    machine = null;
+    System.setOut(originalOut);
+  }
+
+  @Test
+  void factorialTest() {
+    machine.getProgram().addAll(List.of(
+            new MovInstruction(null, EAX, 6),
+            new MovInstruction(null, EBX, 1),
+            new MovInstruction(null, ECX, 1),
+            new MulInstruction("f3", EBX, EAX),
+            new SubInstruction(null, EAX, ECX),
+            new JnzInstruction(null, EAX, "f3"),
+            new OutInstruction(null, EBX)));
+    machine.getLabels().addLabel("f3", 3);
+    Assertions.assertTrue(JvmCompiler.compile(machine.getLabels(), machine.getProgram()).isPresent());
+    machine.execute();
+    Assertions.assertEquals(720, machine.getRegisters().get(EBX));
+    Assertions.assertEquals(0, machine.getRegisters().get(EAX));
+    Assertions.assertEquals("720", outContent.toString().trim());
+  }
+
+  @Test
+  void divisionByZeroTest() {
+    machine.getProgram().addAll(List.of(
+            new MovInstruction(null, EAX, 100000),
+            new MovInstruction(null, EBX, 7),
+            new DivInstruction(null, EAX, ECX),
+            new DivInstruction(null, EAX, EBX)));
+    machine.execute();
+    Assertions.assertEquals(14285, machine.getRegisters().get(EAX));
+    Assertions.assertEquals("Error: Division by zero, " +
+            "value of result register won't change", outContent.toString());
+  }
+
+  @Test
+  void hugeProgramFallbackTest() {
+    // too long a method for HotSpot to compile, so it is interpreted instead
+    machine.getProgram().add(new MovInstruction(null, ECX, 1));
+    for (int i = 0; i < 2000; i++)
+      machine.getProgram().add(new AddInstruction(null, EAX, ECX));
+    Assertions.assertTrue(JvmCompiler.compile(machine.getLabels(), machine.getProgram()).isEmpty());
+    machine.execute();
+    Assertions.assertEquals(2000, machine.getRegisters().get(EAX));
+  }
+
+  @Test
+  void unsupportedFallbackTest() {
+    Instruction nop = new Instruction(null, "nop") {
+      @Override
+      public int execute(Machine m) {
+        return NORMAL_PROGRAM_COUNTER_UPDATE;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+        return o == this;
+      }
+
+      @Override
+      public int hashCode() {
+        return 0;
+      }
+
+      @Override
+      public String toString() {
+        return getOpcode();
+      }
+    };
+    machine.getProgram().addAll(List.of(new MovInstruction(null, EDI, -3), nop));
+    Assertions.assertTrue(JvmCompiler.compile(machine.getLabels(), machine.getProgram()).isEmpty());
+    machine.execute();
+    Assertions.assertEquals(-3, machine.getRegisters().get(EDI));
+  }
+}
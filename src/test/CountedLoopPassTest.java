@@ -0,0 +1,183 @@
+package test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.Main;
+import sml.Registers;
+import sml.instruction.*;
+import sml.optimise.CountedLoopPass;
+import sml.optimise.FusionPass;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+class CountedLoopPassTest {
+  private Machine optimised;
+  private Machine interpreted;
+
+  // Setting up streams to capture output
+  private final ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+  private final PrintStream originalOut = System.out;
+
+  @BeforeEach
+  void setUp() {
+    optimised = new Machine(new Registers());
+    interpreted = new Machine(new Registers());
+    System.setOut(new PrintStream(outContent));
+  }
+
+  @AfterEach
+  void tearDown() {
+    optimised = null;
+    interpreted = null;
+    System.setOut(originalOut);
+  }
+
+  private void load(List<Instruction> program, String label, int address) {
+    for (Machine machine : List.of(optimised, interpreted)) {
+      machine.getProgram().addAll(program);
+      machine.getLabels().addLabel(label, address);
+    }
+  }
+
+  @Test
+  void accumulationLoopTest() {
+    load(List.of(
+            new MovInstruction(null, EAX, 20),
+            new MovInstruction(null, EBX, 5),
+            new MovInstruction(null, EDX, 3),
+            new SubInstruction("f1", EAX, EBX),
+            new AddInstruction(null, ECX, EAX),
+            new MulInstruction(null, ESI, EDX),
+            new AddInstruction(null, ESI, ECX),
+            new JnzInstruction(null, EAX, "f1"),
+            new OutInstruction(null, ECX)), "f1", 3);
+    Assertions.assertEquals(1, CountedLoopPass.apply(optimised.getLabels(), optimised.getProgram()));
+    Assertions.assertInstanceOf(CountedLoopInstruction.class, optimised.getProgram().get(3));
+
+    optimised.execute();
+    interpreted.execute();
+    Assertions.assertEquals(interpreted.getRegisters(), optimised.getRegisters());
+    Assertions.assertEquals(30, optimised.getRegisters().get(ECX));
+  }
+
+  @Test
+  void closedFormLoopTest() {
+    // 1000 iterations, too many to step through, with a mov in the body
+    load(List.of(
+            new MovInstruction(null, EAX, 5000),
+            new MovInstruction(null, EBX, 5),
+            new MovInstruction(null, EDX, 3),
+            new SubInstruction("f1", EAX, EBX),
+            new AddInstruction(null, ECX, EAX),
+            new MulInstruction(null, ESI, EDX),
+            new AddInstruction(null, ESI, ECX),
+            new MovInstruction(null, EDI, 9),
+            new AddInstruction(null, EBP, EDI),
+            new JnzInstruction(null, EAX, "f1")), "f1", 3);
+    Assertions.assertEquals(1, CountedLoopPass.apply(optimised.getLabels(), optimised.getProgram()));
+
+    optimised.execute();
+    interpreted.execute();
+    Assertions.assertEquals(interpreted.getRegisters(), optimised.getRegisters());
+    Assertions.assertEquals(9000, optimised.getRegisters().get(EBP));
+  }
+
+  @Test
+  void optimiseOptionTest() throws IOException {
+    Path file = Files.createTempFile("countdown", ".sml");
+    try {
+      Files.writeString(file, "mov EAX 5000\nmov EBX 5\nf1: sub EAX EBX\nadd ECX EBX\njnz EAX f1\nout ECX\n");
+      Main.main("--optimise", file.toString());
+    } finally {
+      Files.delete(file);
+    }
+    String output = outContent.toString();
+    Assertions.assertTrue(output.contains("f1: loop [sub EAX EBX; add ECX EBX; jnz EAX f1]"), output);
+    Assertions.assertTrue(output.contains(System.lineSeparator() + "5000" + System.lineSeparator()), output);
+  }
+
+  @Test
+  void wrappingCounterTest() {
+    // EAX reaches zero only after wrapping around: 1 + 3n == 0 (mod 2^32)
+    load(List.of(
+            new MovInstruction(null, EAX, 1),
+            new MovInstruction(null, EBX, 3),
+            new MovInstruction(null, ECX, 7),
+            new AddInstruction("f1", EAX, EBX),
+            new AddInstruction(null, ESI, ECX),
+            new JnzInstruction(null, EAX, "f1")), "f1", 3);
+    CountedLoopPass.apply(optimised.getLabels(), optimised.getProgram());
+    optimised.execute();
+
+    long iterations = 0xFFFFFFFFL / 3;
+    Assertions.assertEquals(0, optimised.getRegisters().get(EAX));
+    Assertions.assertEquals((int) (7 * iterations), optimised.getRegisters().get(ESI));
+  }
+
+  @Test
+  void fusedLoopTest() {
+    load(List.of(
+            new MovInstruction(null, EAX, 6),
+            new MovInstruction(null, ECX, 1),
+            new MovInstruction(null, EDX, 2),
+            new MulInstruction("f3", EBX, EDX),
+            new AddInstruction(null, EBX, ECX),
+            new SubInstruction(null, EAX, ECX),
+            new JnzInstruction(null, EAX, "f3")), "f3", 3);
+    FusionPass.apply(optimised.getLabels(), optimised.getProgram());
+    Assertions.assertEquals(1, CountedLoopPass.apply(optimised.getLabels(), optimised.getProgram()));
+    optimised.execute();
+    interpreted.execute();
+    Assertions.assertEquals(interpreted.getRegisters(), optimised.getRegisters());
+  }
+
+  @Test
+  void sideEffectLoopTest() {
+    // test3.sml prints in its loop, so it must not be replaced
+    load(List.of(
+            new MovInstruction(null, EAX, 20),
+            new MovInstruction(null, EBX, 5),
+            new SubInstruction("f1", EAX, EBX),
+            new WowInstruction(null, 1),
+            new JnzInstruction(null, EAX, "f1")), "f1", 2);
+    Assertions.assertEquals(0, CountedLoopPass.apply(optimised.getLabels(), optimised.getProgram()));
+  }
+
+  @Test
+  void dataDependentExitTest() {
+    // the factorial counter is fine, but EBX * EAX multiplies by a changing register
+    load(List.of(
+            new MovInstruction(null, EAX, 6),
+            new MovInstruction(null, EBX, 1),
+            new MovInstruction(null, ECX, 1),
+            new MulInstruction("f3", EBX, EAX),
+            new SubInstruction(null, EAX, ECX),
+            new JnzInstruction(null, EAX, "f3")), "f3", 3);
+    Assertions.assertEquals(0, CountedLoopPass.apply(optimised.getLabels(), optimised.getProgram()));
+
+
+    // a counter that is multiplied has a data-dependent exit
+    Machine machine = new Machine(new Registers());
+    machine.getProgram().addAll(List.of(
+            new MovInstruction(null, EAX, 6),
+            new MovInstruction(null, EBX, 2),
+            new MulInstruction("f1", EAX, EBX),
+            new JnzInstruction(null, EAX, "f1")));
+    machine.getLabels().addLabel("f1", 2);
+    Assertions.assertEquals(0, CountedLoopPass.apply(machine.getLabels(), machine.getProgram()));
+  }
+}
@@ -0,0 +1,97 @@
+package test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+import sml.instruction.*;
+import sml.optimise.FusionPass;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+class FusionPassTest {
+  private Machine machine;
+
+  // Setting up streams to capture output
+  private final ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+  private final PrintStream originalOut = System.out;
+
+  @BeforeEach
+  void setUp() {
+    machine = new Machine(new Registers());
+    System.setOut(new PrintStream(outContent));
+  }
+
+  @AfterEach
+  void tearDown() {
+    machine = null;
+    System.setOut(originalOut);
+  }
+
+  @Test
+  void factorialFusionTest() {
+    machine.getProgram().addAll(List.of(
+            new MovInstruction(null, EAX, 6),
+            new MovInstruction(null, EBX, 1),
+            new MovInstruction(null, ECX, 1),
+            new MulInstruction("f3", EBX, EAX),
+            new SubInstruction(null, EAX, ECX),
+            new JnzInstruction(null, EAX, "f3"),
+            new OutInstruction(null, EBX)));
+    machine.getLabels().addLabel("f3", 3);
+
+    Assertions.assertEquals(3, FusionPass.apply(machine.getLabels(), machine.getProgram()));
+    List<Instruction> program = machine.getProgram();
+    Assertions.assertInstanceOf(MovRunInstruction.class, program.get(0));
+    Assertions.assertInstanceOf(MulInstruction.class, program.get(1));
+    Assertions.assertEquals(ArithmeticJnzInstruction.Operator.SUB,
+            ((ArithmeticJnzInstruction) program.get(2)).getOperator());
+    Assertions.assertEquals(1, machine.getLabels().getAddress("f3"));
+
+    machine.execute();
+    Assertions.assertEquals(720, machine.getRegisters().get(EBX));
+    Assertions.assertEquals("720", outContent.toString().trim());
+  }
+
+  @Test
+  void noFusionAcrossLabelTest() {
+    machine.getProgram().addAll(List.of(
+            new MovInstruction(null, EAX, 3),
+            new MovInstruction("f1", EBX, 1),
+            new SubInstruction(null, EAX, EBX),
+            new JnzInstruction("f2", EAX, "f1")));
+    machine.getLabels().addLabel("f1", 1);
+    machine.getLabels().addLabel("f2", 3);
+
+    Assertions.assertEquals(0, FusionPass.apply(machine.getLabels(), machine.getProgram()));
+    machine.execute();
+    Assertions.assertEquals(0, machine.getRegisters().get(EAX));
+  }
+
+  @Test
+  void unlabelledTargetTest() {
+    // the label only exists in the label table, not on the instruction
+    machine.getProgram().addAll(List.of(
+            new MovInstruction(null, EAX, 4),
+            new MovInstruction(null, EBX, 1),
+            new MovInstruction(null, ECX, 0),
+            new AddInstruction(null, ECX, EBX),
+            new SubInstruction(null, EAX, EBX),
+            new JnzInstruction(null, EAX, "f1")));
+    machine.getLabels().addLabel("f1", 2);
+
+    Assertions.assertEquals(2, FusionPass.apply(machine.getLabels(), machine.getProgram()));
+    Assertions.assertEquals(1, machine.getLabels().getAddress("f1"));
+    machine.execute();
+    Assertions.assertEquals(1, machine.getRegisters().get(ECX));
+  }
+}
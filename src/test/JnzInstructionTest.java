@@ -116,6 +116,31 @@ class JnzInstructionTest {
     Assertions.assertTrue(instruction.equals(instruction2));
   }
 
+  @Test
+  void unknownLabelLinkTest() {
+    machine.getProgram().add(new MovInstruction(null, EAX, 1));
+    machine.getProgram().add(new JnzInstruction(null, EAX, "f1"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> machine.link());
+  }
+
+  @Test
+  void duplicateLabelLinkTest() {
+    machine.getLabels().addLabel("f1", 0);
+    machine.getProgram().add(new MovInstruction("f1", EAX, 1));
+    machine.getProgram().add(new MovInstruction("f1", EBX, 1));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> machine.link());
+  }
+
+  @Test
+  void linkedJumpTest() {
+    machine.getLabels().addLabel("f1", 4);
+    registers.set(EAX, 1);
+    Instruction instruction = new JnzInstruction(null, EAX, "f1").link(machine.getLabels());
+    machine.getLabels().reset();
+    Assertions.assertEquals(4, instruction.execute(machine));
+    Assertions.assertEquals(new JnzInstruction(null, EAX, "f1"), instruction);
+  }
+
   @Test
   void dupeLabelTest() {
     machine.getLabels().addLabel("f1", 3);
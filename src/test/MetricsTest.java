@@ -0,0 +1,147 @@
+package test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import sml.Machine;
+import sml.Registers;
+import sml.Translator;
+import sml.compact.CompactEngine;
+import sml.compact.OffHeapEngine;
+import sml.engine.BytecodeEngine;
+import sml.engine.ExecutionEngine;
+import sml.engine.Interpreter;
+import sml.engine.TieredEngine;
+import sml.instruction.DivInstruction;
+import sml.metrics.Metrics;
+import sml.metrics.MetricsServer;
+import sml.output.BufferedSink;
+import sml.output.FlushPolicy;
+import sml.output.SystemOutSink;
+import sml.profile.Profile;
+import sml.profile.ProfilingEngine;
+
+import javax.management.ObjectName;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+class MetricsTest {
+  private static final String DIVIDE = """
+          mov EAX 6
+          mov EBX 0
+          div EAX EBX
+          out EAX
+          """;
+
+  // 2 + 3 * 100000 instructions, more than a batch
+  private static final String COUNTDOWN = """
+          mov EAX 100000
+          mov EBX 1
+          f0: sub EAX EBX
+          add ECX EBX
+          jnz EAX f0
+          """;
+
+  private static void run(Machine machine) {
+    machine.setOutput(new BufferedSink(new ByteArrayOutputStream(), FlushPolicy.onHalt()));
+    machine.execute();
+  }
+
+  @Test
+  void translateAndRunTest() {
+    Metrics metrics = Metrics.get();
+    long programs = metrics.getProgramsTranslated();
+    long divisions = metrics.getDivisionByZeroEvents();
+    long bytes = metrics.getOutputBytes();
+
+    run(new Machine(Translator.translateCompact(DIVIDE), new Registers()));
+    run(Translator.translate(DIVIDE));
+
+    Assertions.assertEquals(programs + 2, metrics.getProgramsTranslated());
+    Assertions.assertEquals(divisions + 2, metrics.getDivisionByZeroEvents());
+    int line = System.lineSeparator().length();
+    Assertions.assertEquals(bytes + 2 * (DivInstruction.DIVISION_BY_ZERO.length() + 1 + line),
+            metrics.getOutputBytes());
+    Assertions.assertEquals(0, metrics.getActiveMachines());
+    Assertions.assertTrue(metrics.getTranslationTimeMillis() > 0);
+  }
+
+  @Test
+  void systemOutBytesTest() {
+    PrintStream originalOut = System.out;
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    long bytes = Metrics.get().getOutputBytes();
+    System.setOut(new PrintStream(out));
+    try {
+      SystemOutSink sink = new SystemOutSink();
+      for (int value : new int[]{0, 7, -1, 10, 999, -1234567, Integer.MAX_VALUE, Integer.MIN_VALUE})
+        sink.writeInt(value);
+    } finally {
+      System.setOut(originalOut);
+    }
+    Assertions.assertEquals(bytes + out.size(), Metrics.get().getOutputBytes());
+  }
+
+  @Test
+  void countTest() {
+    long instructions = Metrics.get().getInstructionsExecuted();
+    long executed = Metrics.count(0, 10);
+    Assertions.assertEquals(10, executed);
+    Assertions.assertEquals(instructions, Metrics.get().getInstructionsExecuted());
+
+    executed = Metrics.count(executed, 1 << 16);
+    Assertions.assertEquals(0, executed);
+    Assertions.assertEquals(instructions + 10 + (1 << 16), Metrics.get().getInstructionsExecuted());
+  }
+
+  @Test
+  void executedTest() {
+    // the build runs the tests with sml.metrics.instructions=true
+    Assumptions.assumeTrue(Metrics.COUNTING);
+    List<ExecutionEngine> engines = List.of(new Interpreter(), new BytecodeEngine(), new CompactEngine(),
+            new OffHeapEngine(), new ProfilingEngine(new Profile(5)), new TieredEngine(Integer.MAX_VALUE, 1));
+    for (ExecutionEngine engine : engines) {
+      long instructions = Metrics.get().getInstructionsExecuted();
+      Machine machine = Translator.translate(COUNTDOWN);
+      machine.setEngine(engine);
+      run(machine);
+      Assertions.assertEquals(100000, machine.getRegisters().get(Registers.Register.ECX));
+      Assertions.assertEquals(instructions + 300002, Metrics.get().getInstructionsExecuted(),
+              engine.getClass().getSimpleName());
+      if (engine instanceof TieredEngine tiered)
+        tiered.close();
+    }
+  }
+
+  @Test
+  void mbeanTest() throws Exception {
+    ObjectName name = Metrics.register();
+    Assertions.assertEquals(name, Metrics.register());
+    long divisions = (Long) ManagementFactory.getPlatformMBeanServer()
+            .getAttribute(name, "DivisionByZeroEvents");
+    Assertions.assertEquals(Metrics.get().getDivisionByZeroEvents(), divisions);
+  }
+
+  @Test
+  void serverTest() throws IOException {
+    try (MetricsServer server = MetricsServer.start(0)) {
+      URL url = new URL("http://localhost:" + server.getPort() + MetricsServer.PATH);
+      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      Assertions.assertEquals(200, connection.getResponseCode());
+      Assertions.assertTrue(connection.getContentType().startsWith("text/plain"));
+      try (InputStream in = connection.getInputStream()) {
+        String text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        Assertions.assertTrue(text.contains("sml_programs_translated_total "), text);
+        Assertions.assertTrue(text.contains("sml_division_by_zero_total "), text);
+      }
+    }
+  }
+}
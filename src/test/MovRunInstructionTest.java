@@ -0,0 +1,52 @@
+package test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.RegisterName;
+import sml.Registers;
+import sml.instruction.MovRunInstruction;
+
+import static sml.Registers.Register.*;
+
+class MovRunInstructionTest {
+  private Machine machine;
+
+  @BeforeEach
+  void setUp() {
+    machine = new Machine(new Registers());
+  }
+
+  @AfterEach
+  void tearDown() {
+    machine = null;
+  }
+
+  @Test
+  void executeTest() {
+    Instruction instruction = new MovRunInstruction(null,
+            new RegisterName[]{EAX, EBX, EAX}, new int[]{1, -2, 3});
+    instruction.execute(machine);
+    Assertions.assertEquals(3, machine.getRegisters().get(EAX));
+    Assertions.assertEquals(-2, machine.getRegisters().get(EBX));
+  }
+
+  @Test
+  void mismatchedLengthTest() {
+    Assertions.assertThrows(IllegalArgumentException.class,
+            () -> new MovRunInstruction(null, new RegisterName[]{EAX}, new int[]{1, 2}));
+  }
+
+  @Test
+  void equalsAndToStringTest() {
+    Instruction instruction = new MovRunInstruction("f1", new RegisterName[]{EAX, ECX}, new int[]{6, 1});
+    Instruction instruction2 = new MovRunInstruction(null, new RegisterName[]{EAX, ECX}, new int[]{6, 1});
+    Assertions.assertEquals(instruction, instruction2);
+    Assertions.assertEquals(instruction.hashCode(), instruction2.hashCode());
+    Assertions.assertEquals("f1: mov EAX 6; mov ECX 1", instruction.toString());
+  }
+}
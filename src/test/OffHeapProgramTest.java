@@ -0,0 +1,70 @@
+package test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import sml.Machine;
+import sml.Program;
+import sml.Registers;
+import sml.Translator;
+import sml.compact.OffHeapEngine;
+import sml.compact.OffHeapProgram;
+import sml.output.NullSink;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+import static sml.Registers.Register.*;
+
+class OffHeapProgramTest {
+  private static final String FACTORIAL = "mov EBX 1\nmov ECX 1\n"
+          + "f3: mul EBX EAX\nsub EAX ECX\njnz EAX f3\nwow 1\n";
+
+  @Test
+  void sharedExecutionTest() {
+    OffHeapProgram offHeap = OffHeapProgram.of(Translator.translateCompact(FACTORIAL).getCompact());
+    Program program = Program.of("test", offHeap);
+    Assertions.assertTrue(program.isOffHeap());
+    Assertions.assertEquals(6 * OffHeapProgram.INSTRUCTION_SIZE, offHeap.byteSize());
+    Assertions.assertEquals(Translator.translateProgram(FACTORIAL).toString(), program.toString());
+
+    // many machines read the one program at the same time
+    IntStream.rangeClosed(1, 12).parallel().forEach(n -> {
+      Machine machine = new Machine(program, new Registers());
+      Assertions.assertInstanceOf(OffHeapEngine.class, machine.getEngine());
+      machine.setOutput(NullSink.INSTANCE);
+      int[] registers = new int[Registers.COUNT];
+      registers[EAX.ordinal()] = n;
+      machine.execute(registers, 0);
+      int factorial = IntStream.rangeClosed(1, n).reduce(1, (x, y) -> x * y);
+      Assertions.assertEquals(factorial, machine.getRegisters().get(EBX));
+    });
+  }
+
+  @Test
+  void mappedTest(@TempDir Path directory) throws IOException {
+    Path file = directory.resolve("factorial.code");
+    OffHeapProgram offHeap = OffHeapProgram.map(Translator.translateCompact(FACTORIAL).getCompact(), file);
+    Assertions.assertEquals(offHeap.byteSize(), Files.size(file));
+    Assertions.assertEquals("f3: mul EBX EAX", offHeap.getInstruction(2).toString());
+
+    Machine machine = new Machine(Program.of(file.toString(), offHeap), new Registers());
+    machine.setOutput(NullSink.INSTANCE);
+    int[] registers = new int[Registers.COUNT];
+    registers[EAX.ordinal()] = 5;
+    machine.execute(registers, 0);
+    Assertions.assertEquals(120, machine.getRegisters().get(EBX));
+  }
+
+  @Test
+  void engineOnOwnProgramTest() {
+    Machine machine = Translator.translate("mov EAX 6\n" + FACTORIAL);
+    machine.setEngine(new OffHeapEngine());
+    machine.setOutput(NullSink.INSTANCE);
+    machine.execute();
+    Assertions.assertEquals(720, machine.getRegisters().get(EBX));
+  }
+}
@@ -0,0 +1,63 @@
+package test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import sml.Instruction;
+import sml.InstructionType;
+import sml.OpcodeRegistry;
+import sml.instruction.JnzInstruction;
+import sml.instruction.MovInstruction;
+import sml.instruction.OutInstruction;
+import sml.instruction.SubInstruction;
+import sml.instruction.WowInstruction;
+
+import static sml.Registers.Register.*;
+
+class OpcodeRegistryTest {
+  @Test
+  void lookupTest() {
+    InstructionType type = OpcodeRegistry.lookup("mov");
+    Assertions.assertSame(MovInstruction.class, type.getType());
+    Assertions.assertEquals(2, type.getOperandCount());
+    Assertions.assertSame(type, OpcodeRegistry.lookup("mov"));
+    Assertions.assertSame(type, InstructionType.of(MovInstruction.class));
+  }
+
+  @Test
+  void newInstanceTest() {
+    Instruction instruction = OpcodeRegistry.lookup("jnz").newInstance("f0", "EAX", "f1");
+    Assertions.assertEquals(new JnzInstruction("f0", EAX, "f1"), instruction);
+    Assertions.assertEquals("f0", instruction.getLabel());
+    Assertions.assertEquals("mov EBX -3",
+            OpcodeRegistry.lookup("mov").newInstance(null, "EBX", "-3").toString());
+  }
+
+  @Test
+  void shapesTest() {
+    // a constructor of every shape: one register, one int, two registers, and from arguments
+    Assertions.assertEquals(new OutInstruction(null, ECX), OpcodeRegistry.lookup("out").newInstance(null, "ECX"));
+    Assertions.assertEquals(new WowInstruction(null, 3), OpcodeRegistry.lookup("wow").newInstance(null, "3"));
+    Assertions.assertEquals(new SubInstruction("f2", EDX, ESI),
+            OpcodeRegistry.lookup("sub").newInstance("f2", "EDX", "ESI"));
+    Assertions.assertEquals("mov EDI 7",
+            OpcodeRegistry.lookup("mov").newInstance(new Object[]{null, EDI, 7}).toString());
+  }
+
+  @Test
+  void invalidOperandsTest() {
+    RuntimeException register = Assertions.assertThrows(RuntimeException.class,
+            () -> OpcodeRegistry.lookup("add").newInstance(null, "EAX", "EZZ"));
+    Assertions.assertEquals("EZZ is not a valid register", register.getMessage());
+    RuntimeException integer = Assertions.assertThrows(RuntimeException.class,
+            () -> OpcodeRegistry.lookup("mov").newInstance(null, "EAX", "x1"));
+    Assertions.assertEquals("x1 is not a valid integer", integer.getMessage());
+  }
+
+  @Test
+  void unknownOpcodeTest() {
+    RuntimeException e = Assertions.assertThrows(RuntimeException.class,
+            () -> OpcodeRegistry.lookup("nop"));
+    Assertions.assertEquals("Nop is not a valid instruction", e.getMessage());
+  }
+}
@@ -0,0 +1,154 @@
+package test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import sml.Machine;
+import sml.Program;
+import sml.Registers;
+import sml.Translator;
+import sml.batch.BatchExecutor;
+import sml.batch.BatchJob;
+import sml.output.BufferedSink;
+import sml.output.FlushPolicy;
+import sml.profile.Profile;
+import sml.profile.ProfileReport;
+import sml.profile.ProfilingEngine;
+import sml.profile.SampleHistogram;
+import sml.profile.Sampler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+class ProfileTest {
+  private static final String FACTORIAL = """
+          mov EAX 6
+          mov EBX 1
+          mov ECX 1
+          f3: mul EBX EAX
+          sub EAX ECX
+          jnz EAX f3
+          out EBX
+          """;
+
+  private static final String LOOP = """
+          mov EAX 2000000
+          mov ECX 1
+          loop: add EBX ECX
+          sub EAX ECX
+          jnz EAX loop
+          """;
+
+  private static Machine profile(String source, Profile profile) {
+    Machine machine = Translator.translate(source);
+    machine.setEngine(new ProfilingEngine(profile));
+    machine.setOutput(new BufferedSink(new ByteArrayOutputStream(), FlushPolicy.onHalt()));
+    machine.execute();
+    return machine;
+  }
+
+  @Test
+  void countsTest() {
+    Profile profile = new Profile(7);
+    profile(FACTORIAL, profile);
+
+    Assertions.assertEquals(1, profile.getCount(0));
+    Assertions.assertEquals(6, profile.getCount(3));
+    Assertions.assertEquals(6, profile.getCount(5));
+    Assertions.assertEquals(5, profile.getTaken(5));
+    Assertions.assertEquals(1, profile.getNotTaken(5));
+    Assertions.assertEquals(0, profile.getTaken(4));
+    Assertions.assertEquals(1, profile.getCount(6));
+    Assertions.assertEquals(22, profile.getTotal());
+  }
+
+  @Test
+  void addAndResetTest() {
+    Profile total = new Profile(7);
+    Profile run = new Profile(7);
+    profile(FACTORIAL, run);
+    total.add(run);
+    total.add(run);
+    Assertions.assertEquals(44, total.getTotal());
+    Assertions.assertEquals(10, total.getTaken(5));
+
+    total.reset();
+    Assertions.assertEquals(0, total.getTotal());
+    Assertions.assertThrows(IllegalArgumentException.class, () -> total.add(new Profile(3)));
+  }
+
+  @Test
+  void sizeMismatchTest() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> profile(FACTORIAL, new Profile(3)));
+  }
+
+  @Test
+  void reportTest() throws IOException {
+    Profile profile = new Profile(7);
+    Machine machine = profile(FACTORIAL, profile);
+    ProfileReport report = new ProfileReport(profile, machine.getLabels(), machine.getProgram());
+
+    StringBuilder text = new StringBuilder();
+    report.write(text);
+    Assertions.assertTrue(text.toString().startsWith("Profile: 22 instructions executed"), text.toString());
+    Assertions.assertTrue(text.toString().contains("By label region"));
+    Assertions.assertTrue(text.toString().contains("By opcode"));
+    Assertions.assertTrue(text.toString().contains("Hottest instructions"));
+
+    StringBuilder collapsed = new StringBuilder();
+    report.writeCollapsed(collapsed, "fact.sml");
+    Assertions.assertEquals(String.join("\n",
+            "fact.sml;" + ProfileReport.ENTRY_REGION + ";mov 3",
+            "fact.sml;f3;mul 6",
+            "fact.sml;f3;sub 6",
+            "fact.sml;f3;jnz 6",
+            "fact.sml;f3;out 1", ""), collapsed.toString());
+  }
+
+  @Test
+  void samplerTest() throws IOException {
+    Machine machine = new Machine(Translator.translateCompact(LOOP), new Registers());
+    Sampler sampler = Sampler.start(Duration.ofNanos(100_000));
+    try (sampler) {
+      machine.setEngine(sampler.engine());
+      machine.execute();
+    }
+
+    Assertions.assertEquals(-1, machine.getPublishedProgramCounter());
+    List<SampleHistogram> histograms = sampler.getHistograms();
+    Assertions.assertEquals(1, histograms.size());
+    SampleHistogram histogram = histograms.get(0);
+    Assertions.assertTrue(histogram.getTotal() > 0);
+    Assertions.assertEquals(histogram.getTotal(),
+            histogram.getSamples(2) + histogram.getSamples(3) + histogram.getSamples(4));
+    Assertions.assertEquals("loop", histogram.getRegion(4));
+    Assertions.assertEquals(5, histogram.getLine(4));
+
+    StringBuilder text = new StringBuilder();
+    histogram.write(text);
+    Assertions.assertTrue(text.toString().contains("Hottest lines"), text.toString());
+  }
+
+  @Test
+  void batchSamplerTest() throws InterruptedException {
+    Program program = Translator.translateProgram(LOOP);
+    Sampler sampler = Sampler.start(Duration.ofNanos(100_000));
+    try (sampler; BatchExecutor executor = BatchExecutor.forkJoin(2)) {
+      executor.setEngine(sampler::engine);
+      Assertions.assertEquals(0, executor.run(BatchJob.copies(program, 4), result -> {
+      }).getFailures());
+    }
+
+    List<SampleHistogram> histograms = sampler.getHistograms();
+    Assertions.assertEquals(1, histograms.size());
+    Assertions.assertTrue(histograms.get(0).getTotal() > 0);
+    Assertions.assertEquals(0, histograms.get(0).getLine(2));
+  }
+
+  @Test
+  void samplerIntervalTest() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> Sampler.start(Duration.ZERO));
+  }
+}
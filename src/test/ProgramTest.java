@@ -0,0 +1,75 @@
+package test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.Program;
+import sml.Registers;
+import sml.Translator;
+import sml.instruction.JnzInstruction;
+import sml.instruction.MovInstruction;
+import sml.output.BufferedSink;
+import sml.output.FlushPolicy;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static sml.Registers.Register.*;
+
+class ProgramTest {
+  private static final String COUNTDOWN = "mov EBX 1\nf0: out EAX\nsub EAX EBX\njnz EAX f0\n";
+
+  @Test
+  void sharedExecutionTest() {
+    Program program = Translator.translateProgram(COUNTDOWN);
+    Assertions.assertEquals(4, program.size());
+    Assertions.assertEquals("<string>", program.getSource());
+
+    // many machines run the one program at the same time, each from its own registers
+    List<String> outputs = IntStream.rangeClosed(1, 500).parallel().mapToObj(n -> {
+      Machine machine = new Machine(program, new Registers());
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      machine.setOutput(new BufferedSink(bytes, FlushPolicy.onHalt()));
+      int[] registers = new int[Registers.COUNT];
+      registers[EAX.ordinal()] = n % 5 + 1;
+      machine.execute(registers, 0);
+      Assertions.assertSame(program.getInstructions(), machine.getProgram());
+      return bytes.toString().lines().findFirst().orElse("");
+    }).toList();
+    for (int n = 1; n <= 500; n++)
+      Assertions.assertEquals(String.valueOf(n % 5 + 1), outputs.get(n - 1));
+  }
+
+  @Test
+  void immutableTest() {
+    Labels labels = new Labels();
+    labels.addLabel("f0", 0);
+    List<Instruction> instructions = new ArrayList<>(List.of(
+            new MovInstruction("f0", EAX, 1), new JnzInstruction(null, EAX, "f0")));
+    Program program = Program.of("test", labels, instructions);
+
+    // the program is linked without changing what it was made from
+    Assertions.assertEquals(-1, ((JnzInstruction) instructions.get(1)).getAddress());
+    Assertions.assertEquals(0, ((JnzInstruction) program.getInstructions().get(1)).getAddress());
+
+    labels.addLabel("f1", 1);
+    Assertions.assertThrows(IllegalArgumentException.class, () -> program.getLabels().getAddress("f1"));
+    Assertions.assertThrows(UnsupportedOperationException.class, () -> program.getLabels().addLabel("f2", 0));
+    Assertions.assertThrows(UnsupportedOperationException.class,
+            () -> program.getInstructions().add(new MovInstruction(null, EBX, 2)));
+    Assertions.assertThrows(UnsupportedOperationException.class,
+            () -> new Machine(program, new Registers()).getProgram().clear());
+  }
+
+  @Test
+  void unknownLabelTest() {
+    IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class,
+            () -> Translator.translateProgram("jnz EAX nowhere\n"));
+    Assertions.assertEquals("Label does not exist: nowhere (at address 0)", e.getMessage());
+  }
+}
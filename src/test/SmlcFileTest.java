@@ -0,0 +1,91 @@
+package test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import sml.Machine;
+import sml.Program;
+import sml.Registers;
+import sml.Translator;
+import sml.compact.CompactProgram;
+import sml.compact.SmlcFile;
+import sml.instruction.MovRunInstruction;
+import sml.output.BufferedSink;
+import sml.output.FlushPolicy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+class SmlcFileTest {
+  private static final String FACTORIAL = "mov EAX 6\nmov EBX 1\nmov ECX 1\n\n"
+          + "f3: mul EBX EAX\nsub EAX ECX\njnz EAX f3\nout EBX\nwow 1\n";
+
+  private static String run(Program program) {
+    Machine machine = new Machine(program, new Registers());
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    machine.setOutput(new BufferedSink(bytes, FlushPolicy.onHalt()));
+    machine.execute();
+    Assertions.assertEquals(720, machine.getRegisters().get(EBX));
+    return bytes.toString();
+  }
+
+  @Test
+  void compileAndLoadTest(@TempDir Path directory) throws IOException {
+    Path source = directory.resolve("factorial.sml");
+    Path target = directory.resolve("factorial.smlc");
+    Files.writeString(source, FACTORIAL);
+    SmlcFile.compile(source, target);
+
+    SmlcFile file = SmlcFile.load(target);
+    Assertions.assertEquals(source.toString(), file.getSource());
+    Assertions.assertEquals(8, file.size());
+    Assertions.assertEquals(3, file.getLabels().getAddress("f3"));
+    Assertions.assertEquals(5, file.getLine(3));
+    Assertions.assertEquals(9, file.getLine(7));
+
+    Program expected = Translator.translateProgram(FACTORIAL);
+    Program mapped = file.toProgram();
+    Assertions.assertTrue(mapped.isOffHeap());
+    Assertions.assertEquals(expected.toString(), mapped.toString());
+    Assertions.assertEquals(run(expected), run(mapped));
+
+    CompactProgram expanded = file.toCompactProgram();
+    Assertions.assertEquals(5, expanded.getLine(3));
+    Assertions.assertEquals(run(expected), run(Program.of(file.getSource(), expanded)));
+  }
+
+  @Test
+  void invalidFileTest(@TempDir Path directory) throws IOException {
+    Path text = directory.resolve("text.smlc");
+    Files.writeString(text, FACTORIAL);
+    IOException magic = Assertions.assertThrows(IOException.class, () -> SmlcFile.load(text));
+    Assertions.assertEquals(text + " is not an SMLC file", magic.getMessage());
+
+    Path target = directory.resolve("factorial.smlc");
+    SmlcFile.write(Translator.translateCompact(FACTORIAL).getCompact(), "<string>", target);
+    byte[] bytes = Files.readAllBytes(target);
+    bytes[4] = 99; // the version
+    Files.write(target, bytes);
+    IOException version = Assertions.assertThrows(IOException.class, () -> SmlcFile.load(target));
+    Assertions.assertEquals(target + " has version 99, expected " + SmlcFile.VERSION, version.getMessage());
+
+    bytes[4] = SmlcFile.VERSION;
+    bytes[7 * Integer.BYTES + 1] = 42; // the first register operand
+    Files.write(target, bytes);
+    Assertions.assertThrows(IOException.class, () -> SmlcFile.load(target));
+  }
+
+  @Test
+  void unwritableInstructionTest(@TempDir Path directory) {
+    CompactProgram program = CompactProgram.of(List.of(
+            new MovRunInstruction(null, new sml.RegisterName[]{EAX, EBX}, new int[]{1, 2})));
+    Assertions.assertThrows(IllegalArgumentException.class,
+            () -> SmlcFile.write(program, "test", directory.resolve("test.smlc")));
+  }
+}
@@ -0,0 +1,88 @@
+package test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import sml.Machine;
+import sml.Registers;
+import sml.Translator;
+import sml.sweep.RangeSource;
+import sml.sweep.Sweep;
+import sml.sweep.SweepSource;
+import sml.sweep.TupleSource;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static sml.Registers.Register.*;
+
+class SweepTest {
+  // EBX = EAX! * EDX, with ECX as the step
+  private static final String PROGRAM = "mov EBX 1\nmov ECX 1\nf0: mul EBX EAX\nsub EAX ECX\njnz EAX f0\nmul EBX EDX\n";
+
+  private static List<int[]> sweep(Sweep sweep, SweepSource source) throws Exception {
+    List<int[]> results = new ArrayList<>();
+    List<Long> indices = new ArrayList<>();
+    sweep.run(source, (index, inputs, outputs, offset) -> {
+      indices.add(index);
+      results.add(Arrays.copyOfRange(outputs, offset, offset + Registers.COUNT));
+    });
+    for (int i = 0; i < indices.size(); i++)
+      Assertions.assertEquals(i, indices.get(i));
+    return results;
+  }
+
+  @Test
+  void rangeTest() throws Exception {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      Sweep sweep = new Sweep(Translator.translateProgram(PROGRAM), pool);
+      sweep.setBlockSize(7);
+      RangeSource source = new RangeSource(List.of("EAX=1..10", "EDX=-3..3:3"));
+      Assertions.assertEquals(30, source.size());
+      List<int[]> results = sweep(sweep, source);
+      Assertions.assertEquals(30, results.size());
+
+      Machine machine = Translator.translate(PROGRAM);
+      machine.link();
+      int i = 0;
+      for (int n = 1; n <= 10; n++)
+        for (int d = -3; d <= 3; d += 3) {
+          int[] input = new int[Registers.COUNT];
+          input[EAX.ordinal()] = n;
+          input[EDX.ordinal()] = d;
+          machine.execute(input, 0);
+          Assertions.assertArrayEquals(machine.getRegisters().toArray(), results.get(i++));
+        }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void tupleTest() throws Exception {
+    ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      Sweep sweep = new Sweep(Translator.translateProgram(PROGRAM), pool);
+      BufferedReader reader = new BufferedReader(new StringReader("# n, d\n3, 2\n\n5 1\n4\n"));
+      List<int[]> results = sweep(sweep, new TupleSource(reader, List.of(EAX, EDX)));
+      Assertions.assertEquals(List.of(12, 120, 0),
+              results.stream().map(r -> r[EBX.ordinal()]).toList());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void invalidRangeTest() {
+    IllegalArgumentException register = Assertions.assertThrows(IllegalArgumentException.class,
+            () -> new RangeSource(List.of("EQX=0..3")));
+    Assertions.assertEquals("EQX is not a valid register", register.getMessage());
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new RangeSource(List.of("EAX=3..0")));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new RangeSource(List.of("EAX=0..3:0")));
+  }
+}
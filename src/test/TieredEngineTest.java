@@ -0,0 +1,101 @@
+package test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import sml.Labels;
+import sml.Machine;
+import sml.Program;
+import sml.Registers;
+import sml.engine.TieredEngine;
+import sml.instruction.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+class TieredEngineTest {
+  private Machine machine;
+  private TieredEngine engine;
+
+  // Setting up streams to capture output
+  private final ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+  private final PrintStream originalOut = System.out;
+
+  @BeforeEach
+  void setUp() {
+    machine = new Machine(new Registers());
+    engine = new TieredEngine(10, 1);
+    machine.setEngine(engine);
+    System.setOut(new PrintStream(outContent));
+  }
+
+  @AfterEach
+  void tearDown() {
+    engine.close();
+    machine = null;
+    System.setOut(originalOut);
+  }
+
+  @Test
+  void nestedLoopTest() throws InterruptedException {
+    // EDX counts the inner iterations of a 300 x 400 nested loop, and ESI
+    // hashes them, times 3 plus EDX each time, so it never collapses to 0
+    Labels labels = new Labels();
+    labels.addLabel("outer", 4);
+    labels.addLabel("inner", 5);
+    Program program = Program.of("nested", labels, List.of(
+            new MovInstruction(null, EAX, 300),
+            new MovInstruction(null, ECX, 1),
+            new MovInstruction(null, ESI, 1),
+            new MovInstruction(null, EDI, 3),
+            new MovInstruction("outer", EBX, 400),
+            new AddInstruction("inner", EDX, ECX),
+            new MulInstruction(null, ESI, EDI),
+            new AddInstruction(null, ESI, EDX),
+            new SubInstruction(null, EBX, ECX),
+            new JnzInstruction(null, EBX, "inner"),
+            new SubInstruction(null, EAX, ECX),
+            new JnzInstruction(null, EAX, "outer"),
+            new OutInstruction(null, EDX)));
+    // the compiled loops of a shared program outlive its runs
+    machine = new Machine(program, new Registers());
+    machine.setEngine(engine);
+
+    int product = 1;
+    for (int edx = 1; edx <= 120000; edx++)
+      product = product * 3 + edx;
+
+    machine.execute();
+    assertResult(product);
+
+    // the loops compiled in the first run are kept, and entered in the second
+    for (int i = 0; i < 500 && engine.getLoopsInstalled() == 0; i++)
+      Thread.sleep(10);
+    Assertions.assertTrue(engine.getLoopsInstalled() > 0);
+    long entered = engine.getLoopsEntered();
+    outContent.reset();
+    machine.execute();
+    Assertions.assertTrue(engine.getLoopsEntered() > entered);
+    assertResult(product);
+  }
+
+  private void assertResult(int product) {
+    Assertions.assertNotEquals(0, product);
+    Assertions.assertEquals(120000, machine.getRegisters().get(EDX));
+    Assertions.assertEquals(product, machine.getRegisters().get(ESI));
+    Assertions.assertEquals(0, machine.getRegisters().get(EAX));
+    Assertions.assertEquals("120000", outContent.toString().trim());
+  }
+
+  @Test
+  void invalidThresholdTest() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new TieredEngine(0, 1));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new TieredEngine(1, 0));
+  }
+}
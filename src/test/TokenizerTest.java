@@ -0,0 +1,99 @@
+package test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import sml.Instruction;
+import sml.Tokenizer;
+import sml.instruction.JnzInstruction;
+import sml.instruction.MovInstruction;
+import sml.instruction.OutInstruction;
+import sml.instruction.SubInstruction;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+class TokenizerTest {
+  private static List<Instruction> tokenize(Tokenizer tokenizer) {
+    List<Instruction> program = new ArrayList<>();
+    Instruction instruction;
+    while ((instruction = tokenizer.next()) != null)
+      program.add(instruction);
+    return program;
+  }
+
+  private static List<String> text(Instruction... instructions) {
+    return Arrays.stream(instructions).map(Instruction::toString).toList();
+  }
+
+  private static List<String> text(List<Instruction> instructions) {
+    return instructions.stream().map(Instruction::toString).toList();
+  }
+
+  private static Tokenizer of(String source) {
+    return new Tokenizer("test.sml", ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  void tokenizeTest() {
+    List<Instruction> program = tokenize(of(
+            "  mov EAX 6\r\n\nf1: sub EAX EBX extra words\n  dropped:\n\tjnz EAX f1\nout ECX"));
+    Assertions.assertEquals(text(
+            new MovInstruction(null, EAX, 6),
+            new SubInstruction("f1", EAX, EBX),
+            new JnzInstruction(null, EAX, "f1"),
+            new OutInstruction(null, ECX)), text(program));
+  }
+
+  @Test
+  void integerTest() {
+    Assertions.assertEquals(text(
+            new MovInstruction(null, EAX, Integer.MIN_VALUE),
+            new MovInstruction(null, EBX, Integer.MAX_VALUE),
+            new MovInstruction(null, ECX, 5)),
+            text(tokenize(of("mov EAX -2147483648\nmov EBX 2147483647\nmov ECX +5"))));
+
+    RuntimeException e = Assertions.assertThrows(RuntimeException.class,
+            () -> tokenize(of("mov EAX 1\nmov EBX 2147483648")));
+    Assertions.assertEquals("2147483648 is not a valid integer at test.sml:2:9", e.getMessage());
+  }
+
+  @Test
+  void errorPositionTest() {
+    RuntimeException register = Assertions.assertThrows(RuntimeException.class,
+            () -> tokenize(of("mov EAX 1\n\nf0: add EAX EZZ")));
+    Assertions.assertEquals("EZZ is not a valid register at test.sml:3:13", register.getMessage());
+    RuntimeException opcode = Assertions.assertThrows(RuntimeException.class,
+            () -> tokenize(of("  nop EAX")));
+    Assertions.assertEquals("Nop is not a valid instruction at test.sml:1:3", opcode.getMessage());
+  }
+
+  @Test
+  void mappedFileTest(@TempDir Path directory) throws IOException {
+    Path file = directory.resolve("large.sml");
+    StringBuilder source = new StringBuilder();
+    int lines = 0;
+    while (source.length() < Tokenizer.MAP_THRESHOLD) {
+      source.append("l").append(lines).append(": mov EAX ").append(lines).append('\n');
+      lines++;
+    }
+    Files.writeString(file, source);
+
+    try (Tokenizer tokenizer = Tokenizer.open(file)) {
+      List<Instruction> program = tokenize(tokenizer);
+      Assertions.assertEquals(lines, program.size());
+      Assertions.assertEquals("l7: mov EAX 7", program.get(7).toString());
+      Assertions.assertEquals("l" + (lines - 1), program.get(lines - 1).getLabel());
+      Assertions.assertEquals(lines, tokenizer.getLineNumber());
+    }
+  }
+}
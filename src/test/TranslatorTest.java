@@ -0,0 +1,88 @@
+package test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.Translator;
+import sml.output.BufferedSink;
+import sml.output.FlushPolicy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static sml.Registers.Register.*;
+
+class TranslatorTest {
+  private static String factorial(int n) {
+    return "mov EAX " + n + "\nmov EBX 1\nmov ECX 1\nf0: mul EBX EAX\nsub EAX ECX\njnz EAX f0\nout EBX\n";
+  }
+
+  private static String run(Machine machine) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    machine.setOutput(new BufferedSink(bytes, FlushPolicy.onHalt()));
+    machine.execute();
+    return bytes.toString();
+  }
+
+  @Test
+  void translateStringTest() {
+    Machine machine = Translator.translate(factorial(5));
+    Assertions.assertEquals(7, machine.getProgram().size());
+    Assertions.assertEquals(3, machine.getLabels().getAddress("f0"));
+    Assertions.assertEquals("120\n", run(machine));
+    Assertions.assertEquals(120, machine.getRegisters().get(EBX));
+  }
+
+  @Test
+  void translateReaderTest() throws Exception {
+    Machine machine = Translator.translate("reader.sml", new StringReader(factorial(6)));
+    Assertions.assertEquals("720\n", run(machine));
+
+    RuntimeException e = Assertions.assertThrows(RuntimeException.class,
+            () -> Translator.translate("bad.sml", new StringReader("mov EAX 1\nmov EQX 2\n")));
+    Assertions.assertEquals("EQX is not a valid register at bad.sml:2:5", e.getMessage());
+  }
+
+  @Test
+  void translateFilesTest(@TempDir Path directory) throws Exception {
+    Path first = Files.writeString(directory.resolve("first.sml"), factorial(3));
+    Path second = Files.writeString(directory.resolve("second.sml"), factorial(4));
+
+    // a translator per file, rather than the first file for ever
+    List<Instruction> program = new ArrayList<>();
+    Translator.getInstance(first.toString()).readAndTranslate(new Labels(), program);
+    Assertions.assertEquals("mov EAX 3", program.get(0).toString());
+    Translator.getInstance(second.toString()).readAndTranslate(new Labels(), program);
+    Assertions.assertEquals("mov EAX 4", program.get(0).toString());
+
+    ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      List<Machine> machines = Translator.translateAll(List.of(first, second, first), pool);
+      Assertions.assertEquals(List.of("6\n", "24\n", "6\n"), machines.stream().map(TranslatorTest::run).toList());
+      Assertions.assertNotSame(machines.get(0).getProgram(), machines.get(2).getProgram());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void concurrentTranslationTest() {
+    List<String> outputs = IntStream.range(0, 200).parallel()
+            .mapToObj(i -> run(Translator.translate(factorial(1 + i % 10))))
+            .toList();
+    for (int i = 0; i < outputs.size(); i++) {
+      int expected = IntStream.rangeClosed(1, 1 + i % 10).reduce(1, (a, b) -> a * b);
+      Assertions.assertEquals(expected + "\n", outputs.get(i));
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import sml.Machine;
+import sml.Registers;
+import sml.Translator;
+import sml.optimise.CountedLoopPass;
+import sml.output.NullSink;
+import sml.simd.VectorKernel;
+
+import java.util.Random;
+
+class VectorKernelTest {
+  private static void assertSameAsScalar(Machine machine, int[] inputs) {
+    machine.link();
+    machine.setOutput(NullSink.INSTANCE);
+    int count = inputs.length / Registers.COUNT;
+    int[] outputs = new int[inputs.length];
+    new VectorKernel(machine.getLabels(), machine.getProgram()).run(inputs, outputs, count, machine);
+
+    for (int i = 0; i < count; i++) {
+      machine.execute(inputs, i * Registers.COUNT);
+      for (int r = 0; r < Registers.COUNT; r++)
+        Assertions.assertEquals(machine.getRegisters().get(r), outputs[i * Registers.COUNT + r],
+                "input " + i + ", register " + Registers.Register.of(r));
+    }
+  }
+
+  private static int[] inputs(int count, int bound, long seed) {
+    Random random = new Random(seed);
+    int[] inputs = new int[count * Registers.COUNT];
+    for (int i = 0; i < inputs.length; i++)
+      inputs[i] = 1 + random.nextInt(bound);
+    return inputs;
+  }
+
+  @Test
+  void divergentLoopsTest() {
+    // each lane runs its own number of iterations
+    Machine machine = Translator.translate(
+            "mov EBX 1\nmov ECX 1\nf0: add EDX EBX\nmul EBX EAX\nsub EAX ECX\njnz EAX f0\nout EBX\n");
+    assertSameAsScalar(machine, inputs(37, 20, 1));
+  }
+
+  @Test
+  void reconvergeTest() {
+    // the lanes split by the first loop run the second loop together again
+    Machine machine = Translator.translate("""
+            mov ECX 1
+            f0: add EDX EBX
+            sub EAX ECX
+            jnz EAX f0
+            mov EAX 5
+            f1: mul EDX ESI
+            add EBX EDX
+            sub EAX ECX
+            jnz EAX f1
+            div EBX EDI
+            """);
+    int[] inputs = inputs(53, 12, 4);
+    for (int i = 0; i < 53; i += 3)
+      inputs[i * Registers.COUNT + Registers.Register.EDI.ordinal()] = 0;
+    assertSameAsScalar(machine, inputs);
+  }
+
+  @Test
+  void nestedBranchesTest() {
+    Machine machine = Translator.translate("""
+            mov ECX 1
+            f0: jnz ESI f1
+            add EDX EAX
+            mov ESI 1
+            jnz ESI f2
+            f1: sub EDX EBX
+            mov ESI 0
+            f2: sub EAX ECX
+            jnz EAX f0
+            div EDX EBX
+            """);
+    int[] inputs = inputs(64, 9, 2);
+    inputs[Registers.COUNT + 1] = -1;
+    inputs[2 * Registers.COUNT + 1] = 0;
+    assertSameAsScalar(machine, inputs);
+  }
+
+  @Test
+  void callTest() {
+    // the counted loop has no bytecode encoding and is run lane by lane
+    Machine machine = Translator.translate("mov ECX 1\nf0: mul EBX EDX\nsub EAX ECX\njnz EAX f0\nwow 2\n");
+    CountedLoopPass.apply(machine.getLabels(), machine.getProgram());
+    assertSameAsScalar(machine, inputs(19, 100, 3));
+  }
+}
@@ -0,0 +1,55 @@
+package test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import sml.Machine;
+import sml.Program;
+import sml.Registers;
+import sml.Translator;
+import sml.output.BufferedSink;
+import sml.output.FlushPolicy;
+import sml.workload.WorkloadGenerator;
+import sml.workload.WorkloadGenerator.Shape;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+
+class WorkloadGeneratorTest {
+  private static String generate(Shape shape, long seed, long instructions) throws IOException {
+    StringBuilder source = new StringBuilder();
+    long count = new WorkloadGenerator(shape, seed).generate(source, instructions);
+    Assertions.assertEquals(count, source.chars().filter(c -> c == '\n').count());
+    Assertions.assertTrue(count >= instructions && count < instructions + 64, shape + ": " + count);
+    return source.toString();
+  }
+
+  @Test
+  void translatesAndHaltsTest() throws IOException {
+    for (Shape shape : Shape.values())
+      translatesAndHalts(shape);
+  }
+
+  private static void translatesAndHalts(Shape shape) throws IOException {
+    String source = generate(shape, 42, 5000);
+    Program program = Translator.translateProgram(source);
+
+    Machine machine = new Machine(program, new Registers());
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    machine.setOutput(new BufferedSink(output, FlushPolicy.onHalt()));
+    Assertions.assertTimeoutPreemptively(Duration.ofSeconds(20), () -> machine.execute());
+    Assertions.assertEquals(1, machine.getRegisters().get(Registers.Register.ECX));
+    Assertions.assertNotEquals(0, machine.getRegisters().get(Registers.Register.EDI));
+    if (shape == Shape.OUTPUT)
+      Assertions.assertTrue(output.size() > 5000);
+  }
+
+  @Test
+  void seededTest() throws IOException {
+    for (Shape shape : Shape.values()) {
+      Assertions.assertEquals(generate(shape, 7, 2000), generate(shape, 7, 2000));
+      Assertions.assertNotEquals(generate(shape, 7, 2000), generate(shape, 8, 2000));
+    }
+  }
+}